@@ -0,0 +1,81 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.issue.Issue;
+import org.sonar.plugins.issueassign.Authorship;
+import org.sonar.plugins.issueassign.Blame;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the SCM author of an issue once the measures of its file are collected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlameBenchmark {
+
+  @Param({"20"})
+  public int files;
+
+  @Param({"1000", "20000", "200000"})
+  public int lines;
+
+  @Param({"10", "5000"})
+  public int authors;
+
+  /** new issues raised per 1000 lines */
+  @Param({"5"})
+  public int issuesPerKLine;
+
+  private Blame blame;
+  private Issue[] issues;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    final SyntheticProject project = new SyntheticProject(this.files, this.lines, this.authors, 100, 0,
+        this.issuesPerKLine, 42L);
+    this.blame = new Blame(project.getMeasuresCollector());
+    this.issues = project.getIssues();
+  }
+
+  @Benchmark
+  public Authorship getAuthorshipForIssue() {
+    final Issue issue = this.issues[this.next];
+    this.next = (this.next + 1) % this.issues.length;
+    return this.blame.getAuthorshipForIssue(issue);
+  }
+}
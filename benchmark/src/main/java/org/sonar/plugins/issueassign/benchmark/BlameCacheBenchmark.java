@@ -0,0 +1,113 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+import org.sonar.plugins.issueassign.measures.BlameCache;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
+import org.sonar.plugins.issueassign.measures.ScmMeasures;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a blame cache hit, digesting the SCM measures of one file then reading, checking and decoding its record,
+ * against parsing the measures, which the hit saves.  A miss costs the digest on top of the parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlameCacheBenchmark {
+
+  private static final String RESOURCE_KEY = "project:File.java";
+
+  @Param({"1000", "20000", "200000"})
+  public int lines;
+
+  @Param({"10", "500"})
+  public int authors;
+
+  private String authorsByLine;
+  private String datesByLine;
+  private String revisionsByLine;
+  private File workingDir;
+  private BlameCache blameCache;
+
+  @Setup
+  public void setUp() throws IOException {
+    final SyntheticBlame blame = new SyntheticBlame(this.lines, SyntheticProject.commitsFor(this.lines),
+        this.authors, 42L);
+    this.authorsByLine = blame.getAuthors();
+    this.datesByLine = blame.getDates();
+    this.revisionsByLine = blame.getRevisions();
+
+    final File file = File.createTempFile("issue-assign-blame-cache", "");
+    this.workingDir = new File(file.getPath() + ".d");
+    file.delete();
+    this.workingDir.mkdirs();
+    final Settings settings = new Settings();
+    settings.setProperty(IssueAssignPlugin.PROPERTY_BLAME_CACHE_MAX_SIZE, 1024);
+    this.blameCache = new BlameCache(settings, SonarStandIns.moduleFileSystem(this.workingDir),
+        new IssueAssignStatistics());
+    this.blameCache.start();
+    this.blameCache.put(RESOURCE_KEY, this.digest(), this.parse());
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.blameCache.stop();
+    new File(this.workingDir, BlameCache.CACHE_FILE).delete();
+    this.workingDir.delete();
+  }
+
+  @Benchmark
+  public ScmMeasures parse() {
+    return new ScmMeasures(RESOURCE_KEY, this.authorsByLine, this.datesByLine, this.revisionsByLine,
+        new ScmDictionary(), new ScmDictionary());
+  }
+
+  @Benchmark
+  public byte[] digest() {
+    return this.blameCache.digest(this.authorsByLine, this.datesByLine, this.revisionsByLine);
+  }
+
+  @Benchmark
+  public ScmMeasures hit() {
+    return this.blameCache.get(RESOURCE_KEY, this.digest(), new ScmDictionary(), new ScmDictionary());
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.issueassign.measures.DormantMeasures;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
+import org.sonar.plugins.issueassign.measures.ScmMeasures;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trade-off of holding the SCM measures of one file {@link ScmMeasures#dormant dormant}: the cost of deflating them
+ * on decoration, against the time to the first lookup of a line, which inflates and parses them, for each deflate
+ * level.  Level 0 holds the measures as they are; the heap held at the other levels is compared in the README.
+ * {@link #eagerFirstLookup()} is the time to the same lookup when the measures are parsed on decoration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DormantMeasuresBenchmark {
+
+  @Param({"1000", "20000"})
+  public int lines;
+
+  @Param({"0", "1", "6", "9"})
+  public int level;
+
+  private String authorsByLine;
+  private String datesByLine;
+  private String revisionsByLine;
+  private DormantMeasures dormant;
+  private final IssueAssignStatistics statistics = new IssueAssignStatistics();
+
+  @Setup
+  public void setUp() {
+    final SyntheticBlame blame = new SyntheticBlame(this.lines, SyntheticProject.commitsFor(this.lines), 500, 42L);
+    this.authorsByLine = blame.getAuthors();
+    this.datesByLine = blame.getDates();
+    this.revisionsByLine = blame.getRevisions();
+    this.dormant = this.deflate();
+  }
+
+  @Benchmark
+  public DormantMeasures deflate() {
+    return DormantMeasures.of(this.level, this.authorsByLine, this.datesByLine, this.revisionsByLine);
+  }
+
+  @Benchmark
+  public String dormantFirstLookup() {
+    return ScmMeasures.dormant("project:File.java", this.dormant, new ScmDictionary(), new ScmDictionary(),
+        this.statistics).getAuthor(this.lines / 2);
+  }
+
+  @Benchmark
+  public String eagerFirstLookup() {
+    return new ScmMeasures("project:File.java", this.authorsByLine, this.datesByLine, this.revisionsByLine,
+        new ScmDictionary(), new ScmDictionary()).getAuthor(this.lines / 2);
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
+import org.sonar.api.user.UserQuery;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A Sonar user directory held in memory, answering login, logins and "all users" queries.  Each query can be
+ * made to wait, to stand in for the round trip to the database, and queries are counted.
+ */
+public class InMemoryUserFinder implements InvocationHandler {
+
+  private final Map<String, User> byLogin = new HashMap<String, User>();
+  private final List<User> all;
+  private final long latencyNanos;
+  private final AtomicLong queries = new AtomicLong();
+  private final UserFinder userFinder;
+
+  public InMemoryUserFinder(final Collection<User> users) {
+    this(users, 0L, TimeUnit.MICROSECONDS);
+  }
+
+  public InMemoryUserFinder(final Collection<User> users, final long latency, final TimeUnit unit) {
+    for (final User user : users) {
+      this.byLogin.put(user.login(), user);
+    }
+    this.all = new ArrayList<User>(users);
+    this.latencyNanos = unit.toNanos(latency);
+    this.userFinder = (UserFinder) Proxy.newProxyInstance(InMemoryUserFinder.class.getClassLoader(),
+        new Class<?>[]{UserFinder.class}, this);
+  }
+
+  public UserFinder asUserFinder() {
+    return this.userFinder;
+  }
+
+  /**
+   * @return the number of queries answered so far.
+   */
+  public long getQueries() {
+    return this.queries.get();
+  }
+
+  public Object invoke(final Object proxy, final Method method, final Object[] args) {
+    final String name = method.getName();
+    if ("equals".equals(name)) {
+      return proxy == args[0];
+    }
+    if ("hashCode".equals(name)) {
+      return System.identityHashCode(proxy);
+    }
+    if ("toString".equals(name)) {
+      return "in-memory UserFinder of " + this.all.size() + " users";
+    }
+
+    this.queries.incrementAndGet();
+    if (this.latencyNanos > 0) {
+      LockSupport.parkNanos(this.latencyNanos);
+    }
+
+    if ("findByLogin".equals(name)) {
+      return this.byLogin.get(args[0]);
+    }
+    if ("findByLogins".equals(name)) {
+      return this.find((Collection<?>) args[0]);
+    }
+    if ("find".equals(name)) {
+      final Collection<String> logins = ((UserQuery) args[0]).logins();
+      return logins == null || logins.isEmpty() ? new ArrayList<User>(this.all) : this.find(logins);
+    }
+    throw new UnsupportedOperationException(name);
+  }
+
+  private List<User> find(final Collection<?> logins) {
+    final List<User> found = new ArrayList<User>();
+    for (final Object login : logins) {
+      final User user = this.byLogin.get(login);
+      if (user != null) {
+        found.add(user);
+      }
+    }
+    return found;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.user.User;
+import org.sonar.plugins.issueassign.IssueAssigner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link IssueAssigner#onIssue} on a project where most SCM authors are not Sonar users, and some
+ * files have no SCM measures.  Only the plugin API that predates the assignment result types is used, so the
+ * same benchmark can be run against an earlier build of the plugin for a before and after comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IssueAssignerBenchmark {
+
+  @Param({"200"})
+  public int files;
+
+  @Param({"1000"})
+  public int lines;
+
+  @Param({"500"})
+  public int authors;
+
+  /** share of the SCM authors, in percent, that are also Sonar users */
+  @Param({"10", "90"})
+  public int knownAuthorPercent;
+
+  /** share of the files, in percent, that have no SCM measures */
+  @Param({"10"})
+  public int unmeasuredFilePercent;
+
+  /** new issues raised per 1000 lines */
+  @Param({"5"})
+  public int issuesPerKLine;
+
+  private IssueAssigner issueAssigner;
+  private SonarStandIns.Context context;
+  private Issue[] issues;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    final SyntheticProject project = new SyntheticProject(this.files, this.lines, this.authors,
+        this.knownAuthorPercent, this.unmeasuredFilePercent, this.issuesPerKLine, 42L);
+
+    this.issues = project.getIssues();
+    this.issueAssigner = new IssueAssigner(project.getMeasuresCollector(), project.getSettings(),
+        project.newUserFinder());
+    this.context = new SonarStandIns.Context();
+  }
+
+  @Benchmark
+  public User onIssue() {
+    final Issue issue = this.issues[this.next];
+    this.next = (this.next + 1) % this.issues.length;
+    this.issueAssigner.onIssue(this.context.of(issue));
+    return this.context.getAssignee();
+  }
+}
@@ -0,0 +1,334 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Project;
+import org.sonar.api.user.User;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+import org.sonar.plugins.issueassign.IssueAssigner;
+import org.sonar.plugins.issueassign.UserDirectory;
+import org.sonar.plugins.issueassign.measures.BlameCache;
+import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.measures.MeasuresReleaser;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a whole synthetic analysis through the plugin without a SonarQube server: the SCM measures of each file
+ * go through {@link MeasuresCollector#decorate}, the new issues of the file through {@link IssueAssigner#onIssue}
+ * and the file is then released, in the order the batch runs them.  Users are looked up in an
+ * {@link InMemoryUserFinder} with a configurable latency.
+ * <p/>
+ * Reports issues per second, bytes allocated per issue and file, and peak heap.  Options are given as
+ * <code>--name=value</code>, see {@link #DEFAULTS}:
+ * <pre>
+ *   java -cp benchmark/target/benchmarks.jar org.sonar.plugins.issueassign.benchmark.LoadHarness --issues=500000
+ * </pre>
+ */
+public final class LoadHarness {
+
+  private static final Map<String, Long> DEFAULTS = new HashMap<String, Long>();
+
+  static {
+    DEFAULTS.put("files", 10000L);
+    DEFAULTS.put("lines", 1000L);
+    DEFAULTS.put("authors", 2000L);
+    // share of the SCM authors, in percent, that are Sonar users
+    DEFAULTS.put("knownAuthorPercent", 20L);
+    // share of the files, in percent, without SCM measures
+    DEFAULTS.put("unmeasuredFilePercent", 5L);
+    // share of the files, in percent, with new issues, which are spread evenly over them
+    DEFAULTS.put("issueFilePercent", 100L);
+    DEFAULTS.put("issues", 500000L);
+    // Sonar users in the directory, including the known authors
+    DEFAULTS.put("users", 5000L);
+    DEFAULTS.put("lookupLatencyMicros", 500L);
+    // background threads parsing the SCM measures, 0 to parse them on the decorating thread
+    DEFAULTS.put("parseThreads", 0L);
+    // 1 to hold the raw SCM measures, and parse them only for files with issues
+    DEFAULTS.put("lazyParse", 0L);
+    // deflate level of the measures held until first use, 0 to hold them uncompressed
+    DEFAULTS.put("lazyCompression", 0L);
+    // size bound of the blame cache kept across rounds, in MB, 0 to parse every round
+    DEFAULTS.put("blameCacheMB", 0L);
+    // 1 to export a blame snapshot in the first round, and read it instead of the SCM measures in the next ones
+    DEFAULTS.put("snapshot", 0L);
+    // 0 to hold the measures of every file until the end of the round, as when they are not released
+    DEFAULTS.put("releaseMeasures", 1L);
+    // size bound of the measures held, in MB, over which the least recently used are compressed, 0 for no bound
+    DEFAULTS.put("maxHeapMB", 0L);
+    // heap is measured after a full GC every this many files, 0 to only measure at the end
+    DEFAULTS.put("retainedSampleFiles", 1000L);
+    DEFAULTS.put("rounds", 2L);
+    DEFAULTS.put("seed", 42L);
+  }
+
+  private static final long MB = 1024L * 1024L;
+
+  private final Map<String, Long> options;
+  private final java.io.File workingDir;
+
+  private LoadHarness(final Map<String, Long> options) throws IOException {
+    this.options = options;
+    // the blame cache of one round is read back by the next
+    final java.io.File cacheFile = java.io.File.createTempFile("issue-assign-harness", "");
+    this.workingDir = new java.io.File(cacheFile.getPath() + ".d");
+    cacheFile.delete();
+    this.workingDir.mkdirs();
+    this.workingDir.deleteOnExit();
+    new java.io.File(this.workingDir, BlameCache.CACHE_FILE).deleteOnExit();
+  }
+
+  public static void main(final String[] args) throws IOException {
+    final Map<String, Long> options = new HashMap<String, Long>(DEFAULTS);
+    for (final String arg : args) {
+      final int equals = arg.indexOf('=');
+      final String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+      if (name == null || !DEFAULTS.containsKey(name)) {
+        throw new IllegalArgumentException("Unknown option [" + arg + "], expected one of " + DEFAULTS.keySet());
+      }
+      options.put(name, Long.parseLong(arg.substring(equals + 1)));
+    }
+
+    final LoadHarness harness = new LoadHarness(options);
+    System.out.println("Issue Assign load harness " + options);
+    for (int round = 1; round <= harness.option("rounds"); round++) {
+      System.out.println("Round " + round + ":");
+      harness.run(round);
+    }
+  }
+
+  private int option(final String name) {
+    return this.options.get(name).intValue();
+  }
+
+  private void run(final int round) {
+    final int files = this.option("files");
+    final int lines = this.option("lines");
+    final int authors = this.option("authors");
+    final int issues = this.option("issues");
+    final int retainedSampleFiles = this.option("retainedSampleFiles");
+    final Random random = new Random(this.options.get("seed"));
+
+    final InMemoryUserFinder userFinder = new InMemoryUserFinder(this.sonarUsers(), this.options.get("lookupLatencyMicros"),
+        TimeUnit.MICROSECONDS);
+    final Settings settings = new Settings();
+    settings.setProperty(IssueAssignPlugin.PROPERTY_ENABLED, true);
+    settings.setProperty(IssueAssignPlugin.PROPERTY_RELEASE_MEASURES, this.option("releaseMeasures") > 0);
+    settings.setProperty(IssueAssignPlugin.PROPERTY_MEASURES_MAX_HEAP, this.option("maxHeapMB"));
+    settings.setProperty(IssueAssignPlugin.PROPERTY_DEFAULT_ASSIGNEE, SyntheticProject.DEFAULT_ASSIGNEE);
+    settings.setProperty(IssueAssignPlugin.PROPERTY_PARSE_THREADS, this.option("parseThreads"));
+    settings.setProperty(IssueAssignPlugin.PROPERTY_PARSE_LAZY, this.option("lazyParse") > 0);
+    settings.setProperty(IssueAssignPlugin.PROPERTY_PARSE_LAZY_COMPRESSION, this.option("lazyCompression"));
+    settings.setProperty(IssueAssignPlugin.PROPERTY_BLAME_CACHE_MAX_SIZE, this.option("blameCacheMB"));
+    if (this.option("snapshot") > 0) {
+      final java.io.File snapshot = new java.io.File(this.workingDir, "blame.snapshot");
+      snapshot.deleteOnExit();
+      settings.setProperty(round == 1 ? IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT_EXPORT
+          : IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT, snapshot.getPath());
+    }
+
+    final Project project = new Project("project");
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final UserDirectory userDirectory = new UserDirectory(userFinder.asUserFinder(), statistics);
+    final BlameCache blameCache = new BlameCache(settings, SonarStandIns.moduleFileSystem(this.workingDir), statistics);
+    blameCache.start();
+    final MeasuresCollector measuresCollector = new MeasuresCollector(settings, statistics, userDirectory, blameCache,
+        SonarStandIns.moduleFileSystem(this.workingDir));
+    measuresCollector.start();
+    final IssueAssigner issueAssigner = new IssueAssigner(measuresCollector, settings, userFinder.asUserFinder(),
+        statistics, userDirectory, null, null);
+    final MeasuresReleaser measuresReleaser = new MeasuresReleaser(measuresCollector, settings);
+    measuresCollector.shouldExecuteOnProject(project);
+    final boolean releaseMeasures = measuresReleaser.shouldExecuteOnProject(project);
+
+    final SonarStandIns.MeasureContext measureContext = new SonarStandIns.MeasureContext();
+    final SonarStandIns.Context issueContext = new SonarStandIns.Context();
+    final Allocations allocations = new Allocations();
+    final Heap heap = new Heap();
+
+    long decorateNanos = 0;
+    long issueNanos = 0;
+    long decorateBytes = 0;
+    long issueBytes = 0;
+    int issuesRaised = 0;
+
+    for (int file = 0; file < files; file++) {
+      final String key = "project:module:src/File" + file + ".java";
+      final File resource = new File(key);
+      resource.setEffectiveKey(key);
+      final boolean measured = random.nextInt(100) >= this.option("unmeasuredFilePercent");
+      final DecoratorContext decoratorContext = measureContext.of(measured
+          ? new SyntheticBlame(lines, SyntheticProject.commitsFor(lines), authors, random.nextLong()) : null);
+
+      final int fileIssues = this.issuesOf(file, files, issues);
+      final Issue[] newIssues = new Issue[fileIssues];
+      for (int i = 0; i < fileIssues; i++) {
+        newIssues[i] = SonarStandIns.issue(key + "#" + i, key, 1 + random.nextInt(lines));
+      }
+
+      long bytes = allocations.current();
+      long start = System.nanoTime();
+      measuresCollector.decorate(resource, decoratorContext);
+      decorateNanos += System.nanoTime() - start;
+      decorateBytes += allocations.current() - bytes;
+
+      bytes = allocations.current();
+      start = System.nanoTime();
+      for (final Issue issue : newIssues) {
+        issueAssigner.onIssue(issueContext.of(issue));
+      }
+      if (releaseMeasures) {
+        measuresReleaser.decorate(resource, decoratorContext);
+      }
+      issueNanos += System.nanoTime() - start;
+      issueBytes += allocations.current() - bytes;
+      issuesRaised += fileIssues;
+
+      if (retainedSampleFiles > 0 && (file + 1) % retainedSampleFiles == 0) {
+        heap.sampleRetained();
+      }
+    }
+    heap.sampleRetained();
+    measuresCollector.stop();
+    blameCache.stop();
+
+    System.out.println("  measures collected:  " + files + " files in " + millis(decorateNanos) + " ms, "
+        + allocations.format(decorateBytes, files) + " allocated per file");
+    System.out.println("  issues assigned:     " + issueContext.getAssignments() + " of " + issuesRaised + " in "
+        + millis(issueNanos) + " ms, " + (long) (issuesRaised / (issueNanos / 1e9)) + " issues/s, "
+        + allocations.format(issueBytes, issuesRaised) + " allocated per issue");
+    System.out.println("  UserFinder queries:  " + userFinder.getQueries());
+    System.out.println("  plugin statistics:   " + statistics);
+    System.out.println("  heap:                peak used " + heap.peakUsed() / MB + " MB, peak retained "
+        + heap.peakRetained() / MB + " MB");
+  }
+
+  /**
+   * @return the number of issues of the file, spread evenly over the share of the files with issues.
+   */
+  private int issuesOf(final int file, final int files, final int issues) {
+    final long issueFilePercent = this.option("issueFilePercent");
+    final int issueFile = (int) (file * issueFilePercent / 100);
+    final int issueFiles = (int) (files * issueFilePercent / 100);
+    if (issueFiles == 0 || (file + 1) * issueFilePercent / 100 == issueFile) {
+      return 0;
+    }
+    return issues / issueFiles + (issueFile < issues % issueFiles ? 1 : 0);
+  }
+
+  private List<User> sonarUsers() {
+    final int authors = this.option("authors");
+    final List<User> users = new ArrayList<User>();
+    users.add(SonarStandIns.user(SyntheticProject.DEFAULT_ASSIGNEE, null));
+    for (int i = 0; i < authors; i++) {
+      if (i % 100 < this.option("knownAuthorPercent")) {
+        users.add(SonarStandIns.user(SyntheticBlame.author(i), SyntheticBlame.author(i)));
+      }
+    }
+    for (int i = 0; users.size() < this.option("users"); i++) {
+      users.add(SonarStandIns.user("user" + i, "user" + i + "@example.org"));
+    }
+    return users;
+  }
+
+  private static long millis(final long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  /**
+   * Bytes allocated by the current thread, where the JVM can tell.
+   */
+  private static final class Allocations {
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    Allocations() {
+      final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      this.threads = bean instanceof com.sun.management.ThreadMXBean
+          && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+          ? (com.sun.management.ThreadMXBean) bean : null;
+      if (this.threads != null) {
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+      }
+    }
+
+    long current() {
+      return this.threads == null ? 0 : this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    String format(final long bytes, final int count) {
+      return this.threads == null || count == 0 ? "n/a bytes" : (bytes / count) + " bytes";
+    }
+  }
+
+  /**
+   * Peak heap in use, garbage included, and peak heap still reachable after a full GC.
+   */
+  private static final class Heap {
+
+    private final List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+    private long peakRetained;
+
+    Heap() {
+      for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          pool.resetPeakUsage();
+          this.pools.add(pool);
+        }
+      }
+    }
+
+    void sampleRetained() {
+      System.gc();
+      this.peakRetained = Math.max(this.peakRetained, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    }
+
+    long peakRetained() {
+      return this.peakRetained;
+    }
+
+    /**
+     * @return the sum of the peak usage of each heap pool, an upper bound as pools do not peak together.
+     */
+    long peakUsed() {
+      long peak = 0;
+      for (final MemoryPoolMXBean pool : this.pools) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+      return peak;
+    }
+  }
+}
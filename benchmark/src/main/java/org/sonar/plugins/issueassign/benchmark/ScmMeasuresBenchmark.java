@@ -0,0 +1,79 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.issueassign.measures.LastCommit;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
+import org.sonar.plugins.issueassign.measures.ScmMeasures;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning the SCM measures of one file into {@link ScmMeasures}, and of summarising its last commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScmMeasuresBenchmark {
+
+  @Param({"1000", "20000", "200000"})
+  public int lines;
+
+  @Param({"10", "500", "5000"})
+  public int authors;
+
+  private String authorsByLine;
+  private String datesByLine;
+  private String revisionsByLine;
+
+  @Setup
+  public void setUp() {
+    final SyntheticBlame blame = new SyntheticBlame(this.lines, SyntheticProject.commitsFor(this.lines),
+        this.authors, 42L);
+    this.authorsByLine = blame.getAuthors();
+    this.datesByLine = blame.getDates();
+    this.revisionsByLine = blame.getRevisions();
+  }
+
+  @Benchmark
+  public ScmMeasures parse() {
+    return new ScmMeasures("project:File.java", this.authorsByLine, this.datesByLine, this.revisionsByLine,
+        new ScmDictionary(), new ScmDictionary());
+  }
+
+  @Benchmark
+  public LastCommit parseAndSummarise() {
+    return this.parse().getLastCommit();
+  }
+}
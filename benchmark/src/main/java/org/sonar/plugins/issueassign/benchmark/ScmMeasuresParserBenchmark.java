@@ -0,0 +1,87 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
+import org.sonar.plugins.issueassign.measures.ScmMeasuresParser;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ScmMeasuresParser} with the {@link KeyValueFormat} path it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScmMeasuresParserBenchmark {
+
+  @Param({"100000"})
+  public int lines;
+
+  @Param({"50", "5000"})
+  public int commits;
+
+  private String authors;
+  private String dates;
+
+  @Setup
+  public void setUp() {
+    final SyntheticBlame blame = new SyntheticBlame(this.lines, this.commits, 100, 42L);
+    this.authors = blame.getAuthors();
+    this.dates = blame.getDates();
+  }
+
+  @Benchmark
+  public Map<Integer, String> keyValueFormatAuthors() {
+    return KeyValueFormat.parseIntString(this.authors);
+  }
+
+  @Benchmark
+  public Map<Integer, Date> keyValueFormatDates() {
+    return KeyValueFormat.parseIntDateTime(this.dates);
+  }
+
+  @Benchmark
+  public int[] parserAuthors() {
+    return new ScmMeasuresParser().parseIds(this.authors, new ScmDictionary());
+  }
+
+  @Benchmark
+  public long[] parserDates() {
+    return new ScmMeasuresParser().parseDateTimes(this.dates);
+  }
+}
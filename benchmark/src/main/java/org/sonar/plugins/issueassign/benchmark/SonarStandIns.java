@@ -0,0 +1,212 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.IssueHandler;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal in-memory stand-ins for the Sonar batch objects the plugin talks to, built as dynamic proxies so
+ * that they only implement the handful of methods the plugin calls.
+ */
+public final class SonarStandIns {
+
+  private SonarStandIns() {
+  }
+
+  public static User user(final String login, final String email) {
+    return proxy(User.class, new Handler() {
+      Object handle(final String method, final Object[] args) {
+        if ("login".equals(method)) {
+          return login;
+        }
+        if ("name".equals(method)) {
+          return login;
+        }
+        if ("email".equals(method)) {
+          return email;
+        }
+        return unsupported(method);
+      }
+    });
+  }
+
+  /**
+   * A user directory holding the given users, answering login, logins and "all users" queries.
+   */
+  public static UserFinder userFinder(final Collection<User> users) {
+    return new InMemoryUserFinder(users).asUserFinder();
+  }
+
+  /**
+   * A module whose base and working directories are the given directory.
+   */
+  public static ModuleFileSystem moduleFileSystem(final File directory) {
+    return proxy(ModuleFileSystem.class, new Handler() {
+      Object handle(final String method, final Object[] args) {
+        if ("baseDir".equals(method) || "workingDir".equals(method)) {
+          return directory;
+        }
+        return unsupported(method);
+      }
+    });
+  }
+
+  public static Issue issue(final String key, final String componentKey, final Integer line) {
+    return proxy(Issue.class, new Handler() {
+      Object handle(final String method, final Object[] args) {
+        if ("key".equals(method)) {
+          return key;
+        }
+        if ("componentKey".equals(method)) {
+          return componentKey;
+        }
+        if ("line".equals(method)) {
+          return line;
+        }
+        if ("isNew".equals(method)) {
+          return Boolean.TRUE;
+        }
+        return unsupported(method);
+      }
+    });
+  }
+
+  /**
+   * An issue handler context whose issue can be swapped between calls, so that a benchmark loop does not
+   * allocate a context per issue.
+   */
+  public static final class Context {
+
+    private Issue issue;
+    private User assignee;
+    private long assignments;
+    private final IssueHandler.Context proxy;
+
+    public Context() {
+      this.proxy = SonarStandIns.proxy(IssueHandler.Context.class, new Handler() {
+        Object handle(final String method, final Object[] args) {
+          if ("issue".equals(method)) {
+            return Context.this.issue;
+          }
+          if ("assign".equals(method)) {
+            Context.this.assignee = (User) args[0];
+            Context.this.assignments++;
+            return Context.this.proxy;
+          }
+          return unsupported(method);
+        }
+      });
+    }
+
+    public IssueHandler.Context of(final Issue issue) {
+      this.issue = issue;
+      this.assignee = null;
+      return this.proxy;
+    }
+
+    public User getAssignee() {
+      return this.assignee;
+    }
+
+    public long getAssignments() {
+      return this.assignments;
+    }
+  }
+
+  /**
+   * A decorator context holding the SCM measures of one file, swapped between files so that a harness loop
+   * does not allocate a context per file.
+   */
+  public static final class MeasureContext {
+
+    private final Map<Metric, Measure> measures = new HashMap<Metric, Measure>();
+    private final DecoratorContext proxy;
+
+    public MeasureContext() {
+      this.proxy = SonarStandIns.proxy(DecoratorContext.class, new Handler() {
+        Object handle(final String method, final Object[] args) {
+          if ("getMeasure".equals(method)) {
+            return MeasureContext.this.measures.get(args[0]);
+          }
+          return unsupported(method);
+        }
+      });
+    }
+
+    /**
+     * @param blame the measures of the file, or <code>null</code> for a file without SCM measures.
+     */
+    public DecoratorContext of(final SyntheticBlame blame) {
+      this.measures.clear();
+      if (blame != null) {
+        this.measures.put(CoreMetrics.SCM_AUTHORS_BY_LINE,
+            new Measure(CoreMetrics.SCM_AUTHORS_BY_LINE, blame.getAuthors()));
+        this.measures.put(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE,
+            new Measure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, blame.getDates()));
+        this.measures.put(CoreMetrics.SCM_REVISIONS_BY_LINE,
+            new Measure(CoreMetrics.SCM_REVISIONS_BY_LINE, blame.getRevisions()));
+      }
+      return this.proxy;
+    }
+  }
+
+  private static <T> T proxy(final Class<T> type, final Handler handler) {
+    return type.cast(Proxy.newProxyInstance(SonarStandIns.class.getClassLoader(), new Class<?>[]{type}, handler));
+  }
+
+  private abstract static class Handler implements InvocationHandler {
+
+    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+      final String name = method.getName();
+      if ("equals".equals(name)) {
+        return proxy == args[0];
+      }
+      if ("hashCode".equals(name)) {
+        return System.identityHashCode(proxy);
+      }
+      if ("toString".equals(name)) {
+        return "stand-in " + proxy.getClass().getInterfaces()[0].getSimpleName();
+      }
+      return this.handle(name, args);
+    }
+
+    abstract Object handle(String method, Object[] args);
+
+    Object unsupported(final String method) {
+      throw new UnsupportedOperationException(method);
+    }
+  }
+}
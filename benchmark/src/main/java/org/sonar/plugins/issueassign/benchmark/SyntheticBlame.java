@@ -0,0 +1,94 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Generates SCM measure data shaped like real blame: runs of consecutive lines share the same
+ * commit, and each commit has a single author, revision and date.
+ */
+public class SyntheticBlame {
+
+  private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
+  private static final long START = 1262304000000L;
+  private static final long DAY = 24L * 60L * 60L * 1000L;
+
+  private final StringBuilder authors = new StringBuilder();
+  private final StringBuilder dates = new StringBuilder();
+  private final StringBuilder revisions = new StringBuilder();
+
+  /**
+   * @param lines      number of lines in the file
+   * @param commits    number of distinct commits touching the file
+   * @param authorPool number of distinct authors to pick commit authors from
+   * @param seed       random seed, so that runs are reproducible
+   */
+  public SyntheticBlame(final int lines, final int commits, final int authorPool, final long seed) {
+    final Random random = new Random(seed);
+    final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+
+    final String[] commitAuthors = new String[commits];
+    final String[] commitDates = new String[commits];
+    final String[] commitRevisions = new String[commits];
+    for (int i = 0; i < commits; i++) {
+      commitAuthors[i] = author(random.nextInt(authorPool));
+      commitDates[i] = dateFormat.format(new Date(START + i * DAY + random.nextInt(1000) * 1000L));
+      commitRevisions[i] = Long.toHexString(seed * 31 + i) + Integer.toHexString(random.nextInt());
+    }
+
+    final int averageRun = Math.max(1, lines / Math.max(1, commits * 4));
+    int line = 1;
+    while (line <= lines) {
+      final int commit = random.nextInt(commits);
+      final int run = Math.min(lines - line + 1, 1 + random.nextInt(averageRun * 2));
+      for (int i = 0; i < run; i++, line++) {
+        append(this.authors, line, commitAuthors[commit]);
+        append(this.dates, line, commitDates[commit]);
+        append(this.revisions, line, commitRevisions[commit]);
+      }
+    }
+  }
+
+  public static String author(final int index) {
+    return "author" + index + "@example.com";
+  }
+
+  public String getAuthors() {
+    return this.authors.toString();
+  }
+
+  public String getDates() {
+    return this.dates.toString();
+  }
+
+  public String getRevisions() {
+    return this.revisions.toString();
+  }
+
+  private static void append(final StringBuilder data, final int line, final String value) {
+    if (data.length() > 0) {
+      data.append(';');
+    }
+    data.append(line).append('=').append(value);
+  }
+}
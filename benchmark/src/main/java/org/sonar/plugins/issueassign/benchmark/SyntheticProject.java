@@ -0,0 +1,114 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
+import org.sonar.plugins.issueassign.measures.ScmMeasures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A project of synthetic files with their SCM measures collected, the new issues raised against them and the
+ * Sonar users known to the server.
+ */
+public class SyntheticProject {
+
+  public static final String DEFAULT_ASSIGNEE = "default";
+
+  private final Settings settings = new Settings();
+  private final MeasuresCollector measuresCollector = new MeasuresCollector(this.settings);
+  private final List<User> sonarUsers = new ArrayList<User>();
+  private final Issue[] issues;
+
+  /**
+   * @param files                 number of files
+   * @param lines                 number of lines of each file
+   * @param authors               number of distinct SCM authors
+   * @param knownAuthorPercent    share of the SCM authors, in percent, that are also Sonar users
+   * @param unmeasuredFilePercent share of the files, in percent, that have no SCM measures
+   * @param issuesPerKLine        new issues raised per 1000 lines, at least one per file
+   * @param seed                  random seed, so that runs are reproducible
+   */
+  public SyntheticProject(final int files, final int lines, final int authors, final int knownAuthorPercent,
+                          final int unmeasuredFilePercent, final int issuesPerKLine, final long seed) {
+    final Random random = new Random(seed);
+
+    this.settings.setProperty(IssueAssignPlugin.PROPERTY_ENABLED, true);
+    this.settings.setProperty(IssueAssignPlugin.PROPERTY_DEFAULT_ASSIGNEE, DEFAULT_ASSIGNEE);
+
+    this.sonarUsers.add(SonarStandIns.user(DEFAULT_ASSIGNEE, null));
+    for (int i = 0; i < authors; i++) {
+      if (i % 100 < knownAuthorPercent) {
+        this.sonarUsers.add(SonarStandIns.user(SyntheticBlame.author(i), SyntheticBlame.author(i)));
+      }
+    }
+
+    final ScmDictionary revisions = new ScmDictionary();
+    final int issuesPerFile = Math.max(1, (int) ((long) lines * issuesPerKLine / 1000));
+    final List<Issue> fileIssues = new ArrayList<Issue>();
+    for (int file = 0; file < files; file++) {
+      final String key = "project:module:src/File" + file + ".java";
+      if (random.nextInt(100) >= unmeasuredFilePercent) {
+        final SyntheticBlame blame = new SyntheticBlame(lines, commitsFor(lines), authors, seed + file);
+        this.measuresCollector.getResources().put(key, new ScmMeasures(key, blame.getAuthors(), blame.getDates(),
+            blame.getRevisions(), this.measuresCollector.getAuthors(), revisions));
+      }
+      for (int issue = 0; issue < issuesPerFile; issue++) {
+        fileIssues.add(SonarStandIns.issue(key + "#" + issue, key, 1 + random.nextInt(lines)));
+      }
+    }
+    this.issues = fileIssues.toArray(new Issue[fileIssues.size()]);
+  }
+
+  /**
+   * @return a plausible number of commits for a file of the given size.
+   */
+  public static int commitsFor(final int lines) {
+    return Math.max(1, Math.min(5000, lines / 40));
+  }
+
+  public Settings getSettings() {
+    return this.settings;
+  }
+
+  public MeasuresCollector getMeasuresCollector() {
+    return this.measuresCollector;
+  }
+
+  public List<User> getSonarUsers() {
+    return this.sonarUsers;
+  }
+
+  public UserFinder newUserFinder() {
+    return SonarStandIns.userFinder(this.sonarUsers);
+  }
+
+  public Issue[] getIssues() {
+    return this.issues;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.user.User;
+import org.sonar.plugins.issueassign.Users;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the Sonar user of an SCM author that is a Sonar login, that is the email address of a Sonar
+ * user, or that is neither.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UsersBenchmark {
+
+  @Param({"10", "500", "5000"})
+  public int authors;
+
+  private Users users;
+  private String[] logins;
+  private String[] emails;
+  private String[] unknown;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    this.logins = new String[this.authors];
+    this.emails = new String[this.authors];
+    this.unknown = new String[this.authors];
+
+    final List<User> sonarUsers = new ArrayList<User>();
+    final ScmDictionary scmAuthors = new ScmDictionary();
+    for (int i = 0; i < this.authors; i++) {
+      this.logins[i] = "login" + i;
+      this.emails[i] = SyntheticBlame.author(i);
+      this.unknown[i] = "unknown" + i + "@example.com";
+      sonarUsers.add(SonarStandIns.user(this.logins[i], this.emails[i]));
+      scmAuthors.idOf(this.logins[i]);
+      scmAuthors.idOf(this.emails[i]);
+      scmAuthors.idOf(this.unknown[i]);
+    }
+
+    this.users = new Users(SonarStandIns.userFinder(sonarUsers));
+    this.users.resolveAuthors(scmAuthors);
+  }
+
+  @Benchmark
+  public User byLogin() {
+    return this.users.findSonarUser(this.logins[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public User byEmail() {
+    return this.users.findSonarUser(this.emails[this.nextIndex()]);
+  }
+
+  @Benchmark
+  public User unknown() {
+    return this.users.findSonarUser(this.unknown[this.nextIndex()]);
+  }
+
+  private int nextIndex() {
+    final int index = this.next;
+    this.next = (this.next + 1) % this.authors;
+    return index;
+  }
+}
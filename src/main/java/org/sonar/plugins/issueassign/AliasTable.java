@@ -0,0 +1,183 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Immutable map of SCM authors to Sonar logins, held in an open-addressing hash table: parallel arrays of keys,
+ * hashes and logins probed linearly, at most half full.  Authors are normalised as by {@link UserIndex}, so that
+ * an alias matches whatever the case of the author.
+ * <p/>
+ * Aliases are read from lines of <code>scm-author = sonar-login</code>, where blank lines and lines starting with
+ * <code>#</code> are ignored.  The lines are inserted into the table as they are read, so that an alias file is
+ * never held in memory as a whole.
+ */
+public final class AliasTable {
+
+  public static final AliasTable EMPTY = new Builder().build();
+
+  private static final Logger LOG = LoggerFactory.getLogger(AliasTable.class);
+  private static final char SEPARATOR = '=';
+  private static final char COMMENT = '#';
+
+  private final String[] keys;
+  private final int[] hashes;
+  private final String[] logins;
+  private final int size;
+
+  private AliasTable(final String[] keys, final int[] hashes, final String[] logins, final int size) {
+    this.keys = keys;
+    this.hashes = hashes;
+    this.logins = logins;
+    this.size = size;
+  }
+
+  /**
+   * Reads aliases up to the end of the reader, which is left open.  Malformed lines are logged and skipped, and
+   * an alias defined twice takes the login of its last line.
+   *
+   * @param source names the aliases in log messages.
+   */
+  public static AliasTable read(final Reader reader, final String source) throws IOException {
+    final BufferedReader lines = new BufferedReader(reader);
+    final Builder builder = new Builder();
+    int lineNumber = 0;
+    String line;
+    while ((line = lines.readLine()) != null) {
+      lineNumber++;
+      final String trimmed = line.trim();
+      if (trimmed.length() == 0 || trimmed.charAt(0) == COMMENT) {
+        continue;
+      }
+      final int separator = trimmed.indexOf(SEPARATOR);
+      final String author = separator < 0 ? "" : trimmed.substring(0, separator).trim();
+      final String login = separator < 0 ? "" : trimmed.substring(separator + 1).trim();
+      if (author.length() == 0 || login.length() == 0) {
+        LOG.warn("Ignoring malformed alias at line " + lineNumber + " of [" + source + "]: " + line);
+        continue;
+      }
+      final String previous = builder.put(UserIndex.normalise(author), login);
+      if (previous != null && LOG.isDebugEnabled()) {
+        LOG.debug("Alias [" + author + "] redefined at line " + lineNumber + " of [" + source + "]");
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return the login the SCM author is an alias of, or <code>null</code> if it is not an alias.
+   */
+  public String getLogin(final String author) {
+    if (this.size == 0 || author == null) {
+      return null;
+    }
+    final String key = UserIndex.normalise(author);
+    final int hash = hash(key);
+    final int mask = this.keys.length - 1;
+    for (int slot = hash & mask; this.keys[slot] != null; slot = (slot + 1) & mask) {
+      if (this.hashes[slot] == hash && this.keys[slot].equals(key)) {
+        return this.logins[slot];
+      }
+    }
+    return null;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  private static int hash(final String key) {
+    final int hash = key.hashCode();
+    // spread the high bits, which the mask would otherwise drop
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Grows its table by doubling as aliases are put, and hands it over as is once built.
+   */
+  static final class Builder {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private String[] logins = new String[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @return the login the normalised key was previously an alias of, or <code>null</code>.
+     */
+    String put(final String key, final String login) {
+      if ((this.size + 1) * 2 > this.keys.length) {
+        this.resize(this.keys.length * 2);
+      }
+      final int hash = hash(key);
+      final int mask = this.keys.length - 1;
+      int slot = hash & mask;
+      for (; this.keys[slot] != null; slot = (slot + 1) & mask) {
+        if (this.hashes[slot] == hash && this.keys[slot].equals(key)) {
+          final String previous = this.logins[slot];
+          this.logins[slot] = login;
+          return previous;
+        }
+      }
+      this.keys[slot] = key;
+      this.hashes[slot] = hash;
+      this.logins[slot] = login;
+      this.size++;
+      return null;
+    }
+
+    AliasTable build() {
+      final AliasTable table = new AliasTable(this.keys, this.hashes, this.logins, this.size);
+      this.keys = null;
+      this.hashes = null;
+      this.logins = null;
+      return table;
+    }
+
+    private void resize(final int capacity) {
+      final String[] oldKeys = this.keys;
+      final int[] oldHashes = this.hashes;
+      final String[] oldLogins = this.logins;
+      this.keys = new String[capacity];
+      this.hashes = new int[capacity];
+      this.logins = new String[capacity];
+      final int mask = capacity - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          int slot = oldHashes[i] & mask;
+          while (this.keys[slot] != null) {
+            slot = (slot + 1) & mask;
+          }
+          this.keys[slot] = oldKeys[i];
+          this.hashes[slot] = oldHashes[i];
+          this.logins[slot] = oldLogins[i];
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * The SCM author aliases configured for the analysis, compiled into an {@link AliasTable} when the batch starts.
+ * An alias file that cannot be read is logged and leaves no alias, rather than failing the analysis.
+ */
+public class Aliases implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Aliases.class);
+  private final Settings settings;
+  private final ModuleFileSystem moduleFileSystem;
+  // compiled once, then only read, possibly from other threads
+  private volatile AliasTable table = AliasTable.EMPTY;
+
+  public Aliases(final Settings settings, final ModuleFileSystem moduleFileSystem) {
+    this.settings = settings;
+    this.moduleFileSystem = moduleFileSystem;
+  }
+
+  public void start() {
+    final String path = this.settings.getString(IssueAssignPlugin.PROPERTY_ALIASES_FILE);
+    if (StringUtils.isEmpty(path)) {
+      LOG.debug("Plugin setting [" + IssueAssignPlugin.PROPERTY_ALIASES_FILE + "] not configured.");
+      return;
+    }
+
+    final File file = this.resolve(path);
+    try {
+      final long start = System.nanoTime();
+      this.table = read(file);
+      LOG.info("Loaded " + this.table.size() + " SCM author aliases from [" + file + "] in "
+          + (System.nanoTime() - start) / 1000000 + " ms");
+    } catch (final IOException e) {
+      LOG.warn("Unable to read SCM author aliases from [" + file + "]", e);
+    }
+  }
+
+  /**
+   * @return the login the SCM author is an alias of, or <code>null</code> if it is not an alias.
+   */
+  public String getLogin(final String scmAuthor) {
+    return this.table.getLogin(scmAuthor);
+  }
+
+  private File resolve(final String path) {
+    final File file = new File(path);
+    return file.isAbsolute() ? file : new File(this.moduleFileSystem.baseDir(), path);
+  }
+
+  private static AliasTable read(final File file) throws IOException {
+    final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+    try {
+      return AliasTable.read(reader, file.getPath());
+    } finally {
+      reader.close();
+    }
+  }
+}
@@ -24,65 +24,112 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.config.Settings;
 import org.sonar.api.user.User;
 import org.sonar.api.user.UserFinder;
-import org.sonar.plugins.issueassign.exception.IssueAssignPluginException;
-import org.sonar.plugins.issueassign.exception.SonarUserNotFoundException;
-import org.sonar.plugins.issueassign.util.PluginUtils;
+import org.sonar.plugins.issueassign.Assignment.Outcome;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class Assign {
 
   private static final Logger LOG = LoggerFactory.getLogger(Assign.class);
-  private static final String OVERRIDE_NOT_FOUND_MSG = "Override assignee is NOT configured.";
   private final Settings settings;
   private final Users users;
+  private final Aliases aliases;
+  // alias logins already looked up, and those of them that are not Sonar users
+  private final ConcurrentMap<String, User> aliasedUsers = new ConcurrentHashMap<String, User>();
+  private final Set<String> unknownAliasedUsers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private volatile AssignConfiguration configuration;
 
   public Assign(final Settings settings, final UserFinder userFinder) {
+    this(settings, new Users(userFinder));
+  }
+
+  public Assign(final Settings settings, final Users users) {
+    this(settings, users, null);
+  }
+
+  /**
+   * @param aliases the SCM author aliases, or <code>null</code> if there are none.
+   */
+  public Assign(final Settings settings, final Users users, final Aliases aliases) {
     this.settings = settings;
-    this.users = new Users(userFinder);
+    this.users = users;
+    this.aliases = aliases;
   }
 
-  public User getAssignee(final String scmAuthor) throws IssueAssignPluginException {
+  /**
+   * Chooses the assignee for an issue: the override assignee if configured, else the Sonar user the SCM author
+   * is an alias of, else the Sonar user matching the SCM author, else the default assignee.
+   *
+   * @param scmAuthor the SCM author responsible for the issue, or <code>null</code> if not known.
+   */
+  public Assignment assign(final String scmAuthor) {
 
-    User sonarUser;
+    final AssignConfiguration assignConfiguration = this.getConfiguration();
 
-    try {
-      return this.getOverrideAssignee();
-    } catch (final IssueAssignPluginException e) {
-      LOG.debug(OVERRIDE_NOT_FOUND_MSG);
+    final User overrideUser = assignConfiguration.getOverrideAssignee();
+    if (overrideUser != null) {
+      return Assignment.to(Outcome.OVERRIDE, overrideUser);
     }
 
-    try {
-      sonarUser = this.users.getSonarUser(scmAuthor);
-      return sonarUser;
-    } catch (final SonarUserNotFoundException e) {
-      LOG.debug("Sonar user not found: " + scmAuthor);
-      return this.getDefaultAssignee();
+    if (scmAuthor != null) {
+      final User aliasedUser = this.findAliasedUser(scmAuthor);
+      if (aliasedUser != null) {
+        return Assignment.to(Outcome.SCM_AUTHOR, aliasedUser);
+      }
+      final User sonarUser = this.users.findSonarUser(scmAuthor);
+      if (sonarUser != null) {
+        return Assignment.to(Outcome.SCM_AUTHOR, sonarUser);
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Sonar user not found: " + scmAuthor);
+      }
     }
-  }
 
-  public User getAssignee() throws IssueAssignPluginException {
-    try {
-      return this.getOverrideAssignee();
-    } catch (final IssueAssignPluginException e) {
-      LOG.debug(OVERRIDE_NOT_FOUND_MSG);
+    final User defaultUser = assignConfiguration.getDefaultAssignee();
+    if (defaultUser != null) {
+      return Assignment.to(Outcome.DEFAULT, defaultUser);
     }
-
-    return this.getDefaultAssignee();
+    return Assignment.unassigned();
   }
 
-  private User getOverrideAssignee() throws IssueAssignPluginException {
-    final User overrideUser = this.getConfiguredSonarUser(IssueAssignPlugin.PROPERTY_OVERRIDE_ASSIGNEE);
-    LOG.debug("Override assignee is configured: " + overrideUser.login());
-    return overrideUser;
-  }
-
-  private User getDefaultAssignee() throws IssueAssignPluginException {
-    final User defaultUser = this.getConfiguredSonarUser(IssueAssignPlugin.PROPERTY_DEFAULT_ASSIGNEE);
-    LOG.debug("Default assignee is configured:" + defaultUser.login());
-    return defaultUser;
+  private User findAliasedUser(final String scmAuthor) {
+    final String login = this.aliases == null ? null : this.aliases.getLogin(scmAuthor);
+    if (login == null) {
+      return null;
+    }
+    final User knownUser = this.aliasedUsers.get(login);
+    if (knownUser != null || this.unknownAliasedUsers.contains(login)) {
+      return knownUser;
+    }
+    final User aliasedUser = this.users.findSonarUser(login);
+    if (aliasedUser == null) {
+      if (!this.unknownAliasedUsers.add(login)) {
+        return null;
+      }
+      LOG.warn("SCM author [" + scmAuthor + "] is an alias of [" + login + "], which is not a Sonar user.");
+    } else {
+      this.aliasedUsers.put(login, aliasedUser);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("SCM author [" + scmAuthor + "] is an alias of Sonar user [" + login + "]");
+      }
+    }
+    return aliasedUser;
   }
 
-  private User getConfiguredSonarUser(final String key) throws IssueAssignPluginException {
-    final String configuredUser = PluginUtils.getConfiguredSetting(settings, key);
-    return this.users.getSonarUser(configuredUser);
+  private AssignConfiguration getConfiguration() {
+    AssignConfiguration current = this.configuration;
+    if (current == null) {
+      synchronized (this) {
+        current = this.configuration;
+        if (current == null) {
+          current = new AssignConfiguration(this.settings, this.users);
+          this.configuration = current;
+        }
+      }
+    }
+    return current;
   }
 }
@@ -0,0 +1,72 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
+import org.sonar.api.user.User;
+
+/**
+ * Snapshot of the configured override and default assignees, resolved to Sonar users once per analysis.
+ */
+public class AssignConfiguration {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AssignConfiguration.class);
+  private final User overrideAssignee;
+  private final User defaultAssignee;
+
+  public AssignConfiguration(final Settings settings, final Users users) {
+    this.overrideAssignee = resolve(settings, users, IssueAssignPlugin.PROPERTY_OVERRIDE_ASSIGNEE);
+    this.defaultAssignee = resolve(settings, users, IssueAssignPlugin.PROPERTY_DEFAULT_ASSIGNEE);
+  }
+
+  /**
+   * @return the user to whom all issues are assigned, or <code>null</code> if not configured.
+   */
+  public User getOverrideAssignee() {
+    return this.overrideAssignee;
+  }
+
+  /**
+   * @return the user to whom issues are assigned when the SCM author is unknown, or <code>null</code>
+   * if not configured.
+   */
+  public User getDefaultAssignee() {
+    return this.defaultAssignee;
+  }
+
+  private static User resolve(final Settings settings, final Users users, final String key) {
+    final String configuredUser = settings.getString(key);
+    if (StringUtils.isEmpty(configuredUser)) {
+      LOG.debug("Plugin setting [" + key + "] not configured.");
+      return null;
+    }
+
+    final User user = users.findSonarUser(configuredUser);
+    if (user == null) {
+      LOG.warn("Configured assignee [" + configuredUser + "] for [" + key + "] is not a Sonar user.");
+    } else {
+      LOG.debug("Assignee [" + key + "] is configured: " + user.login());
+    }
+    return user;
+  }
+}
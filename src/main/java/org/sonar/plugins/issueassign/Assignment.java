@@ -0,0 +1,81 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.sonar.api.user.User;
+
+/**
+ * The outcome of choosing an assignee for an issue.  Cases that are expected for a share of issues, such as
+ * an SCM author who is not a Sonar user, are reported through the {@link Outcome} rather than by exception.
+ */
+public final class Assignment {
+
+  public enum Outcome {
+    /** assigned to the configured override assignee */
+    OVERRIDE,
+    /** assigned to the Sonar user matching the SCM author */
+    SCM_AUTHOR,
+    /** assigned to the configured default assignee */
+    DEFAULT,
+    /** no assignee could be found */
+    UNASSIGNED
+  }
+
+  private static final Assignment UNASSIGNED = new Assignment(Outcome.UNASSIGNED, null);
+
+  private final Outcome outcome;
+  private final User assignee;
+
+  private Assignment(final Outcome outcome, final User assignee) {
+    this.outcome = outcome;
+    this.assignee = assignee;
+  }
+
+  public static Assignment to(final Outcome outcome, final User assignee) {
+    if (assignee == null) {
+      throw new IllegalArgumentException("An assignment needs an assignee, outcome [" + outcome + "]");
+    }
+    return new Assignment(outcome, assignee);
+  }
+
+  public static Assignment unassigned() {
+    return UNASSIGNED;
+  }
+
+  public Outcome getOutcome() {
+    return this.outcome;
+  }
+
+  /**
+   * @return the assignee, or <code>null</code> if the issue is {@link Outcome#UNASSIGNED}.
+   */
+  public User getAssignee() {
+    return this.assignee;
+  }
+
+  public boolean isAssigned() {
+    return this.assignee != null;
+  }
+
+  @Override
+  public String toString() {
+    return this.outcome + (this.assignee == null ? "" : " [" + this.assignee.login() + "]");
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+/**
+ * The SCM author held responsible for an issue, as found by {@link Blame}.  Resources without SCM measures and
+ * last commits without a unique author are reported through the {@link Outcome} rather than by exception.
+ */
+public final class Authorship {
+
+  public enum Outcome {
+    /** the author is the last committer of the resource */
+    LAST_COMMITTER,
+    /** the resource has no SCM measures */
+    NO_SCM_MEASURES,
+    /** the last commit of the resource has no unique author */
+    NO_UNIQUE_AUTHOR
+  }
+
+  private static final Authorship NO_SCM_MEASURES = new Authorship(Outcome.NO_SCM_MEASURES, null);
+  private static final Authorship NO_UNIQUE_AUTHOR = new Authorship(Outcome.NO_UNIQUE_AUTHOR, null);
+
+  private final Outcome outcome;
+  private final String author;
+
+  private Authorship(final Outcome outcome, final String author) {
+    this.outcome = outcome;
+    this.author = author;
+  }
+
+  public static Authorship lastCommitter(final String author) {
+    return new Authorship(Outcome.LAST_COMMITTER, author);
+  }
+
+  public static Authorship noScmMeasures() {
+    return NO_SCM_MEASURES;
+  }
+
+  public static Authorship noUniqueAuthor() {
+    return NO_UNIQUE_AUTHOR;
+  }
+
+  public Outcome getOutcome() {
+    return this.outcome;
+  }
+
+  /**
+   * @return the SCM author, or <code>null</code> if none was found.
+   */
+  public String getAuthor() {
+    return this.author;
+  }
+
+  /**
+   * @return whether the SCM measures of the resource could be used to look for an author, even if the last
+   * commit has no author recorded.
+   */
+  public boolean isResolved() {
+    return this.outcome == Outcome.LAST_COMMITTER;
+  }
+
+  @Override
+  public String toString() {
+    return this.outcome + (this.author == null ? "" : " [" + this.author + "]");
+  }
+}
@@ -22,93 +22,74 @@ package org.sonar.plugins.issueassign;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.issue.Issue;
-import org.sonar.plugins.issueassign.exception.MissingScmMeasureDataException;
-import org.sonar.plugins.issueassign.exception.NoUniqueAuthorForLastCommitException;
+import org.sonar.plugins.issueassign.measures.LastCommit;
 import org.sonar.plugins.issueassign.measures.MeasuresCollector;
 import org.sonar.plugins.issueassign.measures.ScmMeasures;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class Blame {
 
   private static final Logger LOG = LoggerFactory.getLogger(Blame.class);
-  private final MeasuresCollector measuresCollector;
+  private final List<BlameSource> sources;
 
   public Blame(final MeasuresCollector measuresCollector) {
-    this.measuresCollector = measuresCollector;
+    this(Collections.<BlameSource>singletonList(new MeasuresBlameSource(measuresCollector)));
   }
 
-  public String getScmAuthorForIssue(final Issue issue) throws MissingScmMeasureDataException {
-
-    final String authorForIssueLine = this.getAuthorForIssueLine(issue);
-    final String lastCommitterForResource = getLastCommitterForResource(issue.componentKey());
-
-    if (lastCommitterForResource.equals(authorForIssueLine)) {
-      LOG.debug("Author [" + authorForIssueLine + "] is also the last committer.");
-      return authorForIssueLine;
-    }
-
-    LOG.debug("Last committer differs from author, assigning to last committer [" + lastCommitterForResource + "]");
-    return lastCommitterForResource;
+  /**
+   * @param sources the sources of blame, in the order in which they are asked.
+   */
+  public Blame(final List<BlameSource> sources) {
+    this.sources = new ArrayList<BlameSource>(sources);
   }
 
-  private String getLastCommitterForResource(final String resourceKey) throws MissingScmMeasureDataException {
-    final Date lastCommitDate = this.getLastCommitDate(resourceKey);
-    final List<Integer> linesFromLastCommit = this.getLinesFromLastCommit(resourceKey, lastCommitDate);
-    final ScmMeasures scmMeasures = this.getMeasuresForResource(resourceKey);
-
-    String author = null;
+  /**
+   * Finds the last committer of the resource holding the issue.
+   */
+  public Authorship getAuthorshipForIssue(final Issue issue) {
 
-    for (final Integer line : linesFromLastCommit) {
-      if (author == null) {
-        author = scmMeasures.getAuthorsByLine().get(line);
-      } else {
-        final String nextAuthor = scmMeasures.getAuthorsByLine().get(line);
-        if (!nextAuthor.equals(author)) {
-          final String msg = "No unique author found for resource [" + resourceKey + "]";
-          LOG.error(msg);
-          throw new NoUniqueAuthorForLastCommitException(msg);
-        }
+    final String resourceKey = issue.componentKey();
+    final ScmMeasures scmMeasures = this.findMeasures(resourceKey);
+    if (scmMeasures == null) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("No SCM measures for resource [" + resourceKey + "]");
       }
+      return Authorship.noScmMeasures();
     }
 
-    LOG.debug("Found last committer [" + author + "] for resource [" + resourceKey + "]");
-    return author;
-  }
+    final LastCommit lastCommit = scmMeasures.getLastCommit();
+    if (!lastCommit.hasUniqueAuthor()) {
+      LOG.warn("No unique author found for resource [" + resourceKey + "]");
+      return Authorship.noUniqueAuthor();
+    }
 
-  private String getAuthorForIssueLine(final Issue issue) throws MissingScmMeasureDataException {
-    return getMeasuresForResource(issue.componentKey()).getAuthorsByLine().get(issue.line());
-  }
+    final String lastCommitterForResource = lastCommit.getAuthor();
 
-  private ScmMeasures getMeasuresForResource(final String resourceKey) throws MissingScmMeasureDataException {
-    final ScmMeasures scmMeasures = this.measuresCollector.getResources().get(resourceKey);
-    if (scmMeasures == null) {
-      throw new MissingScmMeasureDataException();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Found last committer [" + lastCommitterForResource + "] for resource [" + resourceKey + "]");
+      final Integer line = issue.line();
+      final String authorForIssueLine = line == null ? null : scmMeasures.getAuthor(line);
+      if (lastCommitterForResource != null && lastCommitterForResource.equals(authorForIssueLine)) {
+        LOG.debug("Author [" + authorForIssueLine + "] is also the last committer.");
+      } else {
+        LOG.debug("Last committer differs from author, assigning to last committer [" + lastCommitterForResource + "]");
+      }
     }
-    return scmMeasures;
-  }
 
-  private Date getLastCommitDate(final String resourceKey) throws MissingScmMeasureDataException {
-    final ScmMeasures scmMeasures = this.getMeasuresForResource(resourceKey);
-    final Collection<Date> commitDatesForResource = scmMeasures.getLastCommitsByLine().values();
-    final SortedSet<Date> sortedSet = new TreeSet(commitDatesForResource);
-    return sortedSet.last();
+    return Authorship.lastCommitter(lastCommitterForResource);
   }
 
-  private List<Integer> getLinesFromLastCommit(final String resourceKey, final Date lastCommitDate) throws MissingScmMeasureDataException {
-
-    final List<Integer> lines = new ArrayList<Integer>();
-    final ScmMeasures scmMeasures = this.getMeasuresForResource(resourceKey);
-    final Iterator<Map.Entry<Integer, Date>> lastCommitsIterator =
-        scmMeasures.getLastCommitsByLine().entrySet().iterator();
-
-    while (lastCommitsIterator.hasNext()) {
-      final Map.Entry<Integer, Date> entry = lastCommitsIterator.next();
-      if (entry.getValue().equals(lastCommitDate)) {
-        lines.add(entry.getKey());
+  private ScmMeasures findMeasures(final String resourceKey) {
+    for (final BlameSource source : this.sources) {
+      // waits for the measures of this resource only, if they are still being parsed
+      final ScmMeasures scmMeasures = source.getMeasures(resourceKey);
+      if (scmMeasures != null && !scmMeasures.isEmpty()) {
+        return scmMeasures;
       }
     }
-
-    return lines;
+    return null;
   }
 }
@@ -17,10 +17,18 @@
  * License along with this program; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
  */
-package org.sonar.plugins.issueassign.exception;
+package org.sonar.plugins.issueassign;
 
-public class NoUniqueAuthorForLastCommitException extends RuntimeException {
-  public NoUniqueAuthorForLastCommitException(final String msg) {
-    super(msg);
-  }
+import org.sonar.plugins.issueassign.measures.ScmMeasures;
+
+/**
+ * Where {@link Blame} looks for the SCM blame of the resource holding an issue.  Sources are asked in turn, until
+ * one has blame for the resource.
+ */
+public interface BlameSource {
+
+  /**
+   * @return the blame of the resource, or <code>null</code> if this source has none.
+   */
+  ScmMeasures getMeasures(String resourceKey);
 }
@@ -0,0 +1,292 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.issueassign.measures.BlameCache;
+import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
+import org.sonar.plugins.issueassign.measures.ScmMeasures;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Blame read from the local Git repository of the module, for resources without SCM measures.  A resource is only
+ * resolved to its file and blamed once one of its issues asks for it, and its blame is kept until the resource is
+ * {@link MeasuresCollector#release released}.  Lines changed since the last commit have no blame.  The blame of
+ * files without such lines is also kept across analyses by the {@link BlameCache}, if any, for as long as their
+ * path and content, identified by their blob id, stay the same.
+ * <p/>
+ * Resource keys are mapped to files under the source and test directories of the module, then under its base
+ * directory: as a path first and, failing that, as a Java class name.
+ */
+public class GitBlameSource implements BlameSource, BatchExtension, MeasuresCollector.ReleaseListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GitBlameSource.class);
+  private static final String DEFAULT_PACKAGE = "[default].";
+  private final boolean enabled;
+  private final ModuleFileSystem moduleFileSystem;
+  private final ScmDictionary authors;
+  private final ScmDictionary revisions = new ScmDictionary();
+  private final IssueAssignStatistics statistics;
+  private final BlameCache blameCache;
+
+  // blame of each resource, resolved and computed at most once by the first issue to ask for it
+  private final ConcurrentMap<String, FutureTask<ScmMeasures>> blames = new ConcurrentHashMap<String, FutureTask<ScmMeasures>>();
+  private Repository repository;
+  private boolean repositoryOpened;
+
+  public GitBlameSource(final Settings settings, final ModuleFileSystem moduleFileSystem,
+                        final MeasuresCollector measuresCollector, final IssueAssignStatistics statistics) {
+    this(settings, moduleFileSystem, measuresCollector, statistics, null);
+  }
+
+  public GitBlameSource(final Settings settings, final ModuleFileSystem moduleFileSystem,
+                        final MeasuresCollector measuresCollector, final IssueAssignStatistics statistics,
+                        final BlameCache blameCache) {
+    this.enabled = settings.getBoolean(IssueAssignPlugin.PROPERTY_GIT_BLAME);
+    this.moduleFileSystem = moduleFileSystem;
+    // shared, so that the Sonar users of Git authors are resolved together with those of the SCM measures
+    this.authors = measuresCollector.getAuthors();
+    this.statistics = statistics;
+    this.blameCache = blameCache;
+    measuresCollector.addReleaseListener(this);
+  }
+
+  public ScmMeasures getMeasures(final String resourceKey) {
+    if (!this.enabled) {
+      return null;
+    }
+    final Repository gitRepository = this.getRepository();
+    if (gitRepository == null) {
+      return null;
+    }
+
+    FutureTask<ScmMeasures> blame = this.blames.get(resourceKey);
+    if (blame == null) {
+      final FutureTask<ScmMeasures> newBlame = new FutureTask<ScmMeasures>(new Callable<ScmMeasures>() {
+        public ScmMeasures call() {
+          return GitBlameSource.this.blame(gitRepository, resourceKey);
+        }
+      });
+      blame = this.blames.putIfAbsent(resourceKey, newBlame);
+      if (blame == null) {
+        blame = newBlame;
+      }
+    }
+    blame.run();
+    try {
+      return blame.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while waiting for the Git blame of resource [" + resourceKey + "]");
+      return null;
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("Unable to blame resource [" + resourceKey + "]", e.getCause());
+    }
+  }
+
+  /**
+   * Drops the blame of a resource whose issues have all been handled.
+   */
+  public void released(final String resourceKey) {
+    this.blames.remove(resourceKey);
+  }
+
+  public synchronized void stop() {
+    if (this.repository != null) {
+      this.repository.close();
+      this.repository = null;
+    }
+  }
+
+  private ScmMeasures blame(final Repository gitRepository, final String resourceKey) {
+    final File file = this.resolve(resourceKey);
+    if (file == null) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("No file found for resource [" + resourceKey + "]");
+      }
+      return null;
+    }
+
+    final String path;
+    final ObjectId blobId;
+    try {
+      path = relativePath(gitRepository.getWorkTree(), file);
+      blobId = blobId(file);
+    } catch (final IOException e) {
+      LOG.warn("Unable to read [" + file + "] to blame resource [" + resourceKey + "]", e);
+      return null;
+    }
+    if (path == null) {
+      LOG.debug("Resource [" + resourceKey + "] is outside of the Git repository");
+      return null;
+    }
+    return this.blame(gitRepository, resourceKey, path, blobId);
+  }
+
+  private ScmMeasures blame(final Repository gitRepository, final String resourceKey, final String path,
+                            final ObjectId blobId) {
+    final byte[] digest = this.blameCache == null ? null : this.blameCache.digest(path, blobId.name());
+    if (digest != null) {
+      final ScmMeasures cached = this.blameCache.get(resourceKey, digest, this.authors, this.revisions);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    final long start = this.statistics.getGitBlame().start();
+    try {
+      final BlameResult result = new Git(gitRepository).blame().setFilePath(path).call();
+      if (result == null) {
+        LOG.debug("[" + path + "] is not committed to the Git repository");
+        return null;
+      }
+
+      final int lineCount = result.getResultContents().size();
+      final String[] authorsByLine = new String[lineCount + 1];
+      final long[] lastCommitsByLine = new long[lineCount + 1];
+      final String[] revisionsByLine = new String[lineCount + 1];
+      Arrays.fill(lastCommitsByLine, ScmMeasures.NO_DATE);
+      boolean committed = true;
+      for (int i = 0; i < lineCount; i++) {
+        // no commit for lines changed in the working tree
+        final RevCommit commit = result.getSourceCommit(i);
+        if (commit != null) {
+          final PersonIdent author = result.getSourceAuthor(i);
+          authorsByLine[i + 1] = author == null ? null : author.getEmailAddress();
+          lastCommitsByLine[i + 1] = commit.getCommitTime() * 1000L;
+          revisionsByLine[i + 1] = commit.getName();
+        } else {
+          committed = false;
+        }
+      }
+      final ScmMeasures scmMeasures = ScmMeasures.of(resourceKey, authorsByLine, lastCommitsByLine, revisionsByLine,
+          this.authors, this.revisions);
+      // the blame of uncommitted lines changes once they are committed, with the content left as is
+      if (digest != null && committed) {
+        this.blameCache.put(resourceKey, digest, scmMeasures);
+      }
+      return scmMeasures;
+    } catch (final GitAPIException e) {
+      LOG.warn("Unable to blame [" + path + "] in the Git repository", e);
+      return null;
+    } catch (final RuntimeException e) {
+      LOG.warn("Unable to blame [" + path + "] in the Git repository", e);
+      return null;
+    } finally {
+      this.statistics.getGitBlame().stop(start);
+    }
+  }
+
+  private synchronized Repository getRepository() {
+    if (!this.repositoryOpened) {
+      this.repositoryOpened = true;
+      final File baseDir = this.moduleFileSystem.baseDir();
+      final RepositoryBuilder builder = new RepositoryBuilder().findGitDir(baseDir);
+      if (builder.getGitDir() == null) {
+        LOG.info("No Git repository found for [" + baseDir + "], resources without SCM measures will not be blamed");
+        return null;
+      }
+      try {
+        final Repository gitRepository = builder.setMustExist(true).build();
+        if (gitRepository.isBare()) {
+          gitRepository.close();
+          LOG.info("Git repository [" + builder.getGitDir() + "] has no working tree, resources without SCM measures will not be blamed");
+        } else {
+          this.repository = gitRepository;
+          LOG.info("Blaming resources without SCM measures in the Git repository [" + builder.getGitDir() + "]");
+        }
+      } catch (final IOException e) {
+        LOG.warn("Unable to open the Git repository [" + builder.getGitDir() + "]", e);
+      }
+    }
+    return this.repository;
+  }
+
+  private File resolve(final String resourceKey) {
+    final String name = resourceKey.substring(resourceKey.lastIndexOf(':') + 1);
+    final List<File> dirs = new ArrayList<File>(this.moduleFileSystem.sourceDirs());
+    dirs.addAll(this.moduleFileSystem.testDirs());
+    dirs.add(this.moduleFileSystem.baseDir());
+
+    File file = find(dirs, name);
+    if (file == null && name.indexOf('/') < 0) {
+      final String className = name.startsWith(DEFAULT_PACKAGE) ? name.substring(DEFAULT_PACKAGE.length()) : name;
+      file = find(dirs, className.replace('.', '/') + ".java");
+    }
+    return file;
+  }
+
+  private static File find(final List<File> dirs, final String path) {
+    for (final File dir : dirs) {
+      final File file = new File(dir, path);
+      if (file.isFile()) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the path of the file relative to the working tree, with '/' separators, or <code>null</code> if the
+   * file is outside of the working tree.
+   */
+  static String relativePath(final File workTree, final File file) throws IOException {
+    final String root = workTree.getCanonicalPath() + File.separator;
+    final String path = file.getCanonicalPath();
+    return path.startsWith(root) ? path.substring(root.length()).replace(File.separatorChar, '/') : null;
+  }
+
+  private static ObjectId blobId(final File file) throws IOException {
+    final InputStream in = new FileInputStream(file);
+    try {
+      return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, file.length(), in);
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -23,7 +23,12 @@ import org.sonar.api.Properties;
 import org.sonar.api.Property;
 import org.sonar.api.PropertyType;
 import org.sonar.api.SonarPlugin;
+import org.sonar.plugins.issueassign.measures.BlameCache;
 import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.measures.MeasuresReleaser;
+import org.sonar.plugins.issueassign.statistics.IssueAssignMonitor;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+import org.sonar.plugins.issueassign.statistics.StatisticsReporter;
 
 import java.util.Arrays;
 import java.util.List;
@@ -48,16 +53,115 @@ import java.util.List;
         description = "Enable or disable the Issue Assign plugin.",
         project = true,
         type = PropertyType.BOOLEAN,
-        defaultValue = "false")
+        defaultValue = "false"),
+    @Property(key = IssueAssignPlugin.PROPERTY_RELEASE_MEASURES,
+        name = "Release SCM Measures",
+        description = "Drop the SCM measures of each file as soon as its issues have been assigned, " +
+            "instead of keeping them until the end of the analysis.",
+        project = true,
+        type = PropertyType.BOOLEAN,
+        defaultValue = "true"),
+    @Property(key = IssueAssignPlugin.PROPERTY_USER_SNAPSHOT_MAX_AGE,
+        name = "User Snapshot Maximum Age",
+        description = "Number of hours for which the snapshot of Sonar users kept in the working directory is trusted " +
+            "to find SCM authors by email address, while the users are reloaded in the background. " +
+            "0 disables the snapshot.",
+        project = true,
+        type = PropertyType.INTEGER,
+        defaultValue = "24"),
+    @Property(key = IssueAssignPlugin.PROPERTY_ALIASES_FILE,
+        name = "SCM Author Aliases File",
+        description = "Path to a UTF-8 file of 'scm-author = sonar-login' lines, mapping SCM identities that match " +
+            "no Sonar user, such as old email addresses or SCM user names, to Sonar logins. " +
+            "A relative path is resolved against the base directory of the module.",
+        project = true,
+        type = PropertyType.STRING),
+    @Property(key = IssueAssignPlugin.PROPERTY_PARSE_THREADS,
+        name = "SCM Measure Parse Threads",
+        description = "Number of background threads on which the SCM measures of files are parsed while the " +
+            "project is decorated. 0 parses them on the decorator thread.",
+        project = true,
+        type = PropertyType.INTEGER,
+        defaultValue = "0"),
+    @Property(key = IssueAssignPlugin.PROPERTY_PARSE_LAZY,
+        name = "Parse SCM Measures on First Use",
+        description = "Hold the raw SCM measures of each file, deflated if SCM Measures Compression is set, and parse them " +
+            "only once an issue of the file needs blame, so that files without new issues are never parsed. " +
+            "Parse threads are then not used.",
+        project = true,
+        type = PropertyType.BOOLEAN,
+        defaultValue = "false"),
+    @Property(key = IssueAssignPlugin.PROPERTY_PARSE_LAZY_COMPRESSION,
+        name = "SCM Measures Compression",
+        description = "Deflate level, from 1 (fastest) to 9 (smallest), of the SCM measures held until first use. " +
+            "0 holds them uncompressed. Deflating costs several times more than parsing, and so is only worth it when " +
+            "measures are not released and memory is short.",
+        project = true,
+        type = PropertyType.INTEGER,
+        defaultValue = "0"),
+    @Property(key = IssueAssignPlugin.PROPERTY_GIT_BLAME,
+        name = "Blame from Git",
+        description = "Blame the files that have no SCM measures, such as when the SCM Activity plugin is disabled, " +
+            "in the local Git repository of the module. Only files with new issues are blamed.",
+        project = true,
+        type = PropertyType.BOOLEAN,
+        defaultValue = "false"),
+    @Property(key = IssueAssignPlugin.PROPERTY_BLAME_CACHE_MAX_SIZE,
+        name = "Blame Cache Maximum Size",
+        description = "Size bound, in MB, of the cache of blame kept in the working directory between analyses, " +
+            "so that files whose SCM measures or content are unchanged are not parsed or blamed again. 0, the default, " +
+            "disables the cache.",
+        project = true,
+        type = PropertyType.INTEGER,
+        defaultValue = "0"),
+    @Property(key = IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT,
+        name = "Blame Snapshot",
+        description = "Path to a blame snapshot exported by an earlier analysis, read instead of the SCM measures " +
+            "of the resources it holds. A relative path is resolved against the base directory of the module.",
+        project = true,
+        type = PropertyType.STRING),
+    @Property(key = IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT_EXPORT,
+        name = "Blame Snapshot Export",
+        description = "Path to export the blame of the analysed resources to, for later analyses to read. " +
+            "A relative path is resolved against the base directory of the module, so that each module has its own snapshot. " +
+            "SCM measures parsed lazily and never used are left out, rather than parsed for the snapshot.",
+        project = true,
+        type = PropertyType.STRING),
+    @Property(key = IssueAssignPlugin.PROPERTY_MEASURES_MAX_HEAP,
+        name = "SCM Measures Maximum Heap",
+        description = "Size bound, in MB, of the SCM measures held in memory until the issues of their files are handled. " +
+            "Over it, the measures least recently used are compressed, and decompressed again if needed. 0 leaves them unbounded.",
+        project = true,
+        type = PropertyType.INTEGER,
+        defaultValue = "0")
 })
 public final class IssueAssignPlugin extends SonarPlugin {
 
   public static final String PROPERTY_DEFAULT_ASSIGNEE = "default.assignee";
   public static final String PROPERTY_OVERRIDE_ASSIGNEE = "override.assignee";
   public static final String PROPERTY_ENABLED = "issueassignplugin.enabled";
+  public static final String PROPERTY_RELEASE_MEASURES = "issueassignplugin.release.measures";
+  public static final String PROPERTY_USER_SNAPSHOT_MAX_AGE = "issueassignplugin.users.snapshot.maxAge";
+  public static final String PROPERTY_ALIASES_FILE = "issueassignplugin.aliases.file";
+  public static final String PROPERTY_PARSE_THREADS = "issueassignplugin.parse.threads";
+  public static final String PROPERTY_PARSE_LAZY = "issueassignplugin.parse.lazy";
+  public static final String PROPERTY_PARSE_LAZY_COMPRESSION = "issueassignplugin.parse.lazy.compression";
+  public static final String PROPERTY_GIT_BLAME = "issueassignplugin.blame.git";
+  public static final String PROPERTY_BLAME_CACHE_MAX_SIZE = "issueassignplugin.blame.cache.maxSize";
+  public static final String PROPERTY_BLAME_SNAPSHOT = "issueassignplugin.blame.snapshot";
+  public static final String PROPERTY_BLAME_SNAPSHOT_EXPORT = "issueassignplugin.blame.snapshot.export";
+  public static final String PROPERTY_MEASURES_MAX_HEAP = "issueassignplugin.measures.maxHeap";
 
   public List getExtensions() {
     return Arrays.asList(MeasuresCollector.class,
-        IssueAssigner.class);
+        IssueAssigner.class,
+        MeasuresReleaser.class,
+        IssueAssignStatistics.class,
+        StatisticsReporter.class,
+        IssueAssignMonitor.class,
+        UserDirectory.class,
+        Aliases.class,
+        GitBlameSource.class,
+        BlameCache.class);
   }
 }
\ No newline at end of file
@@ -24,27 +24,53 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.IssueHandler;
-import org.sonar.api.user.User;
 import org.sonar.api.user.UserFinder;
-import org.sonar.plugins.issueassign.exception.IssueAssignPluginException;
 import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class IssueAssigner implements IssueHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(IssueAssigner.class);
-  private final Settings settings;
+  private final boolean enabled;
+  private final MeasuresCollector measuresCollector;
+  private final Users users;
   private final Blame blame;
   private final Assign assign;
+  private final IssueAssignStatistics statistics;
 
   public IssueAssigner(final MeasuresCollector measuresCollector, final Settings settings, final UserFinder userFinder) {
-    this.blame = new Blame(measuresCollector);
-    this.assign = new Assign(settings, userFinder);
-    this.settings = settings;
+    this(measuresCollector, settings, userFinder, new IssueAssignStatistics(), null, null, null);
+  }
+
+  /**
+   * @param userDirectory  the Sonar users, shared with the other extensions, or <code>null</code> for a directory of
+   *                       this assigner's own.
+   * @param aliases        the SCM author aliases, or <code>null</code> if there are none.
+   * @param gitBlameSource blame for the resources without SCM measures, or <code>null</code> for none.
+   */
+  public IssueAssigner(final MeasuresCollector measuresCollector, final Settings settings, final UserFinder userFinder,
+                       final IssueAssignStatistics statistics, final UserDirectory userDirectory, final Aliases aliases,
+                       final GitBlameSource gitBlameSource) {
+    final List<BlameSource> blameSources = new ArrayList<BlameSource>();
+    blameSources.add(new MeasuresBlameSource(measuresCollector));
+    if (gitBlameSource != null) {
+      blameSources.add(gitBlameSource);
+    }
+    this.measuresCollector = measuresCollector;
+    this.users = new Users(userFinder, statistics,
+        userDirectory == null ? new UserDirectory(userFinder, statistics) : userDirectory);
+    this.blame = new Blame(blameSources);
+    this.assign = new Assign(settings, this.users, aliases);
+    this.statistics = statistics;
+    this.enabled = settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED);
   }
 
   public void onIssue(final Context context) {
 
-    if (!shouldExecute()) {
+    if (!this.enabled) {
       return;
     }
 
@@ -52,35 +78,52 @@ public class IssueAssigner implements IssueHandler {
 
     //TODO not sure this check is necessary
     if (issue.isNew()) {
-      LOG.debug("Found new issue [" + issue.key() + "]");
+      this.statistics.issueSeen();
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Found new issue [" + issue.key() + "]");
+      }
       try {
         this.assignIssue(context, issue);
-      } catch (final IssueAssignPluginException pluginException) {
-        LOG.warn("Unable to assign issue [" + issue.key() + "]");
       } catch (final Exception e) {
+        this.statistics.error();
         LOG.error("Error assigning issue [" + issue.key() + "]", e);
       }
     }
   }
 
-  private void assignIssue(final Context context, final Issue issue) throws IssueAssignPluginException {
+  private void assignIssue(final Context context, final Issue issue) {
 
-    final String author = blame.getScmAuthorForIssue(issue);
-    final User assignee;
+    final long start = this.statistics.getBlame().start();
+    final Authorship authorship = blame.getAuthorshipForIssue(issue);
+    this.statistics.getBlame().stop(start);
+    if (!authorship.isResolved()) {
+      this.statistics.unresolved();
+      LOG.warn("Unable to assign issue [" + issue.key() + "]: " + authorship);
+      return;
+    }
 
+    final String author = authorship.getAuthor();
     if (author == null) {
-      LOG.debug("No author found for issue [" + issue.key() + " component [" + issue.componentKey() + "]");
-      assignee = assign.getAssignee();
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("No author found for issue [" + issue.key() + " component [" + issue.componentKey() + "]");
+      }
     } else {
-      LOG.debug("Found SCM author [" + author + "]");
-      assignee = assign.getAssignee(author);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Found SCM author [" + author + "]");
+      }
+      this.users.resolveAuthors(this.measuresCollector.getAuthors());
     }
 
-    LOG.info("Assigning issue [" + issue.key() + "] to assignee [" + assignee.login() + "]");
-    context.assign(assignee);
-  }
+    final long assignStart = this.statistics.getAssign().start();
+    final Assignment assignment = assign.assign(author);
+    this.statistics.getAssign().stop(assignStart);
+    this.statistics.assigned(assignment.getOutcome());
+    if (!assignment.isAssigned()) {
+      LOG.warn("Unable to assign issue [" + issue.key() + "]: " + assignment);
+      return;
+    }
 
-  private boolean shouldExecute() {
-    return this.settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED);
+    LOG.info("Assigning issue [" + issue.key() + "] to assignee [" + assignment.getAssignee().login() + "]");
+    context.assign(assignment.getAssignee());
   }
 }
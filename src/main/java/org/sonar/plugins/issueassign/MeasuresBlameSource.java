@@ -17,7 +17,23 @@
  * License along with this program; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
  */
-package org.sonar.plugins.issueassign.exception;
+package org.sonar.plugins.issueassign;
 
-public class SettingNotConfiguredException extends IssueAssignPluginException {
+import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.measures.ScmMeasures;
+
+/**
+ * Blame from the SCM measures of the project, as gathered by the {@link MeasuresCollector}.
+ */
+public class MeasuresBlameSource implements BlameSource {
+
+  private final MeasuresCollector measuresCollector;
+
+  public MeasuresBlameSource(final MeasuresCollector measuresCollector) {
+    this.measuresCollector = measuresCollector;
+  }
+
+  public ScmMeasures getMeasures(final String resourceKey) {
+    return this.measuresCollector.getMeasures(resourceKey);
+  }
 }
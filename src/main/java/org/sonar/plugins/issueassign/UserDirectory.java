@@ -0,0 +1,287 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
+import org.sonar.api.user.UserQuery;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Sonar users of the instance, indexed by email address, login, email local part and display name (see
+ * {@link UserIndex}).  Loading every user is slow on large instances, so the load can be started early on a
+ * background thread with {@link #prefetch()}, overlapping the decoration of the project.  A lookup only waits if
+ * the load has not finished yet, and loads on the calling thread if it was never started.
+ * <p/>
+ * Each load also refreshes a {@link UserSnapshot} kept in the working directory.  Until the load has finished,
+ * lookups are answered from a recent enough snapshot instead: a user found there is confirmed by login, once per
+ * login until the load has finished.  An author missing from the snapshot, who may be a user created since, or a
+ * user changed since the snapshot was taken, falls back to waiting for the load.
+ */
+public class UserDirectory implements BatchExtension {
+
+  public static final String SNAPSHOT_FILE = "issue-assign-users.snapshot";
+
+  private static final Logger LOG = LoggerFactory.getLogger(UserDirectory.class);
+  private static final String THREAD_NAME = "issue-assign-user-directory";
+  private final UserFinder userFinder;
+  private final IssueAssignStatistics statistics;
+  private final File snapshotFile;
+  private final long snapshotMaxAgeMillis;
+  private UserSnapshot snapshot;
+  private boolean snapshotRead;
+  // the users of the snapshot already confirmed, by login
+  private final ConcurrentMap<String, User> confirmedUsers = new ConcurrentHashMap<String, User>();
+
+  // run at most once, by the prefetch thread or by the first lookup, whichever comes first
+  private final FutureTask<LoadedUsers> load;
+  private boolean prefetched;
+
+  public UserDirectory(final UserFinder userFinder) {
+    this(userFinder, new IssueAssignStatistics());
+  }
+
+  public UserDirectory(final UserFinder userFinder, final IssueAssignStatistics statistics) {
+    this(userFinder, statistics, null, 0);
+  }
+
+  public UserDirectory(final UserFinder userFinder, final IssueAssignStatistics statistics, final Settings settings,
+                       final ModuleFileSystem moduleFileSystem) {
+    this(userFinder, statistics, new File(moduleFileSystem.workingDir(), SNAPSHOT_FILE),
+        TimeUnit.HOURS.toMillis(settings.getInt(IssueAssignPlugin.PROPERTY_USER_SNAPSHOT_MAX_AGE)));
+  }
+
+  private UserDirectory(final UserFinder userFinder, final IssueAssignStatistics statistics, final File snapshotFile,
+                        final long snapshotMaxAgeMillis) {
+    this.userFinder = userFinder;
+    this.statistics = statistics;
+    this.snapshotFile = snapshotMaxAgeMillis > 0 ? snapshotFile : null;
+    this.snapshotMaxAgeMillis = snapshotMaxAgeMillis;
+    this.load = new FutureTask<LoadedUsers>(new Callable<LoadedUsers>() {
+      public LoadedUsers call() {
+        try {
+          return UserDirectory.this.loadUsers();
+        } catch (final RuntimeException e) {
+          // as before the prefetch, a failed load leaves no user to find for the rest of the analysis
+          LOG.error("Unable to load the Sonar users.", e);
+          return LoadedUsers.NONE;
+        }
+      }
+    });
+  }
+
+  /**
+   * Starts loading the users on a background thread, unless the load was already started.
+   */
+  public synchronized void prefetch() {
+    if (this.prefetched || this.load.isDone()) {
+      return;
+    }
+    this.prefetched = true;
+    this.getSnapshot();
+    final Thread thread = new Thread(this.load, THREAD_NAME);
+    thread.setDaemon(true);
+    thread.start();
+    LOG.debug("Prefetching Sonar users in the background.");
+  }
+
+  public boolean isLoaded() {
+    return this.load.isDone();
+  }
+
+  /**
+   * @return the Sonar user matching the SCM author, or <code>null</code> if there is none.
+   */
+  public User find(final String author) {
+    if (!this.load.isDone()) {
+      final UserSnapshot current = this.getSnapshot();
+      if (current != null) {
+        final String login = current.getLogin(author);
+        if (login != null) {
+          final User user = this.confirm(login);
+          if (user != null && UserIndex.matches(author, user.login(), user.email(), user.name())) {
+            return user;
+          }
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Sonar user [" + login + "] changed since the user snapshot was taken.");
+          }
+        }
+      }
+    }
+    return this.getLoadedUsers().find(author);
+  }
+
+  private User confirm(final String login) {
+    User user = this.confirmedUsers.get(login);
+    if (user == null) {
+      user = this.findByLogin(login);
+      if (user != null) {
+        this.confirmedUsers.put(login, user);
+      }
+    }
+    return user;
+  }
+
+  private synchronized UserSnapshot getSnapshot() {
+    if (!this.snapshotRead) {
+      this.snapshotRead = true;
+      this.snapshot = this.readSnapshot();
+    }
+    return this.snapshot;
+  }
+
+  private UserSnapshot readSnapshot() {
+    if (this.snapshotFile == null) {
+      return null;
+    }
+    try {
+      final UserSnapshot read = UserSnapshot.read(this.snapshotFile);
+      if (read == null) {
+        LOG.debug("No user snapshot found, the Sonar users will be loaded in full.");
+        return null;
+      }
+      final long age = System.currentTimeMillis() - read.getTakenAt();
+      if (age < 0 || age > this.snapshotMaxAgeMillis) {
+        LOG.debug("Ignoring stale " + read + ", the Sonar users will be loaded in full.");
+        return null;
+      }
+      LOG.debug("Read " + read + " from [" + this.snapshotFile + "]");
+      return read;
+    } catch (final IOException e) {
+      LOG.warn("Ignoring user snapshot [" + this.snapshotFile + "]: " + e.getMessage());
+      return null;
+    }
+  }
+
+  private void writeSnapshot(final UserSnapshot refreshed) {
+    final UserSnapshot previous = this.getSnapshot();
+    try {
+      refreshed.write(this.snapshotFile);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Wrote " + refreshed + " to [" + this.snapshotFile + "], "
+            + (previous != null && previous.hasSameUsers(refreshed) ? "unchanged" : "changed") + " since the last one.");
+      }
+    } catch (final IOException e) {
+      LOG.warn("Unable to write the user snapshot to [" + this.snapshotFile + "]", e);
+    }
+  }
+
+  private LoadedUsers getLoadedUsers() {
+    if (this.load.isDone()) {
+      return this.loadedUsers();
+    }
+    final long start = this.statistics.getUserDirectoryWait().start();
+    try {
+      // does nothing if the prefetch thread is already loading; get() then waits for it
+      this.load.run();
+      return this.loadedUsers();
+    } finally {
+      this.statistics.getUserDirectoryWait().stop(start);
+    }
+  }
+
+  private LoadedUsers loadedUsers() {
+    try {
+      return this.load.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while waiting for the Sonar users to load.");
+      return LoadedUsers.NONE;
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("Unable to load the Sonar users.", e.getCause());
+    }
+  }
+
+  private LoadedUsers loadUsers() {
+    final List<User> users = this.findAllUsers();
+    final Map<String, User> usersByLogin = new HashMap<String, User>(users.size() * 2);
+    for (final User user : users) {
+      if (user.login() != null) {
+        usersByLogin.put(user.login(), user);
+      }
+    }
+    final UserSnapshot loaded = UserSnapshot.of(users, System.currentTimeMillis());
+    LOG.debug("Loaded " + usersByLogin.size() + " Sonar users.");
+    if (this.snapshotFile != null) {
+      this.writeSnapshot(loaded);
+    }
+    // no longer looked up once the load is done
+    this.confirmedUsers.clear();
+    return new LoadedUsers(Collections.unmodifiableMap(usersByLogin), loaded);
+  }
+
+  private User findByLogin(final String login) {
+    final long start = this.statistics.getUserFinder().start();
+    try {
+      return this.userFinder.findByLogin(login);
+    } finally {
+      this.statistics.getUserFinder().stop(start);
+    }
+  }
+
+  private List<User> findAllUsers() {
+    final long start = this.statistics.getUserFinder().start();
+    try {
+      return this.userFinder.find(UserQuery.builder().build());
+    } finally {
+      this.statistics.getUserFinder().stop(start);
+    }
+  }
+
+  /**
+   * The users as loaded, by login, with the index to find their login.
+   */
+  private static final class LoadedUsers {
+
+    static final LoadedUsers NONE = new LoadedUsers(Collections.<String, User>emptyMap(),
+        UserSnapshot.of(Collections.<User>emptyList(), 0));
+
+    private final Map<String, User> usersByLogin;
+    private final UserSnapshot index;
+
+    LoadedUsers(final Map<String, User> usersByLogin, final UserSnapshot index) {
+      this.usersByLogin = usersByLogin;
+      this.index = index;
+    }
+
+    User find(final String author) {
+      final String login = this.index.getLogin(author);
+      return login == null ? null : this.usersByLogin.get(login);
+    }
+  }
+}
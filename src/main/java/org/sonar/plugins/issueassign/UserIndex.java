@@ -0,0 +1,231 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Finds the login of the Sonar user matching an SCM author, by email address, login, email local part or display
+ * name, ignoring case and surrounding whitespace.  Every key is normalised once, when the index is built, so that
+ * a lookup normalises the author and probes a single hash map.
+ * <p/>
+ * When several users share a key, the key of the strongest kind wins, in the order above: a login beats another
+ * user's email local part.  Users sharing a key of the same kind make it ambiguous, and it matches nobody.
+ */
+public final class UserIndex {
+
+  // below this many users, normalising on several threads costs more than it saves
+  static final int PARALLEL_THRESHOLD = 10000;
+
+  private static final int EMAIL = 0;
+  private static final int LOGIN = 1;
+  private static final int EMAIL_LOCAL_PART = 2;
+  private static final int NAME = 3;
+  private static final int KINDS = 4;
+
+  private final Map<String, String> loginsByKey;
+
+  private UserIndex(final Map<String, String> loginsByKey) {
+    this.loginsByKey = loginsByKey;
+  }
+
+  /**
+   * Indexes users given as parallel arrays, in which emails and names may be <code>null</code> or empty.
+   */
+  public static UserIndex of(final String[] logins, final String[] emails, final String[] names) {
+    final String[] keys = new String[logins.length * KINDS];
+    final int threads = Math.min(Runtime.getRuntime().availableProcessors(), logins.length / PARALLEL_THRESHOLD);
+    if (threads > 1) {
+      normaliseInParallel(logins, emails, names, keys, threads);
+    } else {
+      normalise(logins, emails, names, keys, 0, logins.length);
+    }
+    return new UserIndex(index(logins, keys));
+  }
+
+  /**
+   * @return the login of the user matching the SCM author, or <code>null</code> if there is none, or several.
+   */
+  public String getLogin(final String author) {
+    return author == null ? null : this.loginsByKey.get(normalise(author));
+  }
+
+  /**
+   * @return whether the SCM author matches any key of the user, so that a user found through an older index can
+   * be checked against its current details.
+   */
+  public static boolean matches(final String author, final String login, final String email, final String name) {
+    final String[] keys = new String[KINDS];
+    normalise(new String[]{login}, new String[]{email}, new String[]{name}, keys, 0, 1);
+    final String key = normalise(author);
+    for (final String candidate : keys) {
+      if (key.equals(candidate)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of keys matching a user.
+   */
+  public int size() {
+    return this.loginsByKey.size();
+  }
+
+  /**
+   * Lower cases the value, trims it and collapses runs of whitespace into single spaces.
+   */
+  static String normalise(final String value) {
+    final String trimmed = value.trim().toLowerCase(Locale.ENGLISH);
+    if (!hasWhitespaceToCollapse(trimmed)) {
+      return trimmed;
+    }
+    final StringBuilder collapsed = new StringBuilder(trimmed.length());
+    boolean whitespace = false;
+    for (int i = 0; i < trimmed.length(); i++) {
+      final char c = trimmed.charAt(i);
+      if (Character.isWhitespace(c)) {
+        whitespace = true;
+      } else {
+        if (whitespace) {
+          collapsed.append(' ');
+          whitespace = false;
+        }
+        collapsed.append(c);
+      }
+    }
+    return collapsed.toString();
+  }
+
+  private static boolean hasWhitespaceToCollapse(final String trimmed) {
+    boolean previousSpace = false;
+    for (int i = 0; i < trimmed.length(); i++) {
+      final char c = trimmed.charAt(i);
+      if (c == ' ') {
+        if (previousSpace) {
+          return true;
+        }
+        previousSpace = true;
+      } else if (Character.isWhitespace(c)) {
+        return true;
+      } else {
+        previousSpace = false;
+      }
+    }
+    return false;
+  }
+
+  private static void normalise(final String[] logins, final String[] emails, final String[] names, final String[] keys,
+                                final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      if (logins[i] == null) {
+        continue;
+      }
+      keys[i * KINDS + LOGIN] = normalise(logins[i]);
+      if (emails[i] != null && emails[i].trim().length() > 0) {
+        final String email = normalise(emails[i]);
+        keys[i * KINDS + EMAIL] = email;
+        final int at = email.indexOf('@');
+        keys[i * KINDS + EMAIL_LOCAL_PART] = at > 0 ? email.substring(0, at) : null;
+      }
+      if (names[i] != null && names[i].trim().length() > 0) {
+        keys[i * KINDS + NAME] = normalise(names[i]);
+      }
+    }
+  }
+
+  private static void normaliseInParallel(final String[] logins, final String[] emails, final String[] names,
+                                          final String[] keys, final int threads) {
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<Void>> slices = new ArrayList<Future<Void>>(threads);
+      final int sliceSize = (logins.length + threads - 1) / threads;
+      for (int from = 0; from < logins.length; from += sliceSize) {
+        final int sliceFrom = from;
+        final int sliceTo = Math.min(logins.length, from + sliceSize);
+        // each slice writes its own range of keys, and Future.get() publishes them to this thread
+        slices.add(executor.submit(new Callable<Void>() {
+          public Void call() {
+            normalise(logins, emails, names, keys, sliceFrom, sliceTo);
+            return null;
+          }
+        }));
+      }
+      for (final Future<Void> slice : slices) {
+        slice.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while indexing the Sonar users", e);
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("Unable to index the Sonar users", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Inserts the normalised keys in user order, so that the index does not depend on how they were normalised.
+   * Each key first maps to the position of its strongest occurrence in <code>keys</code>, which gives both the
+   * user and the kind of key, negated once the key is ambiguous.
+   */
+  private static Map<String, String> index(final String[] logins, final String[] keys) {
+    final Map<String, Integer> positions = new HashMap<String, Integer>(keys.length);
+    for (int position = 0; position < keys.length; position++) {
+      final String key = keys[position];
+      if (key == null) {
+        continue;
+      }
+      final Integer indexed = positions.get(key);
+      if (indexed == null) {
+        positions.put(key, position);
+        continue;
+      }
+      final int indexedPosition = indexed < 0 ? -indexed - 1 : indexed;
+      final int kind = position % KINDS;
+      final int indexedKind = indexedPosition % KINDS;
+      if (kind < indexedKind) {
+        positions.put(key, position);
+      } else if (kind == indexedKind && indexed >= 0 && !logins[position / KINDS].equals(logins[indexed / KINDS])) {
+        // ambiguous, unless a key of a stronger kind comes later
+        positions.put(key, -position - 1);
+      }
+    }
+
+    final Map<String, String> loginsByKey = new HashMap<String, String>(positions.size() * 2);
+    for (final Map.Entry<String, Integer> entry : positions.entrySet()) {
+      final int position = entry.getValue();
+      if (position >= 0) {
+        loginsByKey.put(entry.getKey(), logins[position / KINDS]);
+      }
+    }
+    return loginsByKey;
+  }
+}
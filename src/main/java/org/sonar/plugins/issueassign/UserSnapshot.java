@@ -0,0 +1,248 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.apache.commons.lang3.StringUtils;
+import org.sonar.api.user.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The login, email address and name of the Sonar users, as of the time it was taken, with a {@link UserIndex} of
+ * them.  Snapshots are kept on disk between analyses, so that SCM authors can be looked up without waiting for
+ * every Sonar user to be loaded.
+ * <p/>
+ * The file is a fixed header followed by the records, each of three length-prefixed UTF-8 strings.  The header
+ * holds the time the snapshot was taken, the record count, and the length and CRC-32 of the records, so that a
+ * truncated or corrupt file is detected rather than trusted.  The file is read through a memory mapping.
+ */
+public final class UserSnapshot {
+
+  static final int MAGIC = 0x49415553;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int MAX_STRING_BYTES = 0xFFFF;
+
+  private final long takenAt;
+  private final String[] logins;
+  private final String[] emails;
+  private final String[] names;
+  private final UserIndex index;
+
+  private UserSnapshot(final long takenAt, final String[] logins, final String[] emails, final String[] names) {
+    this.takenAt = takenAt;
+    this.logins = logins;
+    this.emails = emails;
+    this.names = names;
+    this.index = UserIndex.of(logins, emails, names);
+  }
+
+  /**
+   * Takes a snapshot of the users.
+   */
+  public static UserSnapshot of(final Collection<User> users, final long takenAt) {
+    final List<String> logins = new ArrayList<String>(users.size());
+    final List<String> emails = new ArrayList<String>(users.size());
+    final List<String> names = new ArrayList<String>(users.size());
+    for (final User user : users) {
+      if (user.login() != null) {
+        logins.add(user.login());
+        emails.add(StringUtils.defaultString(user.email()));
+        names.add(StringUtils.defaultString(user.name()));
+      }
+    }
+    return new UserSnapshot(takenAt, toArray(logins), toArray(emails), toArray(names));
+  }
+
+  /**
+   * @return the snapshot held by the file, or <code>null</code> if there is no such file.
+   * @throws IOException if the file cannot be read, or is not a valid snapshot.
+   */
+  public static UserSnapshot read(final File file) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    final FileInputStream input = new FileInputStream(file);
+    try {
+      final FileChannel channel = input.getChannel();
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return read(buffer);
+    } catch (final BufferUnderflowException e) {
+      throw new IOException("Truncated user snapshot [" + file + "]");
+    } finally {
+      input.close();
+    }
+  }
+
+  private static UserSnapshot read(final ByteBuffer buffer) throws IOException {
+    if (buffer.getInt() != MAGIC) {
+      throw new IOException("Not a user snapshot");
+    }
+    final int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported user snapshot version [" + version + "]");
+    }
+    final long takenAt = buffer.getLong();
+    final int count = buffer.getInt();
+    final int length = buffer.getInt();
+    final int crc = buffer.getInt();
+    if (count < 0 || length != buffer.remaining()) {
+      throw new IOException("Truncated user snapshot");
+    }
+
+    final byte[] records = new byte[length];
+    buffer.get(records);
+    final CRC32 checksum = new CRC32();
+    checksum.update(records);
+    if ((int) checksum.getValue() != crc) {
+      throw new IOException("Corrupt user snapshot: checksum mismatch");
+    }
+
+    final ByteBuffer recordBuffer = ByteBuffer.wrap(records);
+    final String[] logins = new String[count];
+    final String[] emails = new String[count];
+    final String[] names = new String[count];
+    for (int i = 0; i < count; i++) {
+      logins[i] = readString(recordBuffer);
+      emails[i] = readString(recordBuffer);
+      names[i] = readString(recordBuffer);
+    }
+    if (recordBuffer.hasRemaining()) {
+      throw new IOException("Corrupt user snapshot: trailing data");
+    }
+    return new UserSnapshot(takenAt, logins, emails, names);
+  }
+
+  /**
+   * Writes the snapshot to a temporary file first, then moves it in place, so that a failed write never leaves
+   * a partial snapshot behind.
+   */
+  public void write(final File file) throws IOException {
+    final File directory = file.getAbsoluteFile().getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create directory [" + directory + "]");
+    }
+
+    final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(64 * this.size());
+    final DataOutputStream records = new DataOutputStream(recordBytes);
+    int count = 0;
+    for (int i = 0; i < this.size(); i++) {
+      final byte[] login = this.logins[i].getBytes(UTF_8);
+      final byte[] email = this.emails[i].getBytes(UTF_8);
+      final byte[] name = this.names[i].getBytes(UTF_8);
+      if (login.length > MAX_STRING_BYTES || email.length > MAX_STRING_BYTES || name.length > MAX_STRING_BYTES) {
+        continue;
+      }
+      writeString(records, login);
+      writeString(records, email);
+      writeString(records, name);
+      count++;
+    }
+    records.flush();
+    final byte[] payload = recordBytes.toByteArray();
+    final CRC32 checksum = new CRC32();
+    checksum.update(payload);
+
+    final File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+    final RandomAccessFile output = new RandomAccessFile(temporary, "rw");
+    try {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(this.takenAt);
+      output.writeInt(count);
+      output.writeInt(payload.length);
+      output.writeInt((int) checksum.getValue());
+      output.write(payload);
+    } finally {
+      output.close();
+    }
+
+    // renaming over an existing file fails on some platforms
+    if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+      temporary.delete();
+      throw new IOException("Unable to move the user snapshot to [" + file + "]");
+    }
+  }
+
+  public long getTakenAt() {
+    return this.takenAt;
+  }
+
+  public int size() {
+    return this.logins.length;
+  }
+
+  /**
+   * @return the login of the user matching the SCM author, or <code>null</code> if there was none.
+   * @see UserIndex#getLogin(String)
+   */
+  public String getLogin(final String author) {
+    return this.index.getLogin(author);
+  }
+
+  /**
+   * @return whether both snapshots hold the same records, whatever the time they were taken.
+   */
+  public boolean hasSameUsers(final UserSnapshot other) {
+    return Arrays.equals(this.logins, other.logins) && Arrays.equals(this.emails, other.emails)
+        && Arrays.equals(this.names, other.names);
+  }
+
+  @Override
+  public String toString() {
+    return "UserSnapshot[users=" + this.size() + ", takenAt=" + this.takenAt + "]";
+  }
+
+  private static String[] toArray(final List<String> values) {
+    return values.toArray(new String[values.size()]);
+  }
+
+  private static void writeString(final DataOutputStream output, final byte[] value) throws IOException {
+    output.writeShort(value.length);
+    output.write(value);
+  }
+
+  private static String readString(final ByteBuffer buffer) throws IOException {
+    final int length = buffer.getShort() & MAX_STRING_BYTES;
+    if (length > buffer.remaining()) {
+      throw new IOException("Corrupt user snapshot: string overruns the records");
+    }
+    final String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+}
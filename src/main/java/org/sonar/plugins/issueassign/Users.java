@@ -19,75 +19,156 @@
  */
 package org.sonar.plugins.issueassign;
 
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.user.User;
 import org.sonar.api.user.UserFinder;
 import org.sonar.api.user.UserQuery;
-import org.sonar.plugins.issueassign.exception.SonarUserNotFoundException;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Finds the Sonar users of SCM authors.  Safe for concurrent use: the unknown users and the authors resolved in bulk
+ * are concurrent collections, which only the authors new to each bulk lookup are added to, under a lock.
+ */
 public class Users {
 
   private static final Logger LOG = LoggerFactory.getLogger(Users.class);
+  // UserQuery accepts at most 1000 logins
+  private static final int LOGIN_BATCH_SIZE = 500;
   private final UserFinder userFinder;
-  private Map<String, User> emailToUserMap;
+  private final IssueAssignStatistics statistics;
+  private final UserDirectory directory;
+
+  // user names found neither by login nor by email, for the rest of the analysis
+  private final Set<String> unknownUsers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  // SCM authors already looked up: those that are Sonar logins mapped to their user, and those that are not
+  private final Map<String, User> authorIndex = new ConcurrentHashMap<String, User>();
+  private final Set<String> nonLoginAuthors = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private volatile int resolvedAuthors;
 
   public Users(final UserFinder userFinder) {
+    this(userFinder, new IssueAssignStatistics());
+  }
+
+  public Users(final UserFinder userFinder, final IssueAssignStatistics statistics) {
+    this(userFinder, statistics, new UserDirectory(userFinder, statistics));
+  }
+
+  public Users(final UserFinder userFinder, final IssueAssignStatistics statistics, final UserDirectory directory) {
     this.userFinder = userFinder;
+    this.statistics = statistics;
+    this.directory = directory;
   }
 
-  public User getSonarUser(final String userName) throws SonarUserNotFoundException {
+  /**
+   * Looks up, in as few queries as possible, the SCM authors added to the dictionary since the last call.
+   */
+  public void resolveAuthors(final ScmDictionary authors) {
+    if (authors.size() > this.resolvedAuthors) {
+      this.resolveNewAuthors(authors);
+    }
+  }
 
-    final User sonarUser = this.userFinder.findByLogin(userName);
-    if (sonarUser == null) {
-      if (isEmailAddress(userName)) {
-        LOG.debug("SCM author is an email address, trying lookup by email...");
-        return this.getSonarUserByEmail(userName);
+  private synchronized void resolveNewAuthors(final ScmDictionary authors) {
+    final int authorCount = authors.size();
+    if (authorCount <= this.resolvedAuthors) {
+      return;
+    }
+
+    for (int from = this.resolvedAuthors; from < authorCount; from += LOGIN_BATCH_SIZE) {
+      final List<String> logins = new ArrayList<String>();
+      for (int id = from; id < Math.min(authorCount, from + LOGIN_BATCH_SIZE); id++) {
+        logins.add(authors.valueOf(id));
+      }
+      final Set<String> nonLogins = new HashSet<String>(logins);
+      for (final User user : this.find(UserQuery.builder().logins(logins).build())) {
+        this.authorIndex.put(user.login(), user);
+        nonLogins.remove(user.login());
       }
-      throw new SonarUserNotFoundException();
+      this.nonLoginAuthors.addAll(nonLogins);
     }
 
-    LOG.debug("Found Sonar user: " + sonarUser.login());
-    return sonarUser;
+    LOG.debug("Resolved " + (authorCount - this.resolvedAuthors) + " SCM authors against Sonar logins.");
+    // count the authors once added, so that a thread skipping the lookup sees the authors it covers
+    this.resolvedAuthors = authorCount;
   }
 
-  // a cheap solution, but may be enough.
-  private boolean isEmailAddress(final String userName) {
-    return userName.contains("@");
+  /**
+   * Finds the Sonar user for an SCM author, by exact login and then through the {@link UserDirectory}, which also
+   * matches email addresses, email local parts and display names, ignoring case.
+   *
+   * @return the Sonar user, or <code>null</code> if the author is not a Sonar user.
+   */
+  public User findSonarUser(final String userName) {
+    final long start = this.statistics.getUsers().start();
+    try {
+      return this.findSonarUserUntimed(userName);
+    } finally {
+      this.statistics.getUsers().stop(start);
+    }
   }
 
-  private User getSonarUserByEmail(final String email) throws SonarUserNotFoundException {
-    if (this.emailToUserMap == null) {
-      this.initialiseUserMap();
+  private User findSonarUserUntimed(final String userName) {
+
+    if (this.unknownUsers.contains(userName)) {
+      this.statistics.unknownUserHit();
+      return null;
     }
+    this.statistics.unknownUserMiss();
 
-    final User user = this.emailToUserMap.get(email);
-    if (user == null) {
-      throw new SonarUserNotFoundException();
+    final User sonarUser = this.lookupSonarUser(userName);
+    if (sonarUser == null) {
+      this.unknownUsers.add(userName);
+      return null;
     }
-    return user;
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Found Sonar user: " + sonarUser.login());
+    }
+    return sonarUser;
   }
 
-  private void initialiseUserMap() {
-    this.emailToUserMap = new HashMap<String, User>();
-    final List<User> sonarUsers = this.getAllSonarUsers();
+  private User lookupSonarUser(final String userName) {
+    User sonarUser = this.authorIndex.get(userName);
+    if (sonarUser != null || this.nonLoginAuthors.contains(userName)) {
+      this.statistics.authorIndexHit();
+    } else {
+      this.statistics.authorIndexMiss();
+      sonarUser = this.findByLogin(userName);
+    }
+
+    if (sonarUser == null) {
+      LOG.debug("SCM author is not a Sonar login, trying lookup by email, login alias or name...");
+      sonarUser = this.directory.find(userName);
+    }
+    return sonarUser;
+  }
 
-    for (final User user : sonarUsers) {
-      final String email = user.email();
-      if (StringUtils.isNotEmpty(email)) {
-        LOG.debug("Caching user [" + user.login() + "] with email [" + email + "].");
-        this.emailToUserMap.put(email, user);
-      }
+  private User findByLogin(final String login) {
+    final long start = this.statistics.getUserFinder().start();
+    try {
+      return this.userFinder.findByLogin(login);
+    } finally {
+      this.statistics.getUserFinder().stop(start);
     }
   }
 
-  private List<User> getAllSonarUsers() {
-    final UserQuery userQuery = UserQuery.builder().build();
-    return this.userFinder.find(userQuery);
+  private List<User> find(final UserQuery userQuery) {
+    final long start = this.statistics.getUserFinder().start();
+    try {
+      return this.userFinder.find(userQuery);
+    } finally {
+      this.statistics.getUserFinder().stop(start);
+    }
   }
 }
@@ -0,0 +1,599 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Blame of the resources of previous analyses, kept on disk and keyed by resource and by a digest of whatever the
+ * blame was computed from: the SCM measures, or the content of the file.  A resource whose digest is unchanged is
+ * read back as collapsed ranges, without being parsed or blamed again.
+ * <p/>
+ * The file is a short header followed by records, each prefixed with its length and CRC-32.  Records are only ever
+ * appended, as soon as they are added, the last record of a resource superseding any earlier one, and an append cut
+ * short is dropped on the next load.  Only the index of the records is held in memory; a record is read from disk
+ * when its resource is looked up.  An analysis appends at most the size bound of the file.  Once the file has grown
+ * past its bound, it is rewritten when the analysis is over, with the records looked up or added by this analysis
+ * first, then the others from the newest, until the bound is reached.
+ */
+public class BlameCache implements BatchExtension {
+
+  public static final String CACHE_FILE = "issue-assign-blame.cache";
+
+  static final int MAGIC = 0x49414243;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 4 + 4;
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlameCache.class);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int MAX_STRING_BYTES = 0xFFFF;
+  private static final long MB = 1024L * 1024L;
+  private static final int UNRESOLVED = -2;
+  private static final int DIGEST_CHUNK_CHARS = 1024;
+
+  private final File file;
+  private final long maxBytes;
+  private final IssueAssignStatistics statistics;
+
+  private final ConcurrentMap<String, Entry> index = new ConcurrentHashMap<String, Entry>();
+  // the resources looked up or added by this analysis
+  private final Set<String> used = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  // open from start to stop, read without a lock and appended to under this object's lock
+  private volatile RandomAccessFile store;
+  // the end of the last complete record, where the next is appended
+  private long length;
+  // the bytes appended by this analysis, never more than the size bound
+  private volatile long addedBytes;
+  private int addedRecords;
+  private boolean appendFailed;
+
+  public BlameCache(final Settings settings, final ModuleFileSystem moduleFileSystem, final IssueAssignStatistics statistics) {
+    this(new File(moduleFileSystem.workingDir(), CACHE_FILE),
+        settings.getInt(IssueAssignPlugin.PROPERTY_BLAME_CACHE_MAX_SIZE) * MB, statistics);
+  }
+
+  BlameCache(final File file, final long maxBytes, final IssueAssignStatistics statistics) {
+    this.file = file;
+    this.maxBytes = Math.max(0, maxBytes);
+    this.statistics = statistics;
+  }
+
+  public boolean isEnabled() {
+    return this.maxBytes > 0;
+  }
+
+  /**
+   * Indexes the records of the previous analyses, and opens the file to append those of this analysis.  A file that
+   * cannot be read is replaced.
+   */
+  public synchronized void start() {
+    if (!this.isEnabled()) {
+      return;
+    }
+    try {
+      final File directory = this.file.getAbsoluteFile().getParentFile();
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Unable to create directory [" + directory + "]");
+      }
+      this.store = new RandomAccessFile(this.file, "rw");
+      this.length = this.store.length() == 0 ? 0 : this.readIndex();
+      if (this.length == 0) {
+        this.store.setLength(0);
+        this.store.writeInt(MAGIC);
+        this.store.writeInt(VERSION);
+        this.length = HEADER_BYTES;
+      } else {
+        // drops a record cut short by an earlier append, so that the next one follows the last complete record
+        this.store.setLength(this.length);
+      }
+    } catch (final IOException e) {
+      LOG.warn("Unable to open the blame cache [" + this.file + "], blame will not be cached", e);
+      this.index.clear();
+      this.closeStore();
+    }
+  }
+
+  /**
+   * Rewrites the file if it has outgrown its size bound, and closes it.
+   */
+  public synchronized void stop() {
+    if (this.store == null) {
+      return;
+    }
+    try {
+      if (this.addedRecords > 0) {
+        LOG.debug("Added the blame of " + this.addedRecords + " resources to [" + this.file + "]");
+      }
+      if (this.length > this.maxBytes) {
+        this.rewrite();
+      }
+    } catch (final IOException e) {
+      LOG.warn("Unable to rewrite the blame cache [" + this.file + "]", e);
+    } finally {
+      this.closeStore();
+    }
+  }
+
+  /**
+   * @return the SHA-1 digest identifying the data blame is computed from, or <code>null</code> if the cache is
+   * disabled.  Each value is taken in as its length, then its characters a chunk at a time, without encoding or
+   * copying it whole: a byte for each ASCII character, which SCM measures are mostly made of, and an escape byte
+   * followed by the two bytes of the character for the others.  Hashing the measures costs most of a hit, so they are
+   * hashed in as few bytes as they can be told apart in.
+   */
+  public byte[] digest(final String... values) {
+    if (!this.isEnabled()) {
+      return null;
+    }
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 is not available", e);
+    }
+    final char[] chars = new char[DIGEST_CHUNK_CHARS];
+    final byte[] bytes = new byte[3 * DIGEST_CHUNK_CHARS];
+    for (final String value : values) {
+      final int length = value == null ? -1 : value.length();
+      digest.update(ByteBuffer.wrap(bytes).putInt(length).array(), 0, 4);
+      for (int offset = 0; offset < length; offset += chars.length) {
+        final int count = Math.min(chars.length, length - offset);
+        value.getChars(offset, offset + count, chars, 0);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+          final char c = chars[i];
+          if (c < 0x80) {
+            bytes[size++] = (byte) c;
+          } else {
+            bytes[size++] = (byte) 0xFF;
+            bytes[size++] = (byte) (c >>> 8);
+            bytes[size++] = (byte) c;
+          }
+        }
+        digest.update(bytes, 0, size);
+      }
+    }
+    return digest.digest();
+  }
+
+  /**
+   * @return the blame of the resource, if cached with the same digest, or <code>null</code>.
+   */
+  public ScmMeasures get(final String resourceKey, final byte[] digest, final ScmDictionary authors,
+                         final ScmDictionary revisions) {
+    if (!this.isEnabled() || digest == null) {
+      return null;
+    }
+    final Entry entry = this.index.get(resourceKey);
+    if (entry == null || !Arrays.equals(entry.digest, digest)) {
+      this.statistics.blameCacheMiss();
+      return null;
+    }
+    try {
+      final ScmMeasures scmMeasures = decode(resourceKey, ByteBuffer.wrap(this.read(entry)), authors, revisions);
+      this.used.add(resourceKey);
+      this.statistics.blameCacheHit();
+      return scmMeasures;
+    } catch (final IOException e) {
+      LOG.warn("Unable to read the cached blame of resource [" + resourceKey + "]", e);
+      this.index.remove(resourceKey, entry);
+      this.statistics.blameCacheMiss();
+      return null;
+    }
+  }
+
+  /**
+   * Appends the blame of the resource to the file.  Blame is no longer cached once the records appended by this
+   * analysis fill the size bound of the file.
+   */
+  public void put(final String resourceKey, final byte[] digest, final ScmMeasures scmMeasures) {
+    if (!this.isEnabled() || digest == null || this.store == null || this.addedBytes >= this.maxBytes - HEADER_BYTES) {
+      return;
+    }
+    final byte[] record = encode(resourceKey, digest, scmMeasures);
+    if (record != null) {
+      this.append(resourceKey, digest, record);
+    }
+  }
+
+  /**
+   * @return the number of resources in the cache, those added by this analysis included.
+   */
+  public int size() {
+    return this.index.size();
+  }
+
+  private synchronized void append(final String resourceKey, final byte[] digest, final byte[] record) {
+    final RandomAccessFile output = this.store;
+    if (output == null || this.appendFailed) {
+      return;
+    }
+    if (this.addedBytes + record.length > this.maxBytes - HEADER_BYTES) {
+      LOG.debug("The blame cache is full, the blame of resource [" + resourceKey + "] is not cached");
+      return;
+    }
+    try {
+      final ByteBuffer buffer = ByteBuffer.wrap(record);
+      final FileChannel channel = output.getChannel();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, this.length + buffer.position());
+      }
+    } catch (final IOException e) {
+      // the record cut short is dropped on the next load
+      LOG.warn("Unable to append to the blame cache [" + this.file + "], no more blame will be cached", e);
+      this.appendFailed = true;
+      return;
+    }
+    this.index.put(resourceKey, new Entry(this.length, record.length, digest));
+    this.used.add(resourceKey);
+    this.length += record.length;
+    this.addedBytes += record.length;
+    this.addedRecords++;
+  }
+
+  /**
+   * @return the length of the file up to the end of its last complete record, or 0 if it cannot be read.
+   */
+  private long readIndex() {
+    try {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+      try {
+        final long validLength = this.readIndex(input, this.file.length());
+        LOG.debug("Read the index of " + this.index.size() + " blamed resources from [" + this.file + "]");
+        return validLength;
+      } finally {
+        input.close();
+      }
+    } catch (final IOException e) {
+      LOG.warn("Unable to read the blame cache [" + this.file + "], it will be replaced", e);
+      this.index.clear();
+      return 0;
+    }
+  }
+
+  /**
+   * Reads the key and digest of each record, skipping over the blame itself.
+   *
+   * @return the length of the file up to the end of its last complete record.
+   */
+  private long readIndex(final DataInputStream input, final long fileLength) throws IOException {
+    if (input.readInt() != MAGIC) {
+      throw new IOException("Not a blame cache");
+    }
+    final int version = input.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported blame cache version [" + version + "]");
+    }
+    long position = HEADER_BYTES;
+    try {
+      while (true) {
+        final int length;
+        try {
+          length = input.readInt();
+        } catch (final EOFException e) {
+          return position;
+        }
+        if (length < 0 || position + 8 + length > fileLength) {
+          throw new EOFException();
+        }
+        input.readInt();
+        final byte[] key = new byte[input.readUnsignedShort()];
+        input.readFully(key);
+        final byte[] digest = new byte[input.readUnsignedByte()];
+        input.readFully(digest);
+        final int rest = length - 2 - key.length - 1 - digest.length;
+        if (rest < 0) {
+          throw new EOFException();
+        }
+        skipFully(input, rest);
+        this.index.put(new String(key, UTF_8), new Entry(position, 8 + length, digest));
+        position += 8 + length;
+      }
+    } catch (final EOFException e) {
+      LOG.debug("Dropping a partial record at the end of the blame cache [" + this.file + "]");
+      return position;
+    }
+  }
+
+  private static void skipFully(final DataInputStream input, final long count) throws IOException {
+    long remaining = count;
+    while (remaining > 0) {
+      final long skipped = input.skip(remaining);
+      if (skipped > 0) {
+        remaining -= skipped;
+      } else {
+        input.readByte();
+        remaining--;
+      }
+    }
+  }
+
+  private byte[] read(final Entry entry) throws IOException {
+    final RandomAccessFile input = this.store;
+    if (input == null) {
+      throw new IOException("Blame cache is closed");
+    }
+    final ByteBuffer record = ByteBuffer.allocate(entry.length);
+    final FileChannel channel = input.getChannel();
+    while (record.hasRemaining()) {
+      if (channel.read(record, entry.offset + record.position()) < 0) {
+        throw new IOException("Truncated record");
+      }
+    }
+    record.flip();
+    final int length = record.getInt();
+    final int crc = record.getInt();
+    final byte[] body = new byte[length];
+    record.get(body);
+    final CRC32 checksum = new CRC32();
+    checksum.update(body);
+    if ((int) checksum.getValue() != crc) {
+      throw new IOException("Corrupt record: checksum mismatch");
+    }
+    return body;
+  }
+
+  private void rewrite() throws IOException {
+    final File directory = this.file.getAbsoluteFile().getParentFile();
+    final List<Map.Entry<String, Entry>> kept = new ArrayList<Map.Entry<String, Entry>>(this.index.entrySet());
+    // looked up or added by this analysis first, then the newest
+    Collections.sort(kept, new Comparator<Map.Entry<String, Entry>>() {
+      public int compare(final Map.Entry<String, Entry> first, final Map.Entry<String, Entry> second) {
+        final boolean firstUsed = BlameCache.this.used.contains(first.getKey());
+        if (firstUsed != BlameCache.this.used.contains(second.getKey())) {
+          return firstUsed ? -1 : 1;
+        }
+        final long firstOffset = first.getValue().offset;
+        final long secondOffset = second.getValue().offset;
+        return firstOffset > secondOffset ? -1 : (firstOffset == secondOffset ? 0 : 1);
+      }
+    });
+
+    final File temporary = File.createTempFile(this.file.getName() + ".new", ".tmp", directory);
+    long size = HEADER_BYTES;
+    int records = 0;
+    final OutputStream output = new FileOutputStream(temporary);
+    try {
+      final DataOutputStream header = new DataOutputStream(output);
+      header.writeInt(MAGIC);
+      header.writeInt(VERSION);
+      header.flush();
+      for (final Map.Entry<String, Entry> entry : kept) {
+        if (size + entry.getValue().length > this.maxBytes) {
+          continue;
+        }
+        try {
+          final byte[] body = this.read(entry.getValue());
+          output.write(frame(body));
+          size += entry.getValue().length;
+          records++;
+        } catch (final IOException e) {
+          LOG.debug("Dropping an unreadable record of resource [" + entry.getKey() + "] from the blame cache");
+        }
+      }
+    } finally {
+      output.close();
+    }
+
+    this.closeStore();
+    // renaming over an existing file fails on some platforms
+    if (!temporary.renameTo(this.file) && !(this.file.delete() && temporary.renameTo(this.file))) {
+      temporary.delete();
+      throw new IOException("Unable to move the blame cache to [" + this.file + "]");
+    }
+    LOG.debug("Rewrote the blame cache [" + this.file + "] with " + records + " resources in " + size + " bytes");
+  }
+
+  private void closeStore() {
+    if (this.store != null) {
+      try {
+        this.store.close();
+      } catch (final IOException e) {
+        LOG.debug("Unable to close the blame cache [" + this.file + "]", e);
+      }
+      this.store = null;
+    }
+  }
+
+  /**
+   * @return the record of the blame, or <code>null</code> if a value is too long to be cached.
+   */
+  static byte[] encode(final String resourceKey, final byte[] digest, final ScmMeasures scmMeasures) {
+    final BlameRanges ranges = scmMeasures.getRanges();
+    final ScmDictionary authors = scmMeasures.getAuthors();
+    final ScmDictionary revisions = scmMeasures.getRevisions();
+
+    // each record has its own table of the author and revision strings it refers to
+    final List<String> strings = new ArrayList<String>();
+    final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+    final int[] authorIndexes = new int[ranges.size()];
+    final int[] revisionIndexes = new int[ranges.size()];
+    for (int index = 0; index < ranges.size(); index++) {
+      authorIndexes[index] = stringId(authors.valueOf(ranges.getAuthorId(index)), strings, stringIds);
+      revisionIndexes[index] = stringId(revisions.valueOf(ranges.getRevisionId(index)), strings, stringIds);
+    }
+
+    try {
+      final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(64 + 24 * ranges.size());
+      final DataOutputStream body = new DataOutputStream(bodyBytes);
+      if (!writeString(body, resourceKey)) {
+        return null;
+      }
+      body.writeByte(digest.length);
+      body.write(digest);
+      body.writeInt(ranges.getLineCount());
+      body.writeInt(strings.size());
+      for (final String value : strings) {
+        if (!writeString(body, value)) {
+          return null;
+        }
+      }
+      body.writeInt(ranges.size());
+      for (int index = 0; index < ranges.size(); index++) {
+        body.writeInt(ranges.getStart(index));
+        body.writeInt(authorIndexes[index]);
+        body.writeInt(revisionIndexes[index]);
+        body.writeLong(ranges.getTime(index));
+      }
+      body.flush();
+      return frame(bodyBytes.toByteArray());
+    } catch (final IOException e) {
+      throw new IllegalStateException("Unable to encode the blame of resource [" + resourceKey + "]", e);
+    }
+  }
+
+  static ScmMeasures decode(final String resourceKey, final ByteBuffer body, final ScmDictionary authors,
+                            final ScmDictionary revisions) throws IOException {
+    try {
+      readString(body);
+      final int digestLength = body.get() & 0xFF;
+      body.position(body.position() + digestLength);
+      final int lineCount = body.getInt();
+      final String[] strings = new String[body.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = readString(body);
+      }
+      final int size = body.getInt();
+      if (size < 0 || size > body.remaining() / 20) {
+        throw new IOException("Corrupt record: range count overruns the record");
+      }
+      final int[] starts = new int[size];
+      final int[] authorIds = new int[size];
+      final int[] revisionIds = new int[size];
+      final long[] times = new long[size];
+      // each string is looked up in the shared dictionaries once, however many ranges refer to it
+      final int[] authorIdsOfStrings = unresolved(strings.length);
+      final int[] revisionIdsOfStrings = unresolved(strings.length);
+      for (int index = 0; index < size; index++) {
+        starts[index] = body.getInt();
+        authorIds[index] = idOf(strings, body.getInt(), authors, authorIdsOfStrings);
+        revisionIds[index] = idOf(strings, body.getInt(), revisions, revisionIdsOfStrings);
+        times[index] = body.getLong();
+      }
+      return ScmMeasures.of(resourceKey, new BlameRanges(starts, authorIds, revisionIds, times, lineCount), authors, revisions);
+    } catch (final RuntimeException e) {
+      throw new IOException("Corrupt record: " + e);
+    }
+  }
+
+  private static byte[] frame(final byte[] body) {
+    final CRC32 checksum = new CRC32();
+    checksum.update(body);
+    return ByteBuffer.allocate(8 + body.length).putInt(body.length).putInt((int) checksum.getValue()).put(body).array();
+  }
+
+  private static int stringId(final String value, final List<String> strings, final Map<String, Integer> stringIds) {
+    if (value == null) {
+      return ScmDictionary.NO_ID;
+    }
+    Integer id = stringIds.get(value);
+    if (id == null) {
+      id = strings.size();
+      strings.add(value);
+      stringIds.put(value, id);
+    }
+    return id;
+  }
+
+  private static int[] unresolved(final int length) {
+    final int[] ids = new int[length];
+    Arrays.fill(ids, UNRESOLVED);
+    return ids;
+  }
+
+  private static int idOf(final String[] strings, final int index, final ScmDictionary dictionary, final int[] ids) {
+    if (index == ScmDictionary.NO_ID) {
+      return ScmDictionary.NO_ID;
+    }
+    if (ids[index] == UNRESOLVED) {
+      ids[index] = dictionary.idOf(strings[index]);
+    }
+    return ids[index];
+  }
+
+  private static boolean writeString(final DataOutputStream output, final String value) throws IOException {
+    final byte[] bytes = value.getBytes(UTF_8);
+    if (bytes.length > MAX_STRING_BYTES) {
+      return false;
+    }
+    output.writeShort(bytes.length);
+    output.write(bytes);
+    return true;
+  }
+
+  private static String readString(final ByteBuffer buffer) throws IOException {
+    final int length = buffer.getShort() & MAX_STRING_BYTES;
+    if (length > buffer.remaining()) {
+      throw new IOException("Corrupt record: string overruns the record");
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Position, in the file, of the last record of a resource.
+   */
+  private static final class Entry {
+    private final long offset;
+    private final int length;
+    private final byte[] digest;
+
+    private Entry(final long offset, final int length, final byte[] digest) {
+      this.offset = offset;
+      this.length = length;
+      this.digest = digest;
+    }
+  }
+}
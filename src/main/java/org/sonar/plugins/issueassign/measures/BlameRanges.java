@@ -0,0 +1,172 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import java.util.Arrays;
+
+/**
+ * Run-length encoded blame of a resource.  Consecutive lines with the same author, revision and commit
+ * time are collapsed into one range, and a line is looked up by binary search over the range starts,
+ * so storage grows with the number of commit runs rather than the number of lines.  Subclasses may hold the ranges
+ * elsewhere, such as in a {@link BlameSnapshot}, by overriding the accessors of a range.
+ */
+public class BlameRanges {
+
+  private final int[] starts;
+  private final int[] authorIds;
+  private final int[] revisionIds;
+  private final long[] times;
+  private final int lineCount;
+
+  /**
+   * Collapses line-indexed arrays (index 0 unused) in a single pass.
+   */
+  public BlameRanges(final int[] authorIdsByLine, final int[] revisionIdsByLine, final long[] timesByLine) {
+    this.lineCount = Math.max(authorIdsByLine.length, Math.max(revisionIdsByLine.length, timesByLine.length)) - 1;
+
+    int[] rangeStarts = new int[16];
+    int[] rangeAuthorIds = new int[16];
+    int[] rangeRevisionIds = new int[16];
+    long[] rangeTimes = new long[16];
+    int size = 0;
+
+    for (int line = 1; line <= this.lineCount; line++) {
+      final int authorId = valueAt(authorIdsByLine, line);
+      final int revisionId = valueAt(revisionIdsByLine, line);
+      final long time = line < timesByLine.length ? timesByLine[line] : ScmMeasures.NO_DATE;
+
+      if (size > 0 && rangeAuthorIds[size - 1] == authorId && rangeRevisionIds[size - 1] == revisionId
+          && rangeTimes[size - 1] == time) {
+        continue;
+      }
+      if (size == rangeStarts.length) {
+        final int newLength = size * 2;
+        rangeStarts = Arrays.copyOf(rangeStarts, newLength);
+        rangeAuthorIds = Arrays.copyOf(rangeAuthorIds, newLength);
+        rangeRevisionIds = Arrays.copyOf(rangeRevisionIds, newLength);
+        rangeTimes = Arrays.copyOf(rangeTimes, newLength);
+      }
+      rangeStarts[size] = line;
+      rangeAuthorIds[size] = authorId;
+      rangeRevisionIds[size] = revisionId;
+      rangeTimes[size] = time;
+      size++;
+    }
+
+    this.starts = Arrays.copyOf(rangeStarts, size);
+    this.authorIds = Arrays.copyOf(rangeAuthorIds, size);
+    this.revisionIds = Arrays.copyOf(rangeRevisionIds, size);
+    this.times = Arrays.copyOf(rangeTimes, size);
+  }
+
+  /**
+   * For subclasses holding their ranges elsewhere.
+   */
+  BlameRanges(final int lineCount) {
+    this(new int[0], new int[0], new int[0], new long[0], lineCount);
+  }
+
+  /**
+   * Takes ranges already collapsed, such as read back from a {@link BlameCache}.  The arrays are held, not copied.
+   */
+  BlameRanges(final int[] starts, final int[] authorIds, final int[] revisionIds, final long[] times, final int lineCount) {
+    this.starts = starts;
+    this.authorIds = authorIds;
+    this.revisionIds = revisionIds;
+    this.times = times;
+    this.lineCount = lineCount;
+  }
+
+  public int getLineCount() {
+    return this.lineCount;
+  }
+
+  public int size() {
+    return this.starts.length;
+  }
+
+  /**
+   * @return a rough estimate of the heap held by these ranges, in bytes.
+   */
+  public long getEstimatedBytes() {
+    // object header and fields, four array headers, and per range an int start, author and revision and a long time
+    return 32 + 4 * 16 + (long) this.starts.length * (4 + 4 + 4 + 8);
+  }
+
+  /**
+   * @return the index of the range holding the line, or -1 if the line is out of bounds.
+   */
+  public int indexOf(final int line) {
+    if (line < 1 || line > this.lineCount || this.size() == 0) {
+      return -1;
+    }
+    return this.search(line);
+  }
+
+  /**
+   * @return the index of the last range starting at or before the line, which is within bounds.
+   */
+  int search(final int line) {
+    final int index = Arrays.binarySearch(this.starts, line);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  public int getStart(final int index) {
+    return this.starts[index];
+  }
+
+  /**
+   * @return the last line of the range, inclusive.
+   */
+  public int getEnd(final int index) {
+    return index + 1 < this.size() ? this.getStart(index + 1) - 1 : this.lineCount;
+  }
+
+  public int getAuthorId(final int index) {
+    return this.authorIds[index];
+  }
+
+  public int getRevisionId(final int index) {
+    return this.revisionIds[index];
+  }
+
+  public long getTime(final int index) {
+    return this.times[index];
+  }
+
+  public int authorIdAt(final int line) {
+    final int index = this.indexOf(line);
+    return index < 0 ? ScmDictionary.NO_ID : this.getAuthorId(index);
+  }
+
+  public int revisionIdAt(final int line) {
+    final int index = this.indexOf(line);
+    return index < 0 ? ScmDictionary.NO_ID : this.getRevisionId(index);
+  }
+
+  public long timeAt(final int line) {
+    final int index = this.indexOf(line);
+    return index < 0 ? ScmMeasures.NO_DATE : this.getTime(index);
+  }
+
+  private static int valueAt(final int[] valuesByLine, final int line) {
+    return line < valuesByLine.length ? valuesByLine[line] : ScmDictionary.NO_ID;
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Blame of the resources of a project, exported by an earlier analysis with a {@link BlameSnapshotWriter}, and read
+ * through a memory mapping.  Looking up a resource only reads its entry in the file table; the blame of a line is
+ * then read from the mapping on demand, so the snapshot stays off the heap.
+ * <p/>
+ * The file is a fixed header followed by the tables, then the ranges.  The tables are the offsets of the strings,
+ * the UTF-8 strings themselves, resource keys, authors and revisions alike, and one entry per resource, sorted by
+ * key: the string of its key, its line count, its range count and the offset of its ranges.  Each range is a start
+ * line, the strings of its author and revision, and a commit time.  The header holds the counts, and the length and
+ * CRC-32 of the tables, which are checked when the snapshot is opened; ranges are only checked against the bounds
+ * of the file.
+ */
+public final class BlameSnapshot {
+
+  static final int MAGIC = 0x49414253;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 4 + 4;
+  static final int FILE_BYTES = 4 + 4 + 4 + 8;
+  static final int RANGE_BYTES = 4 + 4 + 4 + 8;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int UNRESOLVED = -2;
+
+  // only ever read with absolute gets, which leave the buffer untouched, so that threads can share it
+  private final ByteBuffer buffer;
+  private final int fileCount;
+  private final int stringCount;
+  private final int stringsPosition;
+  private final int filesPosition;
+  private final ScmDictionary authors;
+  private final ScmDictionary revisions;
+  // snapshot strings resolved to the ids of the project dictionaries on first use; racing threads resolve the same id
+  private final int[] authorIds;
+  private final int[] revisionIds;
+
+  private BlameSnapshot(final ByteBuffer buffer, final int fileCount, final int stringCount,
+                        final ScmDictionary authors, final ScmDictionary revisions) {
+    this.buffer = buffer;
+    this.fileCount = fileCount;
+    this.stringCount = stringCount;
+    this.stringsPosition = HEADER_BYTES + 4 * (stringCount + 1);
+    this.filesPosition = this.stringsPosition + buffer.getInt(HEADER_BYTES + 4 * stringCount);
+    this.authors = authors;
+    this.revisions = revisions;
+    this.authorIds = unresolved(stringCount);
+    this.revisionIds = unresolved(stringCount);
+  }
+
+  /**
+   * Maps the snapshot held by the file.  The authors and revisions of the resources looked up are recorded in the
+   * given dictionaries.
+   *
+   * @throws IOException if the file cannot be read, or is not a valid snapshot.
+   */
+  public static BlameSnapshot open(final File file, final ScmDictionary authors, final ScmDictionary revisions)
+      throws IOException {
+    final FileInputStream input = new FileInputStream(file);
+    try {
+      final FileChannel channel = input.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Blame snapshot [" + file + "] is too large to be mapped");
+      }
+      // the mapping outlives the channel
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return open(buffer, authors, revisions);
+    } finally {
+      input.close();
+    }
+  }
+
+  private static BlameSnapshot open(final ByteBuffer buffer, final ScmDictionary authors, final ScmDictionary revisions)
+      throws IOException {
+    if (buffer.limit() < HEADER_BYTES) {
+      throw new IOException("Truncated blame snapshot");
+    }
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a blame snapshot");
+    }
+    final int version = buffer.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("Unsupported blame snapshot version [" + version + "]");
+    }
+    final int fileCount = buffer.getInt(8);
+    final int stringCount = buffer.getInt(12);
+    final int tablesLength = buffer.getInt(16);
+    final int crc = buffer.getInt(20);
+    if (fileCount < 0 || stringCount < 0 || tablesLength < 0 || tablesLength > buffer.limit() - HEADER_BYTES
+        || 4L * (stringCount + 1) > tablesLength) {
+      throw new IOException("Truncated blame snapshot");
+    }
+
+    final CRC32 checksum = new CRC32();
+    final byte[] chunk = new byte[8192];
+    final ByteBuffer tables = buffer.duplicate();
+    tables.position(HEADER_BYTES);
+    tables.limit(HEADER_BYTES + tablesLength);
+    while (tables.hasRemaining()) {
+      final int length = Math.min(chunk.length, tables.remaining());
+      tables.get(chunk, 0, length);
+      checksum.update(chunk, 0, length);
+    }
+    if ((int) checksum.getValue() != crc) {
+      throw new IOException("Corrupt blame snapshot: checksum mismatch");
+    }
+
+    final long stringsLength = buffer.getInt(HEADER_BYTES + 4 * stringCount);
+    if (stringsLength < 0 || 4L * (stringCount + 1) + stringsLength + (long) FILE_BYTES * fileCount != tablesLength) {
+      throw new IOException("Corrupt blame snapshot: tables do not add up");
+    }
+    return new BlameSnapshot(buffer, fileCount, stringCount, authors, revisions);
+  }
+
+  /**
+   * @return the number of resources in the snapshot.
+   */
+  public int size() {
+    return this.fileCount;
+  }
+
+  /**
+   * @return the blame of the resource, or <code>null</code> if it is not in the snapshot.
+   */
+  public ScmMeasures getMeasures(final String resourceKey) {
+    final int file = this.find(resourceKey.getBytes(UTF_8));
+    if (file < 0) {
+      return null;
+    }
+    final int position = this.filesPosition + file * FILE_BYTES;
+    final int lineCount = this.buffer.getInt(position + 4);
+    final int rangeCount = this.buffer.getInt(position + 8);
+    final long rangesPosition = this.buffer.getLong(position + 12);
+    if (lineCount < 0 || rangeCount < 0 || rangesPosition < 0
+        || rangesPosition + (long) rangeCount * RANGE_BYTES > this.buffer.limit()) {
+      throw new IllegalStateException("Corrupt blame snapshot: ranges of resource [" + resourceKey + "] are out of bounds");
+    }
+    return ScmMeasures.of(resourceKey, new MappedRanges((int) rangesPosition, rangeCount, lineCount), this.authors,
+        this.revisions);
+  }
+
+  /**
+   * @return the index of the entry of the resource in the file table, or -1 if there is none.
+   */
+  private int find(final byte[] key) {
+    int low = 0;
+    int high = this.fileCount - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int comparison = this.compareString(this.buffer.getInt(this.filesPosition + middle * FILE_BYTES), key);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Compares a string of the snapshot with a key, byte by byte, as the writer sorts them.
+   */
+  private int compareString(final int string, final byte[] key) {
+    final int start = this.stringStart(string);
+    final int length = this.stringStart(string + 1) - start;
+    final int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      final int difference = (this.buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return length - key.length;
+  }
+
+  private int stringStart(final int string) {
+    if (string < 0 || string > this.stringCount) {
+      throw new IllegalStateException("Corrupt blame snapshot: no string [" + string + "]");
+    }
+    return this.stringsPosition + this.buffer.getInt(HEADER_BYTES + 4 * string);
+  }
+
+  private String stringAt(final int string) {
+    final int start = this.stringStart(string);
+    final byte[] bytes = new byte[this.stringStart(string + 1) - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = this.buffer.get(start + i);
+    }
+    return new String(bytes, UTF_8);
+  }
+
+  private int idOf(final int string, final ScmDictionary dictionary, final int[] ids) {
+    if (string == ScmDictionary.NO_ID) {
+      return ScmDictionary.NO_ID;
+    }
+    if (string < 0 || string >= this.stringCount) {
+      throw new IllegalStateException("Corrupt blame snapshot: no string [" + string + "]");
+    }
+    if (ids[string] == UNRESOLVED) {
+      ids[string] = dictionary.idOf(this.stringAt(string));
+    }
+    return ids[string];
+  }
+
+  private static int[] unresolved(final int length) {
+    final int[] ids = new int[length];
+    Arrays.fill(ids, UNRESOLVED);
+    return ids;
+  }
+
+  /**
+   * Ranges of a resource, read from the mapping.
+   */
+  private final class MappedRanges extends BlameRanges {
+
+    private final int position;
+    private final int size;
+
+    MappedRanges(final int position, final int size, final int lineCount) {
+      super(lineCount);
+      this.position = position;
+      this.size = size;
+    }
+
+    @Override
+    public int size() {
+      return this.size;
+    }
+
+    @Override
+    public long getEstimatedBytes() {
+      // the ranges themselves are off the heap
+      return 32;
+    }
+
+    @Override
+    int search(final int line) {
+      int low = 0;
+      int high = this.size - 1;
+      while (low <= high) {
+        final int middle = (low + high) >>> 1;
+        final int start = this.getStart(middle);
+        if (start < line) {
+          low = middle + 1;
+        } else if (start > line) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return low - 1;
+    }
+
+    @Override
+    public int getStart(final int index) {
+      return BlameSnapshot.this.buffer.getInt(this.offsetOf(index));
+    }
+
+    @Override
+    public int getAuthorId(final int index) {
+      return BlameSnapshot.this.idOf(BlameSnapshot.this.buffer.getInt(this.offsetOf(index) + 4),
+          BlameSnapshot.this.authors, BlameSnapshot.this.authorIds);
+    }
+
+    @Override
+    public int getRevisionId(final int index) {
+      return BlameSnapshot.this.idOf(BlameSnapshot.this.buffer.getInt(this.offsetOf(index) + 8),
+          BlameSnapshot.this.revisions, BlameSnapshot.this.revisionIds);
+    }
+
+    @Override
+    public long getTime(final int index) {
+      return BlameSnapshot.this.buffer.getLong(this.offsetOf(index) + 12);
+    }
+
+    private int offsetOf(final int index) {
+      if (index < 0 || index >= this.size) {
+        throw new ArrayIndexOutOfBoundsException(index);
+      }
+      return this.position + index * RANGE_BYTES;
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a {@link BlameSnapshot}.  The ranges of each resource are spooled to a temporary file as the resource is
+ * added, so that only the strings and the file table are held until the snapshot is written.  A resource added
+ * twice keeps its last ranges.
+ * <p/>
+ * Measures are written as they are held: evicted ranges are inflated for the spool only, and dormant measures, which
+ * would have to be parsed, are left out, for later analyses to read from their SCM measures.
+ */
+final class BlameSnapshotWriter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlameSnapshotWriter.class);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final File spoolFile;
+  private final DataOutputStream spool;
+  private long spoolLength;
+  private final List<String> strings = new ArrayList<String>();
+  private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+  private int dormant;
+
+  /**
+   * @param directory where to spool the ranges.
+   */
+  BlameSnapshotWriter(final File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create directory [" + directory + "]");
+    }
+    this.spoolFile = File.createTempFile("issue-assign-blame", ".spool", directory);
+    this.spool = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.spoolFile)));
+  }
+
+  synchronized void add(final ScmMeasures scmMeasures) throws IOException {
+    final BlameRanges ranges = scmMeasures.peekRanges();
+    if (ranges == null) {
+      this.dormant++;
+      return;
+    }
+    final ScmDictionary authors = scmMeasures.getAuthors();
+    final ScmDictionary revisions = scmMeasures.getRevisions();
+    final long offset = this.spoolLength;
+    for (int index = 0; index < ranges.size(); index++) {
+      this.spool.writeInt(ranges.getStart(index));
+      this.spool.writeInt(this.stringId(authors.valueOf(ranges.getAuthorId(index))));
+      this.spool.writeInt(this.stringId(revisions.valueOf(ranges.getRevisionId(index))));
+      this.spool.writeLong(ranges.getTime(index));
+    }
+    this.spoolLength += (long) ranges.size() * BlameSnapshot.RANGE_BYTES;
+    this.entries.put(scmMeasures.getKey(), new Entry(this.stringId(scmMeasures.getKey()), ranges.getLineCount(),
+        ranges.size(), offset));
+  }
+
+  synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * @return the number of dormant measures left out.
+   */
+  synchronized int getDormantCount() {
+    return this.dormant;
+  }
+
+  /**
+   * Writes the snapshot to a temporary file first, then moves it in place, so that a failed write never leaves
+   * a partial snapshot behind.
+   */
+  synchronized void write(final File file) throws IOException {
+    this.spool.flush();
+    final File directory = file.getAbsoluteFile().getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create directory [" + directory + "]");
+    }
+
+    final byte[][] stringBytes = new byte[this.strings.size()][];
+    for (int i = 0; i < stringBytes.length; i++) {
+      stringBytes[i] = this.strings.get(i).getBytes(UTF_8);
+    }
+    final List<Entry> sorted = new ArrayList<Entry>(this.entries.values());
+    Collections.sort(sorted, new Comparator<Entry>() {
+      public int compare(final Entry first, final Entry second) {
+        return compareBytes(stringBytes[first.key], stringBytes[second.key]);
+      }
+    });
+
+    final ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+    final DataOutputStream tables = new DataOutputStream(tableBytes);
+    int stringOffset = 0;
+    for (final byte[] value : stringBytes) {
+      tables.writeInt(stringOffset);
+      stringOffset += value.length;
+    }
+    tables.writeInt(stringOffset);
+    for (final byte[] value : stringBytes) {
+      tables.write(value);
+    }
+    final long rangesPosition = BlameSnapshot.HEADER_BYTES + tables.size() + (long) sorted.size() * BlameSnapshot.FILE_BYTES;
+    for (final Entry entry : sorted) {
+      tables.writeInt(entry.key);
+      tables.writeInt(entry.lineCount);
+      tables.writeInt(entry.rangeCount);
+      tables.writeLong(rangesPosition + entry.offset);
+    }
+    tables.flush();
+    final byte[] payload = tableBytes.toByteArray();
+    final CRC32 checksum = new CRC32();
+    checksum.update(payload);
+
+    final File temporary = File.createTempFile(file.getName() + ".new", ".tmp", directory);
+    final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+    try {
+      output.writeInt(BlameSnapshot.MAGIC);
+      output.writeInt(BlameSnapshot.VERSION);
+      output.writeInt(sorted.size());
+      output.writeInt(stringBytes.length);
+      output.writeInt(payload.length);
+      output.writeInt((int) checksum.getValue());
+      output.write(payload);
+      copy(this.spoolFile, output);
+    } finally {
+      output.close();
+    }
+
+    // renaming over an existing file fails on some platforms
+    if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+      temporary.delete();
+      throw new IOException("Unable to move the blame snapshot to [" + file + "]");
+    }
+  }
+
+  /**
+   * Drops the spooled ranges.
+   */
+  synchronized void close() {
+    try {
+      this.spool.close();
+    } catch (final IOException e) {
+      LOG.debug("Unable to close the blame snapshot spool [" + this.spoolFile + "]", e);
+    }
+    if (!this.spoolFile.delete()) {
+      LOG.debug("Unable to delete the blame snapshot spool [" + this.spoolFile + "]");
+    }
+  }
+
+  private int stringId(final String value) {
+    if (value == null) {
+      return ScmDictionary.NO_ID;
+    }
+    Integer id = this.stringIds.get(value);
+    if (id == null) {
+      id = this.strings.size();
+      this.strings.add(value);
+      this.stringIds.put(value, id);
+    }
+    return id;
+  }
+
+  private static int compareBytes(final byte[] first, final byte[] second) {
+    final int common = Math.min(first.length, second.length);
+    for (int i = 0; i < common; i++) {
+      final int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return first.length - second.length;
+  }
+
+  private static void copy(final File from, final OutputStream to) throws IOException {
+    final InputStream input = new FileInputStream(from);
+    try {
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) >= 0) {
+        to.write(buffer, 0, read);
+      }
+    } finally {
+      input.close();
+    }
+  }
+
+  /**
+   * A resource of the file table.
+   */
+  private static final class Entry {
+    private final int key;
+    private final int lineCount;
+    private final int rangeCount;
+    private final long offset;
+
+    private Entry(final int key, final int lineCount, final int rangeCount, final long offset) {
+      this.key = key;
+      this.lineCount = lineCount;
+      this.rangeCount = rangeCount;
+      this.offset = offset;
+    }
+  }
+}
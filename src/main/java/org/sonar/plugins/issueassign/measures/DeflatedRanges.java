@@ -0,0 +1,144 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link BlameRanges} compressed with deflate, for measures held but not used for a while.  Authors and revisions
+ * stay encoded by their ids in the dictionaries of the project, so that inflating does not look anything up.
+ * Each column is written in turn, and the range starts as the length of the range before, which deflate
+ * compresses better than interleaved values.
+ */
+final class DeflatedRanges {
+
+  /**
+   * The estimated size of the smallest deflated ranges, which ranges estimated at no more than it cannot shrink to.
+   */
+  static final long MIN_ESTIMATED_BYTES = 24 + 16 + 8;
+  private static final int BUFFER_BYTES = 4096;
+
+  private final byte[] data;
+  private final int rangeCount;
+
+  private DeflatedRanges(final byte[] data, final int rangeCount) {
+    this.data = data;
+    this.rangeCount = rangeCount;
+  }
+
+  static DeflatedRanges of(final BlameRanges ranges) {
+    final int size = ranges.size();
+    // the columns are laid out in full first, so that they are deflated in one pass rather than value by value
+    final ByteBuffer columns = ByteBuffer.allocate(columnsLength(size));
+    columns.putInt(ranges.getLineCount());
+    int previousStart = 0;
+    for (int index = 0; index < size; index++) {
+      columns.putInt(ranges.getStart(index) - previousStart);
+      previousStart = ranges.getStart(index);
+    }
+    for (int index = 0; index < size; index++) {
+      columns.putInt(ranges.getAuthorId(index));
+    }
+    for (int index = 0; index < size; index++) {
+      columns.putInt(ranges.getRevisionId(index));
+    }
+    for (int index = 0; index < size; index++) {
+      columns.putLong(ranges.getTime(index));
+    }
+
+    // fastest level, as ranges are deflated on the decorator thread
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(columns.array());
+      deflater.finish();
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + size * 4);
+      final byte[] buffer = new byte[BUFFER_BYTES];
+      while (!deflater.finished()) {
+        bytes.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return new DeflatedRanges(bytes.toByteArray(), size);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  BlameRanges inflate() {
+    final byte[] columns = new byte[columnsLength(this.rangeCount)];
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(this.data);
+      int length = 0;
+      while (length < columns.length) {
+        final int inflated = inflater.inflate(columns, length, columns.length - length);
+        if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+          throw new IllegalStateException("Unable to inflate blame ranges: truncated data");
+        }
+        length += inflated;
+      }
+    } catch (final DataFormatException e) {
+      throw new IllegalStateException("Unable to inflate blame ranges", e);
+    } finally {
+      inflater.end();
+    }
+
+    final ByteBuffer in = ByteBuffer.wrap(columns);
+    final int[] starts = new int[this.rangeCount];
+    final int[] authorIds = new int[this.rangeCount];
+    final int[] revisionIds = new int[this.rangeCount];
+    final long[] times = new long[this.rangeCount];
+    final int lineCount = in.getInt();
+    int start = 0;
+    for (int index = 0; index < this.rangeCount; index++) {
+      start += in.getInt();
+      starts[index] = start;
+    }
+    for (int index = 0; index < this.rangeCount; index++) {
+      authorIds[index] = in.getInt();
+    }
+    for (int index = 0; index < this.rangeCount; index++) {
+      revisionIds[index] = in.getInt();
+    }
+    for (int index = 0; index < this.rangeCount; index++) {
+      times[index] = in.getLong();
+    }
+    return new BlameRanges(starts, authorIds, revisionIds, times, lineCount);
+  }
+
+  private static int columnsLength(final int rangeCount) {
+    // the line count, then per range an int start, author and revision and a long time
+    return 4 + rangeCount * (4 + 4 + 4 + 8);
+  }
+
+  int size() {
+    return this.rangeCount;
+  }
+
+  /**
+   * @return a rough estimate of the heap held by these ranges, in bytes.
+   */
+  long getEstimatedBytes() {
+    // object header and fields, and the array header and data
+    return 24 + 16 + this.data.length;
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Ownership summary of a resource: the revision and date of its last commit, the lines touched by
+ * that commit and the author of those lines, if there is exactly one.
+ */
+public class LastCommit {
+
+  private final String revision;
+  private final Date date;
+  private final int[] lineRanges;
+  private final String author;
+  private final boolean uniqueAuthor;
+
+  /**
+   * Groups the ranges of the resource by revision: the last commit is the revision with the latest commit
+   * time, and its author is the one the lines of this resource committed at that time are blamed on, if they
+   * all agree.
+   */
+  LastCommit(final ScmMeasures scmMeasures) {
+    final BlameRanges ranges = scmMeasures.getRanges();
+
+    int lastRevisionId = ScmDictionary.NO_ID;
+    long lastCommitTime = ScmMeasures.NO_DATE;
+    for (int index = 0; index < ranges.size(); index++) {
+      final int revisionId = ranges.getRevisionId(index);
+      if (revisionId != ScmDictionary.NO_ID && ranges.getTime(index) > lastCommitTime) {
+        lastRevisionId = revisionId;
+        lastCommitTime = ranges.getTime(index);
+      }
+    }
+
+    // another revision committed at the same time by another author leaves no unique author either
+    int authorId = ScmDictionary.NO_ID;
+    boolean unique = true;
+    int[] lastCommitRanges = new int[8];
+    int rangeCount = 0;
+    for (int index = 0; index < ranges.size() && lastRevisionId != ScmDictionary.NO_ID; index++) {
+      final int revisionId = ranges.getRevisionId(index);
+      if (revisionId == ScmDictionary.NO_ID || ranges.getTime(index) != lastCommitTime) {
+        continue;
+      }
+      final int rangeAuthorId = ranges.getAuthorId(index);
+      if (authorId == ScmDictionary.NO_ID) {
+        authorId = rangeAuthorId;
+      } else if (rangeAuthorId != ScmDictionary.NO_ID && rangeAuthorId != authorId) {
+        unique = false;
+      }
+      if (revisionId == lastRevisionId) {
+        if (rangeCount * 2 == lastCommitRanges.length) {
+          lastCommitRanges = Arrays.copyOf(lastCommitRanges, lastCommitRanges.length * 2);
+        }
+        lastCommitRanges[rangeCount * 2] = ranges.getStart(index);
+        lastCommitRanges[rangeCount * 2 + 1] = ranges.getEnd(index);
+        rangeCount++;
+      }
+    }
+
+    this.revision = scmMeasures.getRevisions().valueOf(lastRevisionId);
+    this.date = lastCommitTime == ScmMeasures.NO_DATE ? null : new Date(lastCommitTime);
+    this.lineRanges = Arrays.copyOf(lastCommitRanges, rangeCount * 2);
+    this.author = unique ? scmMeasures.getAuthors().valueOf(authorId) : null;
+    this.uniqueAuthor = unique;
+  }
+
+  /**
+   * @return a rough estimate of the heap held by this summary, in bytes, the shared author and revision excluded.
+   */
+  long getEstimatedBytes() {
+    return 40 + 32 + 16 + 4L * this.lineRanges.length;
+  }
+
+  /**
+   * @return the revision of the last commit, or <code>null</code> if it was not derived from revisions.
+   */
+  public String getRevision() {
+    return this.revision;
+  }
+
+  public Date getDate() {
+    return this.date;
+  }
+
+  /**
+   * Expands the lines of the last commit; prefer {@link #getLineCount()} where the lines themselves are
+   * not needed.
+   */
+  public List<Integer> getLines() {
+    final List<Integer> lines = new ArrayList<Integer>();
+    for (int i = 0; i < this.lineRanges.length; i += 2) {
+      for (int line = this.lineRanges[i]; line <= this.lineRanges[i + 1]; line++) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  public int getLineCount() {
+    int count = 0;
+    for (int i = 0; i < this.lineRanges.length; i += 2) {
+      count += this.lineRanges[i + 1] - this.lineRanges[i] + 1;
+    }
+    return count;
+  }
+
+  /**
+   * @return the author of the last commit, or <code>null</code> if there is no unique author.
+   */
+  public String getAuthor() {
+    return this.author;
+  }
+
+  public boolean hasUniqueAuthor() {
+    return this.uniqueAuthor;
+  }
+
+  @Override
+  public String toString() {
+    return "LastCommit[revision=" + this.revision + ", date=" + this.date + ", lines=" + this.getLineCount() + ", author=" + this.author + "]";
+  }
+}
@@ -19,10 +19,13 @@
  */
 package org.sonar.plugins.issueassign.measures;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Decorator;
+import org.sonar.api.batch.DecoratorBarriers;
 import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.batch.DependedUpon;
 import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
@@ -31,52 +34,400 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.ResourceUtils;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+import org.sonar.plugins.issueassign.UserDirectory;
 import org.sonar.plugins.issueassign.exception.MissingScmMeasureDataException;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
+/**
+ * Collects the SCM blame measures of each file.  Runs before issue tracking, so that the measures of a
+ * file are available by the time its issues reach {@link org.sonar.plugins.issueassign.IssueAssigner}.
+ * <p/>
+ * The measures are parsed on the decorator thread, unless parse threads are configured: the raw measures of each
+ * file are then handed to a bounded pool, and only the issues of a file still being parsed wait for it.  When the
+ * pool falls behind, the decorator thread parses the next file itself.  The measures may instead be held
+ * {@link ScmMeasures#dormant dormant}, optionally deflated, and parsed only once an issue of the file needs blame.
+ * <p/>
+ * The measures held may be bounded in size: once their estimated size goes over the bound, the measures least
+ * recently held or looked up are {@link ScmMeasures#evict evicted} to a compressed form until they are back under
+ * three quarters of it, and are inflated again if looked up.
+ */
+@DependedUpon(DecoratorBarriers.ISSUES_ADDED)
 public class MeasuresCollector implements Decorator {
 
   private static final Logger LOG = LoggerFactory.getLogger(MeasuresCollector.class);
-  private final Map<String, ScmMeasures> resourceScmMeasures = new HashMap<String, ScmMeasures>();
+  private static final int QUEUED_FILES_PER_THREAD = 32;
+  private static final long MB = 1024L * 1024L;
+  // written by decoration and read by issue assignment, possibly on other threads
+  private final ConcurrentMap<String, ScmMeasures> resourceScmMeasures = new ConcurrentHashMap<String, ScmMeasures>();
+  private final ScmDictionary authors = new ScmDictionary();
+  private final ScmDictionary revisions = new ScmDictionary();
+  private final List<ReleaseListener> releaseListeners = new CopyOnWriteArrayList<ReleaseListener>();
   private final Settings settings;
+  private final IssueAssignStatistics statistics;
+  private final UserDirectory userDirectory;
+  private final BlameCache blameCache;
+  private final ModuleFileSystem moduleFileSystem;
+  private final ExecutorService parser;
+  private final boolean parseOnUse;
+  private final int dormantLevel;
+  // 0 when the measures held are not bounded
+  private final long maxHeldBytes;
+  // ticks once per resource held, to order the measures by last use
+  private final AtomicLong clock = new AtomicLong();
+  // the estimated size over which the next eviction pass runs, raised when a pass could not evict enough
+  private long nextEvictionBytes;
+  // measures read from a snapshot instead of the decorator, and those exported to another
+  private BlameSnapshot snapshot;
+  private BlameSnapshotWriter snapshotWriter;
 
   public MeasuresCollector(final Settings settings) {
+    this(settings, new IssueAssignStatistics(), null, null, null);
+  }
+
+  /**
+   * @param userDirectory    the Sonar users to prefetch while the project is decorated, or <code>null</code> to
+   *                         leave them to be loaded on first use.
+   * @param blameCache       the blame of previous analyses, used for resources whose SCM measures are unchanged, or
+   *                         <code>null</code> to parse the measures of every resource.
+   * @param moduleFileSystem the module that relative paths to blame snapshots are resolved against, or
+   *                         <code>null</code> to resolve them against the working directory of the process.
+   */
+  public MeasuresCollector(final Settings settings, final IssueAssignStatistics statistics, final UserDirectory userDirectory,
+                           final BlameCache blameCache, final ModuleFileSystem moduleFileSystem) {
     this.settings = settings;
+    this.statistics = statistics;
+    this.userDirectory = userDirectory;
+    this.blameCache = blameCache;
+    this.moduleFileSystem = moduleFileSystem;
+    this.parseOnUse = settings.getBoolean(IssueAssignPlugin.PROPERTY_PARSE_LAZY);
+    this.parser = this.parseOnUse
+        ? null : createParser(settings.getInt(IssueAssignPlugin.PROPERTY_PARSE_THREADS));
+    this.dormantLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION,
+        settings.getInt(IssueAssignPlugin.PROPERTY_PARSE_LAZY_COMPRESSION)));
+    this.maxHeldBytes = Math.max(0, settings.getInt(IssueAssignPlugin.PROPERTY_MEASURES_MAX_HEAP)) * MB;
+    this.nextEvictionBytes = this.maxHeldBytes;
+  }
+
+  /**
+   * Maps the blame snapshot to read measures from, and prepares the one to export them to, if configured.
+   */
+  public void start() {
+    final String snapshotPath = this.settings.getString(IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT);
+    if (StringUtils.isNotEmpty(snapshotPath)) {
+      final File file = this.resolve(snapshotPath);
+      try {
+        this.snapshot = BlameSnapshot.open(file, this.authors, this.revisions);
+        LOG.info("Reading the blame of " + this.snapshot.size() + " resources from the snapshot [" + file + "]");
+      } catch (final IOException e) {
+        LOG.warn("Unable to read the blame snapshot [" + file + "], SCM measures will be used instead", e);
+      }
+    }
+    if (StringUtils.isNotEmpty(this.getSnapshotExportPath())) {
+      final File directory = this.moduleFileSystem == null
+          ? new File(System.getProperty("java.io.tmpdir")) : this.moduleFileSystem.workingDir();
+      try {
+        this.snapshotWriter = new BlameSnapshotWriter(directory);
+      } catch (final IOException e) {
+        LOG.warn("Unable to export a blame snapshot", e);
+      }
+    }
   }
 
   public void decorate(final Resource resource, final DecoratorContext decoratorContext) {
 
     if (ResourceUtils.isFile(resource)) {
+      final long start = this.statistics.getDecorate().start();
       try {
-        final ScmMeasures scmMeasures = this.getMeasures(resource.getEffectiveKey(), decoratorContext);
-        resourceScmMeasures.put(resource.getEffectiveKey(), scmMeasures);
+        final ScmMeasures imported = this.snapshot == null ? null : this.snapshot.getMeasures(resource.getEffectiveKey());
+        if (imported != null) {
+          this.holdParsed(resource.getEffectiveKey(), imported);
+        } else if (this.parseOnUse) {
+          this.decorateDormant(resource.getEffectiveKey(), decoratorContext);
+        } else if (this.parser == null) {
+          this.holdParsed(resource.getEffectiveKey(), this.readMeasures(resource.getEffectiveKey(), decoratorContext));
+        } else {
+          this.decorateDeferred(resource.getEffectiveKey(), decoratorContext);
+        }
       } catch (final MissingScmMeasureDataException e) {
         LOG.warn("SCM Measures not collected for resource [" + resource.getEffectiveKey() + "]");
       } catch (final Exception e) {
         LOG.error("Error collecting measures for resource [" + resource.getEffectiveKey() + "]", e);
+      } finally {
+        this.statistics.getDecorate().stop(start);
       }
     }
   }
 
   public boolean shouldExecuteOnProject(final Project project) {
-    final boolean isEnabled = this.settings.getBoolean(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_ENABLED);
+    final boolean isEnabled = this.settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED);
     LOG.info("Issue Assign Plugin is " + (isEnabled ? "ENABLED" : "DISABLED"));
+    if (isEnabled && this.userDirectory != null) {
+      // overlap the load of the Sonar users with the decoration of the project
+      this.userDirectory.prefetch();
+    }
     return isEnabled;
   }
 
+  /**
+   * Exports the measures still held, if a blame snapshot is to be exported.
+   */
+  public void stop() {
+    if (this.parser != null) {
+      this.parser.shutdownNow();
+    }
+    if (this.snapshotWriter != null) {
+      for (final ScmMeasures scmMeasures : this.resourceScmMeasures.values()) {
+        this.export(scmMeasures);
+      }
+      this.writeSnapshot();
+    }
+  }
+
   public Map<String, ScmMeasures> getResources() {
     return this.resourceScmMeasures;
   }
 
-  private ScmMeasures getMeasures(final String resourceKey, final DecoratorContext decoratorContext) throws MissingScmMeasureDataException {
+  /**
+   * Looks up the measures of a resource, recording their use so that they are among the last to be evicted.
+   *
+   * @return the measures, or <code>null</code> if none are held for the resource.
+   */
+  public ScmMeasures getMeasures(final String resourceKey) {
+    final ScmMeasures scmMeasures = this.resourceScmMeasures.get(resourceKey);
+    if (scmMeasures != null) {
+      scmMeasures.touch(this.clock.get());
+    }
+    return scmMeasures;
+  }
+
+  /**
+   * Drops the measures of a resource whose issues have all been handled, and tells the release listeners.
+   */
+  public void release(final String resourceKey) {
+    final ScmMeasures released = this.resourceScmMeasures.remove(resourceKey);
+    if (released != null) {
+      this.export(released);
+      this.statistics.measuresReleased(released.release());
+      LOG.debug("Released SCM measures for resource [" + resourceKey + "]");
+    }
+    // whether or not the resource had measures, blame may have been read for it elsewhere
+    for (final ReleaseListener releaseListener : this.releaseListeners) {
+      releaseListener.released(resourceKey);
+    }
+  }
+
+  public void addReleaseListener(final ReleaseListener releaseListener) {
+    this.releaseListeners.add(releaseListener);
+  }
+
+  /**
+   * @return the distinct SCM authors seen so far in this analysis.
+   */
+  public ScmDictionary getAuthors() {
+    return this.authors;
+  }
+
+  private void holdParsed(final String resourceKey, final ScmMeasures scmMeasures) {
+    // summarise ownership once per resource, rather than once per issue
+    final LastCommit lastCommit = scmMeasures.getLastCommit();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Resource [" + resourceKey + "]: " + lastCommit);
+    }
+    this.statistics.measuresHeld(scmMeasures.getEstimatedBytes());
+    this.hold(resourceKey, scmMeasures);
+  }
+
+  private void hold(final String resourceKey, final ScmMeasures scmMeasures) {
+    final long tick = this.clock.incrementAndGet();
+    scmMeasures.touch(tick);
+    final ScmMeasures previous = this.resourceScmMeasures.put(resourceKey, scmMeasures);
+    if (previous != null) {
+      this.statistics.measuresReleased(previous.release());
+    }
+    if (this.maxHeldBytes > 0 && this.statistics.getEstimatedBytesHeld() > this.nextEvictionBytes) {
+      this.evict(tick);
+    }
+  }
+
+  /**
+   * Evicts the measures least recently used before the tick, until those held are under three quarters of the bound.
+   */
+  private void evict(final long tick) {
+    final List<Use> uses = new ArrayList<Use>(this.resourceScmMeasures.size());
+    for (final ScmMeasures scmMeasures : this.resourceScmMeasures.values()) {
+      // the time of last use is read once, as lookups on other threads may move it during the sort
+      final long lastUsed = scmMeasures.getLastUsed();
+      if (lastUsed < tick && !scmMeasures.isEvicted()) {
+        uses.add(new Use(scmMeasures, lastUsed));
+      }
+    }
+    Collections.sort(uses);
+
+    final long targetBytes = this.maxHeldBytes - this.maxHeldBytes / 4;
+    int evictions = 0;
+    long freedBytes = 0;
+    for (final Use use : uses) {
+      if (this.statistics.getEstimatedBytesHeld() <= targetBytes) {
+        break;
+      }
+      final long freed = use.scmMeasures.evict(this.statistics);
+      if (freed > 0) {
+        evictions++;
+        freedBytes += freed;
+      }
+    }
+    // measures that cannot be evicted, such as those still being parsed, are not gone over again on every hold
+    this.nextEvictionBytes = Math.max(this.maxHeldBytes, this.statistics.getEstimatedBytesHeld() + this.maxHeldBytes / 4);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Evicted the SCM measures of " + evictions + " resources, " + freedBytes + " bytes freed");
+    }
+  }
+
+  private ScmMeasures readMeasures(final String resourceKey, final DecoratorContext decoratorContext) throws MissingScmMeasureDataException {
     final String authorsByLineMeasureData = this.getMeasureData(decoratorContext, CoreMetrics.SCM_AUTHORS_BY_LINE, resourceKey);
     final String lastCommitByLineMeasureData = this.getMeasureData(decoratorContext, CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, resourceKey);
     final String revisionsByLineMeasureData = this.getMeasureData(decoratorContext, CoreMetrics.SCM_REVISIONS_BY_LINE, resourceKey);
 
-    return new ScmMeasures(resourceKey, authorsByLineMeasureData,
+    final byte[] digest = this.digest(authorsByLineMeasureData, lastCommitByLineMeasureData, revisionsByLineMeasureData);
+    final ScmMeasures cached = this.getCached(resourceKey, digest);
+    if (cached != null) {
+      return cached;
+    }
+
+    final long start = this.statistics.getParse().start();
+    final ScmMeasures scmMeasures = new ScmMeasures(resourceKey, authorsByLineMeasureData,
+        lastCommitByLineMeasureData, revisionsByLineMeasureData, this.authors, this.revisions);
+    this.statistics.getParse().stop(start);
+    this.putCached(resourceKey, digest, scmMeasures);
+    return scmMeasures;
+  }
+
+  /**
+   * Holds measures whose parse is left to the pool of parser threads, unless their blame is cached.
+   */
+  private void decorateDeferred(final String resourceKey, final DecoratorContext decoratorContext) throws MissingScmMeasureDataException {
+    final String authorsByLineMeasureData = this.getMeasureData(decoratorContext, CoreMetrics.SCM_AUTHORS_BY_LINE, resourceKey);
+    final String lastCommitByLineMeasureData = this.getMeasureData(decoratorContext, CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, resourceKey);
+    final String revisionsByLineMeasureData = this.getMeasureData(decoratorContext, CoreMetrics.SCM_REVISIONS_BY_LINE, resourceKey);
+
+    final byte[] digest = this.digest(authorsByLineMeasureData, lastCommitByLineMeasureData, revisionsByLineMeasureData);
+    final ScmMeasures cached = this.getCached(resourceKey, digest);
+    if (cached != null) {
+      this.holdParsed(resourceKey, cached);
+      return;
+    }
+
+    // held at the size of the raw measures, the parse reporting the bytes it adds once done
+    final ScmMeasures scmMeasures = ScmMeasures.deferred(resourceKey, authorsByLineMeasureData,
+        lastCommitByLineMeasureData, revisionsByLineMeasureData, this.authors, this.revisions, this.statistics);
+    this.statistics.measuresHeld(scmMeasures.getEstimatedBytes());
+    this.hold(resourceKey, scmMeasures);
+    this.parser.execute(new Runnable() {
+      public void run() {
+        scmMeasures.parse();
+        MeasuresCollector.this.putCached(resourceKey, digest, scmMeasures);
+      }
+    });
+  }
+
+  /**
+   * Holds the raw measures, deflated if configured, until first used.  The blame cache is neither looked up nor added to:
+   * most of the measures are never parsed, so digesting all of them would cost more than the parses it saves, and
+   * measures parsed on use may be parsed on any thread, after the cache is closed.
+   */
+  private void decorateDormant(final String resourceKey, final DecoratorContext decoratorContext) throws MissingScmMeasureDataException {
+    final String authorsByLineMeasureData = this.getMeasureData(decoratorContext, CoreMetrics.SCM_AUTHORS_BY_LINE, resourceKey);
+    final String lastCommitByLineMeasureData = this.getMeasureData(decoratorContext, CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, resourceKey);
+    final String revisionsByLineMeasureData = this.getMeasureData(decoratorContext, CoreMetrics.SCM_REVISIONS_BY_LINE, resourceKey);
+
+    final DormantMeasures measures = DormantMeasures.of(this.dormantLevel, authorsByLineMeasureData,
         lastCommitByLineMeasureData, revisionsByLineMeasureData);
+    final ScmMeasures scmMeasures = ScmMeasures.dormant(resourceKey, measures, this.authors, this.revisions, this.statistics);
+    this.statistics.dormantMeasuresHeld(scmMeasures.getEstimatedBytes());
+    this.hold(resourceKey, scmMeasures);
+  }
+
+  private byte[] digest(final String... measureData) {
+    return this.blameCache == null ? null : this.blameCache.digest(measureData);
+  }
+
+  private ScmMeasures getCached(final String resourceKey, final byte[] digest) {
+    return digest == null ? null : this.blameCache.get(resourceKey, digest, this.authors, this.revisions);
+  }
+
+  private void putCached(final String resourceKey, final byte[] digest, final ScmMeasures scmMeasures) {
+    // measures that could not be parsed are not worth keeping
+    if (digest != null && !scmMeasures.isEmpty()) {
+      this.blameCache.put(resourceKey, digest, scmMeasures);
+    }
+  }
+
+  private void export(final ScmMeasures scmMeasures) {
+    final BlameSnapshotWriter writer = this.snapshotWriter;
+    if (writer == null) {
+      return;
+    }
+    try {
+      writer.add(scmMeasures);
+    } catch (final IOException e) {
+      LOG.warn("Unable to export the blame of resource [" + scmMeasures.getKey() + "], no snapshot will be exported", e);
+      this.snapshotWriter = null;
+      writer.close();
+    }
+  }
+
+  private void writeSnapshot() {
+    final BlameSnapshotWriter writer = this.snapshotWriter;
+    if (writer == null) {
+      return;
+    }
+    this.snapshotWriter = null;
+    final File file = this.resolve(this.getSnapshotExportPath());
+    try {
+      // leaves the snapshot of an earlier analysis alone, as when the plugin is disabled
+      if (writer.size() == 0) {
+        LOG.info("No blame to export to the snapshot [" + file + "]");
+        return;
+      }
+      writer.write(file);
+      LOG.info("Exported the blame of " + writer.size() + " resources to the snapshot [" + file + "]");
+      if (writer.getDormantCount() > 0) {
+        LOG.info("Left the " + writer.getDormantCount() + " resources whose SCM measures were never parsed out of the snapshot");
+      }
+    } catch (final IOException e) {
+      LOG.warn("Unable to export the blame snapshot [" + file + "]", e);
+    } finally {
+      writer.close();
+    }
+  }
+
+  private String getSnapshotExportPath() {
+    return this.settings.getString(IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT_EXPORT);
+  }
+
+  private File resolve(final String path) {
+    final File file = new File(path);
+    return file.isAbsolute() || this.moduleFileSystem == null ? file : new File(this.moduleFileSystem.baseDir(), path);
   }
 
   private String getMeasureData(final DecoratorContext decoratorContext, final Metric metric, final String resourceKey) throws MissingScmMeasureDataException {
@@ -87,4 +438,52 @@ public class MeasuresCollector implements Decorator {
     LOG.debug("No measure found for metric [" + metric.getKey() + "] on resource [" + resourceKey + "]");
     throw new MissingScmMeasureDataException();
   }
+
+  /**
+   * @return a pool of daemon threads with a bounded queue, which runs tasks on the submitting thread once full, or
+   * <code>null</code> if no threads are configured.
+   */
+  private static ExecutorService createParser(final int threads) {
+    if (threads <= 0) {
+      return null;
+    }
+    LOG.info("Parsing SCM measures on " + threads + " threads");
+    final AtomicInteger threadCount = new AtomicInteger();
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(threads * QUEUED_FILES_PER_THREAD),
+        new ThreadFactory() {
+          public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "issue-assign-parser-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        },
+        new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  /**
+   * Told of each resource released, to drop what was read for it other than its SCM measures.
+   */
+  public interface ReleaseListener {
+
+    void released(String resourceKey);
+  }
+
+  /**
+   * Measures held, ordered by their last use.
+   */
+  private static final class Use implements Comparable<Use> {
+
+    private final ScmMeasures scmMeasures;
+    private final long lastUsed;
+
+    Use(final ScmMeasures scmMeasures, final long lastUsed) {
+      this.scmMeasures = scmMeasures;
+      this.lastUsed = lastUsed;
+    }
+
+    public int compareTo(final Use other) {
+      return this.lastUsed < other.lastUsed ? -1 : (this.lastUsed == other.lastUsed ? 0 : 1);
+    }
+  }
 }
@@ -0,0 +1,57 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.sonar.api.batch.Decorator;
+import org.sonar.api.batch.DecoratorBarriers;
+import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.batch.DependsUpon;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.ResourceUtils;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+
+/**
+ * Releases the SCM measures of each file once issue tracking, and so issue assignment, is done with it,
+ * so that peak memory follows the largest file rather than the whole project.
+ */
+@DependsUpon(DecoratorBarriers.ISSUES_TRACKED)
+public class MeasuresReleaser implements Decorator {
+
+  private final MeasuresCollector measuresCollector;
+  private final Settings settings;
+
+  public MeasuresReleaser(final MeasuresCollector measuresCollector, final Settings settings) {
+    this.measuresCollector = measuresCollector;
+    this.settings = settings;
+  }
+
+  public void decorate(final Resource resource, final DecoratorContext decoratorContext) {
+    if (ResourceUtils.isFile(resource)) {
+      this.measuresCollector.release(resource.getEffectiveKey());
+    }
+  }
+
+  public boolean shouldExecuteOnProject(final Project project) {
+    return this.settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)
+        && this.settings.getBoolean(IssueAssignPlugin.PROPERTY_RELEASE_MEASURES);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Project-wide dictionary assigning a stable integer id to each distinct SCM value (author or revision),
+ * so that per-line data can be held as <code>int</code>s and every value is stored once.
+ * <p/>
+ * Safe for concurrent use: values already known are looked up without locking, and only the first sighting of a
+ * value takes the lock.  Values are held in an append-only array, republished through a volatile field whenever
+ * it grows, so that an id handed out by one thread can be resolved by any other.
+ */
+public class ScmDictionary {
+
+  public static final int NO_ID = -1;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+  private volatile String[] values = new String[INITIAL_CAPACITY];
+  private volatile int size;
+
+  public int idOf(final String value) {
+    if (value == null) {
+      return NO_ID;
+    }
+    final Integer id = this.ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    return this.add(value);
+  }
+
+  public String valueOf(final int id) {
+    if (id == NO_ID) {
+      return null;
+    }
+    if (id >= this.size) {
+      throw new IndexOutOfBoundsException("No value for id " + id);
+    }
+    return this.values[id];
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  private synchronized int add(final String value) {
+    final Integer id = this.ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    final int newId = this.size;
+    String[] current = this.values;
+    if (newId == current.length) {
+      current = Arrays.copyOf(current, current.length * 2);
+    }
+    current[newId] = value;
+    // publish the value before its id, so that whoever sees the id also sees the value
+    this.values = current;
+    this.size = newId + 1;
+    this.ids.put(value, newId);
+    return newId;
+  }
+}
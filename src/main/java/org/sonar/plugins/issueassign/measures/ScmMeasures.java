@@ -23,68 +23,486 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric;
-import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
+/**
+ * SCM blame data for a single resource.  The measures are parsed once, on construction, and collapsed
+ * into {@link BlameRanges}: runs of lines sharing an author, revision and commit time are held as one
+ * range.  Authors and revisions are encoded through dictionaries shared by all resources of the project.
+ * <p/>
+ * The parse may instead be {@link #deferred deferred} to a worker thread, in which case the first accessor to need
+ * the ranges waits for them, or the raw measures held {@link #dormant dormant}, optionally deflated, until first
+ * used.  Measures not used for a while may be {@link #evict evicted} to {@link DeflatedRanges}, and are inflated
+ * again by the first accessor to need them.
+ */
 public class ScmMeasures {
 
-  private static final Logger LOG = LoggerFactory.getLogger(ScmMeasures.class);
-  private String resourceKey;
+  public static final long NO_DATE = Long.MIN_VALUE;
 
-  private final String authorsByLineMeasure;
-  private final String lastCommitsByLineMeasure;
-  private final String revisionsByLineMeasure;
+  private static final Logger LOG = LoggerFactory.getLogger(ScmMeasures.class);
+  private final String resourceKey;
+  private final ScmDictionary authors;
+  private final ScmDictionary revisions;
+  // null until parsed; a deferred parse is held by pendingRanges, and dropped once done
+  private volatile BlameRanges ranges;
+  private volatile FutureTask<BlameRanges> pendingRanges;
+  // set, with the parse pending, while dormant
+  private volatile DormantMeasures dormantMeasures;
+  // set, with ranges then null, while evicted
+  private volatile DeflatedRanges evicted;
+  private IssueAssignStatistics evictedStatistics;
+  // set once deflating the ranges was found not to shrink them, guarded by this
+  private boolean incompressible;
+  // the estimated size of the raw measures held by a deferred parse
+  private long deferredBytes;
+  // set once the holder no longer reports these measures as held, guarded by this
+  private boolean released;
+  // the tick of the holder's clock at which these measures were last held or looked up
+  private volatile long lastUsed;
 
-  private Map<Integer, String> authorsByLine;
-  private Map<Integer, Date> lastCommitsByLine;
-  private Map<Integer, String> revisionsByLine;
+  // immutable once built, so that threads racing to build it first are harmless
+  private volatile LastCommit lastCommit;
 
   public ScmMeasures(final String resourceKey, final String authorsByLineMeasure,
                      final String lastCommitsByLineMeasure, final String revisionsByLineMeasure) {
+    this(resourceKey, authorsByLineMeasure, lastCommitsByLineMeasure, revisionsByLineMeasure,
+        new ScmDictionary(), new ScmDictionary());
+  }
+
+  public ScmMeasures(final String resourceKey, final String authorsByLineMeasure,
+                     final String lastCommitsByLineMeasure, final String revisionsByLineMeasure,
+                     final ScmDictionary authors, final ScmDictionary revisions) {
+    this(resourceKey, authors, revisions);
+    this.ranges = parseRanges(authorsByLineMeasure, lastCommitsByLineMeasure, revisionsByLineMeasure, authors, revisions);
+  }
+
+  private ScmMeasures(final String resourceKey, final ScmDictionary authors, final ScmDictionary revisions) {
     this.resourceKey = resourceKey;
-    this.authorsByLineMeasure = authorsByLineMeasure;
-    this.lastCommitsByLineMeasure = lastCommitsByLineMeasure;
-    this.revisionsByLineMeasure = revisionsByLineMeasure;
+    this.authors = authors;
+    this.revisions = revisions;
+  }
+
+  /**
+   * Builds the measures of a resource from blame read line by line from another source, such as a local repository.
+   * The arrays are indexed by line, index 0 unused; a <code>null</code> author or revision, or a time of
+   * {@link #NO_DATE}, leaves a line without blame data.
+   */
+  public static ScmMeasures of(final String resourceKey, final String[] authorsByLine, final long[] lastCommitsByLine,
+                               final String[] revisionsByLine, final ScmDictionary authors, final ScmDictionary revisions) {
+    final ScmMeasures scmMeasures = new ScmMeasures(resourceKey, authors, revisions);
+    scmMeasures.ranges = new BlameRanges(idsOf(authorsByLine, authors), idsOf(revisionsByLine, revisions),
+        lastCommitsByLine);
+    return scmMeasures;
+  }
+
+  /**
+   * Builds the measures of a resource from ranges already collapsed, their authors and revisions encoded through
+   * the given dictionaries.
+   */
+  static ScmMeasures of(final String resourceKey, final BlameRanges ranges, final ScmDictionary authors,
+                        final ScmDictionary revisions) {
+    final ScmMeasures scmMeasures = new ScmMeasures(resourceKey, authors, revisions);
+    scmMeasures.ranges = ranges;
+    return scmMeasures;
+  }
+
+  /**
+   * Holds on to the raw measures of a resource until {@link #parse()} is run, typically on a worker thread.  Until
+   * then the measures are estimated by the size of the raw measures; the parse summarises the last commit and
+   * reports the bytes it adds, or frees, to the statistics.  An accessor called before then runs the parse itself,
+   * or waits for the thread already running it.  Measures that cannot be parsed are logged and left empty.
+   */
+  static ScmMeasures deferred(final String resourceKey, final String authorsByLineMeasure,
+                              final String lastCommitsByLineMeasure, final String revisionsByLineMeasure,
+                              final ScmDictionary authors, final ScmDictionary revisions,
+                              final IssueAssignStatistics statistics) {
+    final ScmMeasures scmMeasures = new ScmMeasures(resourceKey, authors, revisions);
+    scmMeasures.deferredBytes = estimateRawBytes(authorsByLineMeasure, lastCommitsByLineMeasure, revisionsByLineMeasure);
+    scmMeasures.pendingRanges = new FutureTask<BlameRanges>(new Callable<BlameRanges>() {
+      public BlameRanges call() {
+        final long start = statistics.getParse().start();
+        BlameRanges parsed;
+        try {
+          parsed = parseRanges(authorsByLineMeasure, lastCommitsByLineMeasure, revisionsByLineMeasure, authors, revisions);
+        } catch (final RuntimeException e) {
+          LOG.error("Error parsing SCM measures for resource [" + resourceKey + "]", e);
+          parsed = new BlameRanges(new int[1], new int[1], new long[1]);
+        } finally {
+          statistics.getParse().stop(start);
+        }
+        synchronized (scmMeasures) {
+          final long deferredBytes = scmMeasures.getEstimatedBytes();
+          scmMeasures.ranges = parsed;
+          scmMeasures.getLastCommit();
+          if (!scmMeasures.released) {
+            statistics.measuresParsed(scmMeasures.getEstimatedBytes() - deferredBytes);
+          }
+        }
+        return parsed;
+      }
+    });
+    return scmMeasures;
+  }
+
+  /**
+   * Holds on to the raw measures of a resource, optionally deflated, until an accessor first needs them: they are
+   * then inflated and parsed on its thread, the last commit summarised, and the bytes added reported to the statistics.
+   * The measures of resources never looked up are never parsed.  Measures that cannot be parsed are logged and
+   * left empty.
+   *
+   * @param measures the authors, last commit dates and revisions by line, in that order.
+   */
+  public static ScmMeasures dormant(final String resourceKey, final DormantMeasures measures,
+                                    final ScmDictionary authors, final ScmDictionary revisions,
+                                    final IssueAssignStatistics statistics) {
+    final ScmMeasures scmMeasures = new ScmMeasures(resourceKey, authors, revisions);
+    scmMeasures.dormantMeasures = measures;
+    scmMeasures.pendingRanges = new FutureTask<BlameRanges>(new Callable<BlameRanges>() {
+      public BlameRanges call() {
+        final long dormantBytes = scmMeasures.getEstimatedBytes();
+        final long start = statistics.getParse().start();
+        BlameRanges parsed;
+        try {
+          final String[] measureData = measures.getMeasureData();
+          parsed = parseRanges(measureData[0], measureData[1], measureData[2], authors, revisions);
+        } catch (final RuntimeException e) {
+          LOG.error("Error parsing SCM measures for resource [" + resourceKey + "]", e);
+          parsed = new BlameRanges(new int[1], new int[1], new long[1]);
+        } finally {
+          statistics.getParse().stop(start);
+        }
+        synchronized (scmMeasures) {
+          scmMeasures.ranges = parsed;
+          scmMeasures.getLastCommit();
+          if (!scmMeasures.released) {
+            statistics.dormantMeasuresParsed(scmMeasures.getEstimatedBytes() - dormantBytes);
+          }
+          scmMeasures.dormantMeasures = null;
+        }
+        return parsed;
+      }
+    });
+    return scmMeasures;
+  }
+
+  /**
+   * Runs the deferred parse of these measures, unless it has already been run.
+   */
+  void parse() {
+    final FutureTask<BlameRanges> pending = this.pendingRanges;
+    if (pending != null) {
+      pending.run();
+      this.pendingRanges = null;
+    }
+  }
+
+  public String getAuthor(final int line) {
+    return this.authors.valueOf(this.getRanges().authorIdAt(line));
+  }
+
+  public long getLastCommit(final int line) {
+    return this.getRanges().timeAt(line);
+  }
+
+  public String getRevision(final int line) {
+    return this.revisions.valueOf(this.getRanges().revisionIdAt(line));
+  }
+
+  /**
+   * @return the highest line number for which blame data is held.
+   */
+  public int getLineCount() {
+    return this.getRanges().getLineCount();
+  }
+
+  public ScmDictionary getAuthors() {
+    return this.authors;
+  }
+
+  public ScmDictionary getRevisions() {
+    return this.revisions;
+  }
+
+  /**
+   * @return a rough estimate of the heap held by these measures, in bytes.  The author and revision dictionaries
+   * are shared by all resources, and so are not included.
+   */
+  public long getEstimatedBytes() {
+    final BlameRanges parsed = this.ranges;
+    final DeflatedRanges deflated = this.evicted;
+    final DormantMeasures dormant = this.dormantMeasures;
+    final long rangeBytes;
+    if (parsed != null) {
+      rangeBytes = parsed.getEstimatedBytes();
+    } else if (deflated != null) {
+      // sized as held, without inflating them
+      rangeBytes = deflated.getEstimatedBytes();
+    } else if (dormant != null) {
+      rangeBytes = dormant.getEstimatedBytes();
+    } else {
+      // sized by the raw measures of the pending parse, without forcing it
+      rangeBytes = this.deferredBytes;
+    }
+    final LastCommit summary = this.lastCommit;
+    return 48 + rangeBytes + (summary == null ? 0 : summary.getEstimatedBytes());
+  }
+
+  /**
+   * Deflates the ranges of these measures, which are inflated again on next use.  Measures still to be parsed,
+   * already evicted, or that deflating would not shrink, such as those mapped from a {@link BlameSnapshot}, are left
+   * alone.  The last commit is kept as is.
+   *
+   * @return the estimated bytes freed, reported to the statistics along with the bytes added back on next use.
+   */
+  synchronized long evict(final IssueAssignStatistics statistics) {
+    final BlameRanges parsed = this.ranges;
+    if (parsed == null || this.pendingRanges != null || this.incompressible) {
+      return 0;
+    }
+    // mapped ranges, held off the heap, are estimated below the smallest deflated ranges
+    if (parsed.getEstimatedBytes() <= DeflatedRanges.MIN_ESTIMATED_BYTES) {
+      this.incompressible = true;
+      return 0;
+    }
+    final DeflatedRanges deflated = DeflatedRanges.of(parsed);
+    final long freedBytes = parsed.getEstimatedBytes() - deflated.getEstimatedBytes();
+    if (freedBytes <= 0) {
+      // the ranges never change once parsed, so are not deflated again on the next pass
+      this.incompressible = true;
+      return 0;
+    }
+    this.evictedStatistics = statistics;
+    // readers of the estimate see the ranges, or else the deflated ranges
+    this.evicted = deflated;
+    this.ranges = null;
+    statistics.measuresEvicted(freedBytes);
+    return freedBytes;
+  }
+
+  /**
+   * Marks these measures as no longer held, so that a parse still pending does not report the bytes it adds.
+   *
+   * @return the estimated bytes held, to report as released.
+   */
+  synchronized long release() {
+    this.released = true;
+    return this.getEstimatedBytes();
+  }
+
+  boolean isEvicted() {
+    return this.evicted != null;
+  }
+
+  /**
+   * @return <code>true</code> while the raw measures are held, not yet parsed.
+   */
+  public boolean isDormant() {
+    return this.dormantMeasures != null;
+  }
+
+  long getLastUsed() {
+    return this.lastUsed;
+  }
+
+  /**
+   * Records the use of these measures at a tick of the holder's clock.
+   */
+  void touch(final long tick) {
+    // most lookups are of measures used at the same tick, which is then not written again
+    if (this.lastUsed != tick) {
+      this.lastUsed = tick;
+    }
+  }
+
+  /**
+   * @return <code>true</code> if no line of the resource has blame data, as when its measures could not be parsed.
+   * Evicted ranges are counted as held, without inflating them; measures still to be parsed are parsed, as whoever
+   * asks goes on to look up their last commit.
+   */
+  public boolean isEmpty() {
+    final BlameRanges parsed = this.ranges;
+    if (parsed != null) {
+      return parsed.size() == 0;
+    }
+    final DeflatedRanges deflated = this.evicted;
+    if (deflated != null) {
+      return deflated.size() == 0;
+    }
+    return this.getRanges().size() == 0;
+  }
+
+  BlameRanges getRanges() {
+    final BlameRanges parsed = this.ranges;
+    return parsed == null ? this.awaitRanges() : parsed;
+  }
+
+  /**
+   * @return the ranges, without changing how these measures are held: evicted ranges are inflated for the caller
+   * only, and dormant measures, not parsed, give <code>null</code>.  A deferred parse is run or waited for.
+   */
+  BlameRanges peekRanges() {
+    final BlameRanges parsed = this.ranges;
+    if (parsed != null) {
+      return parsed;
+    }
+    final DeflatedRanges deflated = this.evicted;
+    if (deflated != null) {
+      return deflated.inflate();
+    }
+    if (this.dormantMeasures != null) {
+      // the ranges are set before the dormant measures are dropped, by a parse that may just have completed
+      return this.ranges;
+    }
+    return this.getRanges();
   }
 
+  /**
+   * Builds a map view of the authors by line; prefer {@link #getAuthor(int)} on hot paths.
+   */
   public Map<Integer, String> getAuthorsByLine() {
-    if (this.authorsByLine == null) {
-      this.authorsByLine = this.parseIntString(CoreMetrics.SCM_AUTHORS_BY_LINE, this.authorsByLineMeasure);
+    final BlameRanges ranges = this.getRanges();
+    final Map<Integer, String> authorsByLine = new HashMap<Integer, String>();
+    for (int index = 0; index < ranges.size(); index++) {
+      final int authorId = ranges.getAuthorId(index);
+      if (authorId != ScmDictionary.NO_ID) {
+        for (int line = ranges.getStart(index); line <= ranges.getEnd(index); line++) {
+          authorsByLine.put(line, this.authors.valueOf(authorId));
+        }
+      }
     }
-    return this.authorsByLine;
+    return authorsByLine;
   }
 
+  /**
+   * Builds a map view of the last commit dates by line; prefer {@link #getLastCommit(int)} on hot paths.
+   */
   public Map<Integer, Date> getLastCommitsByLine() {
-    if (this.lastCommitsByLine == null) {
-      this.lastCommitsByLine = this.parseIntDateTime(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, this.lastCommitsByLineMeasure);
+    final BlameRanges ranges = this.getRanges();
+    final Map<Integer, Date> lastCommitsByLine = new HashMap<Integer, Date>();
+    for (int index = 0; index < ranges.size(); index++) {
+      final long time = ranges.getTime(index);
+      if (time != NO_DATE) {
+        for (int line = ranges.getStart(index); line <= ranges.getEnd(index); line++) {
+          lastCommitsByLine.put(line, new Date(time));
+        }
+      }
     }
-    return this.lastCommitsByLine;
+    return lastCommitsByLine;
   }
 
+  /**
+   * Builds a map view of the revisions by line; prefer {@link #getRevision(int)} on hot paths.
+   */
   public Map<Integer, String> getRevisionsByLine() {
-    if (this.revisionsByLine == null) {
-      this.revisionsByLine = this.parseIntString(CoreMetrics.SCM_REVISIONS_BY_LINE, this.revisionsByLineMeasure);
+    final BlameRanges ranges = this.getRanges();
+    final Map<Integer, String> revisionsByLine = new HashMap<Integer, String>();
+    for (int index = 0; index < ranges.size(); index++) {
+      final int revisionId = ranges.getRevisionId(index);
+      if (revisionId != ScmDictionary.NO_ID) {
+        for (int line = ranges.getStart(index); line <= ranges.getEnd(index); line++) {
+          revisionsByLine.put(line, this.revisions.valueOf(revisionId));
+        }
+      }
     }
     return revisionsByLine;
   }
 
+  public LastCommit getLastCommit() {
+    LastCommit summary = this.lastCommit;
+    if (summary == null) {
+      summary = new LastCommit(this);
+      this.lastCommit = summary;
+    }
+    return summary;
+  }
+
   public String getKey() {
     return resourceKey;
   }
 
-  private Map<Integer, String> parseIntString(final Metric metric, final String measure) {
-    this.logMeasureData(metric, measure);
-    return KeyValueFormat.parseIntString(measure);
+  private BlameRanges awaitRanges() {
+    final FutureTask<BlameRanges> pending = this.pendingRanges;
+    if (pending == null) {
+      // the ranges are evicted, or the parse completed between the caller's read of the ranges and ours
+      return this.restore();
+    }
+    pending.run();
+    try {
+      final BlameRanges parsed = pending.get();
+      this.pendingRanges = null;
+      return parsed;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for the SCM measures of resource [" + this.resourceKey + "]", e);
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("Error parsing SCM measures for resource [" + this.resourceKey + "]", e.getCause());
+    }
+  }
+
+  private synchronized BlameRanges restore() {
+    final BlameRanges held = this.ranges;
+    if (held != null) {
+      return held;
+    }
+    final BlameRanges inflated = this.evicted.inflate();
+    this.ranges = inflated;
+    this.evictedStatistics.measuresRestored(inflated.getEstimatedBytes() - this.evicted.getEstimatedBytes());
+    this.evicted = null;
+    this.evictedStatistics = null;
+    return inflated;
+  }
+
+  /**
+   * @return a rough estimate of the heap held by raw measures: per measure a string of two bytes a character.
+   */
+  private static long estimateRawBytes(final String... measureData) {
+    long bytes = 0;
+    for (final String measure : measureData) {
+      bytes += measure == null ? 0 : 40 + 2L * measure.length();
+    }
+    return bytes;
+  }
+
+  private static BlameRanges parseRanges(final String authorsByLineMeasure, final String lastCommitsByLineMeasure,
+                                         final String revisionsByLineMeasure, final ScmDictionary authors,
+                                         final ScmDictionary revisions) {
+    final ScmMeasuresParser parser = new ScmMeasuresParser();
+    final int[] authorIds = parseIntString(parser, CoreMetrics.SCM_AUTHORS_BY_LINE, authorsByLineMeasure, authors);
+    final long[] lastCommits = parseIntDateTime(parser, CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, lastCommitsByLineMeasure);
+    final int[] revisionIds = parseIntString(parser, CoreMetrics.SCM_REVISIONS_BY_LINE, revisionsByLineMeasure,
+        revisions);
+    return new BlameRanges(authorIds, revisionIds, lastCommits);
+  }
+
+  private static int[] idsOf(final String[] valuesByLine, final ScmDictionary dictionary) {
+    final int[] ids = new int[valuesByLine.length];
+    for (int line = 0; line < valuesByLine.length; line++) {
+      ids[line] = valuesByLine[line] == null ? ScmDictionary.NO_ID : dictionary.idOf(valuesByLine[line]);
+    }
+    return ids;
   }
 
-  private Map<Integer, Date> parseIntDateTime(final Metric metric, final String measure) {
-    this.logMeasureData(metric, measure);
-    return KeyValueFormat.parseIntDateTime(measure);
+  private static int[] parseIntString(final ScmMeasuresParser parser, final Metric metric, final String measure,
+                                      final ScmDictionary dictionary) {
+    logMeasureData(metric, measure);
+    return parser.parseIds(measure == null ? "" : measure, dictionary);
   }
 
-  private void logMeasureData(final Metric metric, final String measure) {
-    LOG.debug(metric.getName() + ": [" + measure + "]");
+  private static long[] parseIntDateTime(final ScmMeasuresParser parser, final Metric metric, final String measure) {
+    logMeasureData(metric, measure);
+    return parser.parseDateTimes(measure == null ? "" : measure);
+  }
+
+  private static void logMeasureData(final Metric metric, final String measure) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(metric.getName() + ": [" + measure + "]");
+    }
   }
 }
@@ -0,0 +1,276 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.sonar.api.utils.DateUtils;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass parser for <code>line=value;line=value;...</code> SCM measure data, writing straight into
+ * line-indexed arrays rather than going through {@link org.sonar.api.utils.KeyValueFormat}.
+ * <p/>
+ * Blame data repeats the same value on long runs of lines, so the last value seen is remembered and
+ * matched in place: a new string is only created, and a timestamp only parsed, when the value changes.
+ * An instance keeps that cache between calls and is not thread-safe.
+ * <p/>
+ * The result arrays are sized by the highest line number, so a line number above {@link #MAX_LINE} is rejected
+ * with a {@link NumberFormatException}, as {@link org.sonar.api.utils.KeyValueFormat} rejects a key out of range.
+ */
+public class ScmMeasuresParser {
+
+  /**
+   * Highest line number accepted, well above that of any source file.
+   */
+  public static final int MAX_LINE = 10000000;
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int DATETIME_LENGTH = "yyyy-MM-ddTHH:mm:ss+hhmm".length();
+
+  private String previousValue;
+  private int previousId;
+
+  private String previousDateTime;
+  private long previousTime;
+
+  private int line;
+  private int valueStart;
+  private int valueEnd;
+  private int position;
+
+  /**
+   * Parses measure data whose values are strings (authors, revisions) into dictionary ids.
+   *
+   * @return the ids indexed by line, {@link ScmDictionary#NO_ID} where a line has no value.
+   */
+  public int[] parseIds(final CharSequence data, final ScmDictionary dictionary) {
+    int[] ids = newIntArray(data);
+    int maxLine = 0;
+
+    this.previousValue = null;
+    this.position = 0;
+    while (this.nextEntry(data)) {
+      if (this.line >= ids.length) {
+        final int oldLength = ids.length;
+        ids = Arrays.copyOf(ids, Math.max(this.line + 1, oldLength * 2));
+        Arrays.fill(ids, oldLength, ids.length, ScmDictionary.NO_ID);
+      }
+      ids[this.line] = this.valueId(data, dictionary);
+      maxLine = Math.max(maxLine, this.line);
+    }
+    return ids.length == maxLine + 1 ? ids : Arrays.copyOf(ids, maxLine + 1);
+  }
+
+  /**
+   * Parses measure data whose values are date-times (<code>yyyy-MM-dd'T'HH:mm:ssZ</code>).
+   *
+   * @return the epoch millis indexed by line, {@link ScmMeasures#NO_DATE} where a line has no value.
+   */
+  public long[] parseDateTimes(final CharSequence data) {
+    long[] times = newLongArray(data);
+    int maxLine = 0;
+
+    this.position = 0;
+    while (this.nextEntry(data)) {
+      if (this.line >= times.length) {
+        final int oldLength = times.length;
+        times = Arrays.copyOf(times, Math.max(this.line + 1, oldLength * 2));
+        Arrays.fill(times, oldLength, times.length, ScmMeasures.NO_DATE);
+      }
+      times[this.line] = this.valueTime(data);
+      maxLine = Math.max(maxLine, this.line);
+    }
+    return times.length == maxLine + 1 ? times : Arrays.copyOf(times, maxLine + 1);
+  }
+
+  /**
+   * Advances to the next <code>line=value</code> entry with a non-empty value.
+   *
+   * @throws NumberFormatException if the line number of the entry is above {@link #MAX_LINE}.
+   */
+  private boolean nextEntry(final CharSequence data) {
+    final int length = data.length();
+    while (this.position < length) {
+      final int keyStart = this.position;
+      int key = 0;
+      boolean validKey = true;
+      char c = 0;
+      while (this.position < length && (c = data.charAt(this.position)) != '=' && c != ';') {
+        if (c >= '0' && c <= '9') {
+          // stops growing once past the bound, so that it cannot overflow
+          if (key <= MAX_LINE) {
+            key = key * 10 + (c - '0');
+          }
+        } else {
+          validKey = false;
+        }
+        this.position++;
+      }
+
+      if (this.position >= length || c == ';') {
+        // key without value
+        this.position++;
+        continue;
+      }
+      if (validKey && key > MAX_LINE) {
+        throw new NumberFormatException("Line number out of range in SCM measure data: "
+            + data.subSequence(keyStart, this.position));
+      }
+
+      this.position++;
+      this.valueStart = this.position;
+      while (this.position < length && data.charAt(this.position) != ';') {
+        this.position++;
+      }
+      this.valueEnd = this.position;
+      this.position++;
+
+      if (validKey && key > 0 && this.valueEnd > this.valueStart) {
+        this.line = key;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int valueId(final CharSequence data, final ScmDictionary dictionary) {
+    if (!regionEquals(data, this.valueStart, this.valueEnd, this.previousValue)) {
+      this.previousValue = data.subSequence(this.valueStart, this.valueEnd).toString();
+      this.previousId = dictionary.idOf(this.previousValue);
+    }
+    return this.previousId;
+  }
+
+  private long valueTime(final CharSequence data) {
+    if (!regionEquals(data, this.valueStart, this.valueEnd, this.previousDateTime)) {
+      this.previousDateTime = data.subSequence(this.valueStart, this.valueEnd).toString();
+      this.previousTime = parseDateTime(this.previousDateTime);
+    }
+    return this.previousTime;
+  }
+
+  /**
+   * Parses the fixed-width <code>yyyy-MM-dd'T'HH:mm:ssZ</code> format arithmetically, falling back to
+   * {@link DateUtils} for anything else.
+   */
+  static long parseDateTime(final String value) {
+    if (value.length() != DATETIME_LENGTH || value.charAt(4) != '-' || value.charAt(7) != '-'
+        || value.charAt(10) != 'T' || value.charAt(13) != ':' || value.charAt(16) != ':') {
+      return DateUtils.parseDateTime(value).getTime();
+    }
+
+    final char sign = value.charAt(19);
+    final int year = digits(value, 0, 4);
+    final int month = digits(value, 5, 7);
+    final int day = digits(value, 8, 10);
+    final int hour = digits(value, 11, 13);
+    final int minute = digits(value, 14, 16);
+    final int second = digits(value, 17, 19);
+    final int offsetHours = digits(value, 20, 22);
+    final int offsetMinutes = digits(value, 22, 24);
+
+    if ((sign != '+' && sign != '-') || year < 0 || month < 0 || day < 0 || hour < 0
+        || minute < 0 || second < 0 || offsetHours < 0 || offsetMinutes < 0) {
+      return DateUtils.parseDateTime(value).getTime();
+    }
+
+    final long offsetSeconds = (offsetHours * 60L + offsetMinutes) * 60L * (sign == '-' ? -1 : 1);
+    final long epochSeconds = ((daysFromCivil(year, month, day) * 24L + hour) * 60L + minute) * 60L + second;
+    return (epochSeconds - offsetSeconds) * 1000L;
+  }
+
+  private static int digits(final String value, final int start, final int end) {
+    int result = 0;
+    for (int i = start; i < end; i++) {
+      final char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  /**
+   * Days since 1970-01-01 of a proleptic Gregorian date.
+   */
+  private static long daysFromCivil(final int year, final int month, final int day) {
+    final int y = month <= 2 ? year - 1 : year;
+    final int era = (y >= 0 ? y : y - 399) / 400;
+    final int yearOfEra = y - era * 400;
+    final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468L;
+  }
+
+  private static boolean regionEquals(final CharSequence data, final int start, final int end, final String value) {
+    if (value == null || value.length() != end - start) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (data.charAt(i) != value.charAt(i - start)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int[] newIntArray(final CharSequence data) {
+    final int[] ids = new int[estimateLines(data) + 1];
+    Arrays.fill(ids, ScmDictionary.NO_ID);
+    return ids;
+  }
+
+  private static long[] newLongArray(final CharSequence data) {
+    final long[] times = new long[estimateLines(data) + 1];
+    Arrays.fill(times, ScmMeasures.NO_DATE);
+    return times;
+  }
+
+  /**
+   * Measure data is normally written in line order, so the key of the last entry is a good estimate of
+   * the number of lines; the arrays grow if it turns out to be wrong.
+   */
+  private static int estimateLines(final CharSequence data) {
+    int end = data.length();
+    while (end > 0 && data.charAt(end - 1) == ';') {
+      end--;
+    }
+    int start = end;
+    while (start > 0 && data.charAt(start - 1) != ';') {
+      start--;
+    }
+    int key = 0;
+    for (int i = start; i < end; i++) {
+      final char c = data.charAt(i);
+      if (c == '=') {
+        break;
+      }
+      if (c < '0' || c > '9') {
+        return INITIAL_CAPACITY;
+      }
+      key = key * 10 + (c - '0');
+      if (key > MAX_LINE) {
+        return INITIAL_CAPACITY;
+      }
+    }
+    return Math.max(key, 1);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.statistics;
+
+/**
+ * Live view of the plugin during an analysis, registered with the platform MBean server as
+ * {@value IssueAssignMonitor#OBJECT_NAME}.  Latency histograms hold {@value Timer#BUCKETS} power of two buckets
+ * of nanoseconds, see {@link Timer}.
+ */
+public interface IssueAssignMXBean {
+
+  long getIssuesSeen();
+
+  long getIssuesAssigned();
+
+  long getIssuesAssignedToOverride();
+
+  long getIssuesAssignedToScmAuthor();
+
+  long getIssuesAssignedToDefault();
+
+  long getIssuesUnassigned();
+
+  long getIssuesUnresolved();
+
+  long getErrors();
+
+  long[] getBlameLatencyHistogram();
+
+  long[] getUsersLatencyHistogram();
+
+  long[] getAssignLatencyHistogram();
+
+  long getBlameLatencyP99Nanos();
+
+  long getUsersLatencyP99Nanos();
+
+  long getAssignLatencyP99Nanos();
+
+  long getUserFinderCalls();
+
+  long getResourcesHeld();
+
+  long getEstimatedBytesHeld();
+
+  long getPeakEstimatedBytesHeld();
+
+  long getMeasuresEvictions();
+
+  long getMeasuresRestores();
+
+  long getDormantMeasures();
+
+  long getDormantMeasuresParsed();
+}
@@ -0,0 +1,171 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.statistics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.issueassign.Assignment;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exposes the plugin statistics over JMX for the duration of the analysis, so that long analyses can be watched
+ * live.  Reads go straight to the atomic counters of {@link IssueAssignStatistics}, so watching adds no
+ * contention to issue assignment.
+ */
+public class IssueAssignMonitor implements IssueAssignMXBean, BatchExtension {
+
+  public static final String OBJECT_NAME = "org.sonar.plugins.issueassign:type=IssueAssign";
+
+  private static final Logger LOG = LoggerFactory.getLogger(IssueAssignMonitor.class);
+  private final IssueAssignStatistics statistics;
+  private final Settings settings;
+  private ObjectName registeredName;
+
+  public IssueAssignMonitor(final IssueAssignStatistics statistics, final Settings settings) {
+    this.statistics = statistics;
+    this.settings = settings;
+  }
+
+  public void start() {
+    if (!this.settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)) {
+      return;
+    }
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        // left over by a previous module of the same batch
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+      this.registeredName = name;
+      LOG.debug("Registered MBean [" + OBJECT_NAME + "]");
+    } catch (final JMException e) {
+      LOG.warn("Unable to register MBean [" + OBJECT_NAME + "]", e);
+    }
+  }
+
+  public void stop() {
+    if (this.registeredName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.registeredName);
+    } catch (final JMException e) {
+      LOG.debug("Unable to unregister MBean [" + OBJECT_NAME + "]", e);
+    }
+    this.registeredName = null;
+  }
+
+  public long getIssuesSeen() {
+    return this.statistics.getIssuesSeen();
+  }
+
+  public long getIssuesAssigned() {
+    return this.statistics.getIssuesAssigned();
+  }
+
+  public long getIssuesAssignedToOverride() {
+    return this.statistics.getAssigned(Assignment.Outcome.OVERRIDE);
+  }
+
+  public long getIssuesAssignedToScmAuthor() {
+    return this.statistics.getAssigned(Assignment.Outcome.SCM_AUTHOR);
+  }
+
+  public long getIssuesAssignedToDefault() {
+    return this.statistics.getAssigned(Assignment.Outcome.DEFAULT);
+  }
+
+  public long getIssuesUnassigned() {
+    return this.statistics.getAssigned(Assignment.Outcome.UNASSIGNED);
+  }
+
+  public long getIssuesUnresolved() {
+    return this.statistics.getUnresolved();
+  }
+
+  public long getErrors() {
+    return this.statistics.getErrors();
+  }
+
+  public long[] getBlameLatencyHistogram() {
+    return this.statistics.getBlame().getHistogram();
+  }
+
+  public long[] getUsersLatencyHistogram() {
+    return this.statistics.getUsers().getHistogram();
+  }
+
+  public long[] getAssignLatencyHistogram() {
+    return this.statistics.getAssign().getHistogram();
+  }
+
+  public long getBlameLatencyP99Nanos() {
+    return this.statistics.getBlame().getPercentileNanos(99);
+  }
+
+  public long getUsersLatencyP99Nanos() {
+    return this.statistics.getUsers().getPercentileNanos(99);
+  }
+
+  public long getAssignLatencyP99Nanos() {
+    return this.statistics.getAssign().getPercentileNanos(99);
+  }
+
+  public long getUserFinderCalls() {
+    return this.statistics.getUserFinder().getCount();
+  }
+
+  public long getResourcesHeld() {
+    return this.statistics.getResourcesHeld();
+  }
+
+  public long getEstimatedBytesHeld() {
+    return this.statistics.getEstimatedBytesHeld();
+  }
+
+  public long getPeakEstimatedBytesHeld() {
+    return this.statistics.getPeakEstimatedBytesHeld();
+  }
+
+  public long getMeasuresEvictions() {
+    return this.statistics.getMeasuresEvictions();
+  }
+
+  public long getMeasuresRestores() {
+    return this.statistics.getMeasuresRestores();
+  }
+
+  public long getDormantMeasures() {
+    return this.statistics.getDormantMeasures();
+  }
+
+  public long getDormantMeasuresParsed() {
+    return this.statistics.getDormantMeasuresParsed();
+  }
+}
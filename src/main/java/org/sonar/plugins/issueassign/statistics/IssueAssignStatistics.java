@@ -0,0 +1,366 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.statistics;
+
+import org.sonar.api.BatchExtension;
+import org.sonar.plugins.issueassign.Assignment;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and timers collected by the plugin over one analysis, reported at the end of it.  Everything is
+ * aggregated with atomic updates, so that recording never takes a lock.
+ */
+public class IssueAssignStatistics implements BatchExtension {
+
+  private static final Assignment.Outcome[] OUTCOMES = Assignment.Outcome.values();
+
+  private final Timer decorate = new Timer();
+  private final Timer parse = new Timer();
+  private final Timer blame = new Timer();
+  private final Timer userFinder = new Timer();
+  private final Timer users = new Timer();
+  private final Timer assign = new Timer();
+  private final Timer userDirectoryWait = new Timer();
+  private final Timer gitBlame = new Timer();
+
+  private final AtomicLong unknownUserHits = new AtomicLong();
+  private final AtomicLong unknownUserMisses = new AtomicLong();
+  private final AtomicLong authorIndexHits = new AtomicLong();
+  private final AtomicLong authorIndexMisses = new AtomicLong();
+  private final AtomicLong blameCacheHits = new AtomicLong();
+  private final AtomicLong blameCacheMisses = new AtomicLong();
+
+  private final AtomicLong issuesSeen = new AtomicLong();
+  private final AtomicLongArray outcomes = new AtomicLongArray(OUTCOMES.length);
+  private final AtomicLong unresolved = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  private final AtomicLong resourcesHeld = new AtomicLong();
+  private final AtomicLong estimatedBytesHeld = new AtomicLong();
+  private final AtomicLong peakEstimatedBytesHeld = new AtomicLong();
+  private final AtomicLong measuresEvictions = new AtomicLong();
+  private final AtomicLong measuresRestores = new AtomicLong();
+  private final AtomicLong dormantMeasures = new AtomicLong();
+  private final AtomicLong dormantMeasuresParsed = new AtomicLong();
+
+  /**
+   * Time spent collecting the SCM measures of each resource, parsing included.
+   */
+  public Timer getDecorate() {
+    return this.decorate;
+  }
+
+  /**
+   * Time spent parsing the SCM measures of each resource.
+   */
+  public Timer getParse() {
+    return this.parse;
+  }
+
+  /**
+   * Time spent finding the SCM author of each issue.
+   */
+  public Timer getBlame() {
+    return this.blame;
+  }
+
+  /**
+   * Calls to the Sonar user finder, and their latency.
+   */
+  public Timer getUserFinder() {
+    return this.userFinder;
+  }
+
+  /**
+   * Time spent finding the Sonar user of each SCM author.
+   */
+  public Timer getUsers() {
+    return this.users;
+  }
+
+  /**
+   * Time spent choosing the assignee of each issue, the Sonar user lookup included.
+   */
+  public Timer getAssign() {
+    return this.assign;
+  }
+
+  /**
+   * Time spent by issue assignment waiting for the Sonar users to be loaded by email address.
+   */
+  public Timer getUserDirectoryWait() {
+    return this.userDirectoryWait;
+  }
+
+  /**
+   * Time spent blaming files in the local Git repository, once per file.
+   */
+  public Timer getGitBlame() {
+    return this.gitBlame;
+  }
+
+  /**
+   * Counts a new issue handed to the plugin.
+   */
+  public void issueSeen() {
+    this.issuesSeen.incrementAndGet();
+  }
+
+  /**
+   * Counts the SCM measures of a resource kept for its issues.
+   */
+  public void measuresHeld(final long estimatedBytes) {
+    this.resourcesHeld.incrementAndGet();
+    this.recordPeak(this.estimatedBytesHeld.addAndGet(estimatedBytes));
+  }
+
+  /**
+   * Counts the SCM measures of a resource dropped once they are no longer needed.
+   */
+  public void measuresReleased(final long estimatedBytes) {
+    this.resourcesHeld.decrementAndGet();
+    this.estimatedBytesHeld.addAndGet(-estimatedBytes);
+  }
+
+  /**
+   * Adds the bytes added, or freed, by the deferred parse of the SCM measures of a resource already held.
+   */
+  public void measuresParsed(final long addedBytes) {
+    this.recordPeak(this.estimatedBytesHeld.addAndGet(addedBytes));
+  }
+
+  /**
+   * Counts the SCM measures of a resource held raw, to be parsed on first use.
+   */
+  public void dormantMeasuresHeld(final long estimatedBytes) {
+    this.dormantMeasures.incrementAndGet();
+    this.measuresHeld(estimatedBytes);
+  }
+
+  /**
+   * Counts the dormant SCM measures of a resource parsed on first use.
+   */
+  public void dormantMeasuresParsed(final long addedBytes) {
+    this.dormantMeasuresParsed.incrementAndGet();
+    this.recordPeak(this.estimatedBytesHeld.addAndGet(addedBytes));
+  }
+
+  /**
+   * Counts the SCM measures of a resource evicted from memory to a compact form, still held.
+   */
+  public void measuresEvicted(final long freedBytes) {
+    this.measuresEvictions.incrementAndGet();
+    this.estimatedBytesHeld.addAndGet(-freedBytes);
+  }
+
+  /**
+   * Counts the evicted SCM measures of a resource restored on use.
+   */
+  public void measuresRestored(final long addedBytes) {
+    this.measuresRestores.incrementAndGet();
+    this.recordPeak(this.estimatedBytesHeld.addAndGet(addedBytes));
+  }
+
+  /**
+   * Counts a lookup answered by the cache of SCM authors known not to be Sonar users.
+   */
+  public void unknownUserHit() {
+    this.unknownUserHits.incrementAndGet();
+  }
+
+  /**
+   * Counts a lookup that was not in the cache of unknown users, and so went on to a real lookup.
+   */
+  public void unknownUserMiss() {
+    this.unknownUserMisses.incrementAndGet();
+  }
+
+  /**
+   * Counts a lookup answered by the SCM authors resolved in bulk against Sonar logins.
+   */
+  public void authorIndexHit() {
+    this.authorIndexHits.incrementAndGet();
+  }
+
+  /**
+   * Counts a lookup of a user name that was not resolved in bulk, and so was looked up on its own.
+   */
+  public void authorIndexMiss() {
+    this.authorIndexMisses.incrementAndGet();
+  }
+
+  /**
+   * Counts a resource whose blame was read back from the blame cache of a previous analysis.
+   */
+  public void blameCacheHit() {
+    this.blameCacheHits.incrementAndGet();
+  }
+
+  /**
+   * Counts a resource that had to be parsed or blamed, as its blame was not in the blame cache.
+   */
+  public void blameCacheMiss() {
+    this.blameCacheMisses.incrementAndGet();
+  }
+
+  public void assigned(final Assignment.Outcome outcome) {
+    this.outcomes.incrementAndGet(outcome.ordinal());
+  }
+
+  /**
+   * Counts an issue for which no SCM author could be looked for.
+   */
+  public void unresolved() {
+    this.unresolved.incrementAndGet();
+  }
+
+  /**
+   * Counts an issue whose assignment failed with an error.
+   */
+  public void error() {
+    this.errors.incrementAndGet();
+  }
+
+  public long getUnknownUserHits() {
+    return this.unknownUserHits.get();
+  }
+
+  public long getUnknownUserMisses() {
+    return this.unknownUserMisses.get();
+  }
+
+  public long getAuthorIndexHits() {
+    return this.authorIndexHits.get();
+  }
+
+  public long getAuthorIndexMisses() {
+    return this.authorIndexMisses.get();
+  }
+
+  public long getBlameCacheHits() {
+    return this.blameCacheHits.get();
+  }
+
+  public long getBlameCacheMisses() {
+    return this.blameCacheMisses.get();
+  }
+
+  public long getIssuesSeen() {
+    return this.issuesSeen.get();
+  }
+
+  public long getAssigned(final Assignment.Outcome outcome) {
+    return this.outcomes.get(outcome.ordinal());
+  }
+
+  /**
+   * @return the number of issues given an assignee.
+   */
+  public long getIssuesAssigned() {
+    long assigned = 0;
+    for (final Assignment.Outcome outcome : OUTCOMES) {
+      if (outcome != Assignment.Outcome.UNASSIGNED) {
+        assigned += this.getAssigned(outcome);
+      }
+    }
+    return assigned;
+  }
+
+  public long getResourcesHeld() {
+    return this.resourcesHeld.get();
+  }
+
+  public long getEstimatedBytesHeld() {
+    return this.estimatedBytesHeld.get();
+  }
+
+  /**
+   * @return the high-water mark of {@link #getEstimatedBytesHeld()}.
+   */
+  public long getPeakEstimatedBytesHeld() {
+    return this.peakEstimatedBytesHeld.get();
+  }
+
+  public long getMeasuresEvictions() {
+    return this.measuresEvictions.get();
+  }
+
+  public long getMeasuresRestores() {
+    return this.measuresRestores.get();
+  }
+
+  public long getDormantMeasures() {
+    return this.dormantMeasures.get();
+  }
+
+  public long getDormantMeasuresParsed() {
+    return this.dormantMeasuresParsed.get();
+  }
+
+  public long getUnresolved() {
+    return this.unresolved.get();
+  }
+
+  public long getErrors() {
+    return this.errors.get();
+  }
+
+  /**
+   * @return the share of lookups answered by a cache, between 0 and 1, or 0 if there were none.
+   */
+  public static double hitRate(final long hits, final long misses) {
+    final long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  private void recordPeak(final long estimatedBytes) {
+    long peak = this.peakEstimatedBytesHeld.get();
+    while (estimatedBytes > peak && !this.peakEstimatedBytesHeld.compareAndSet(peak, estimatedBytes)) {
+      peak = this.peakEstimatedBytesHeld.get();
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder summary = new StringBuilder();
+    summary.append("issues");
+    for (final Assignment.Outcome outcome : OUTCOMES) {
+      summary.append(' ').append(outcome.name().toLowerCase(Locale.ENGLISH)).append('=').append(this.getAssigned(outcome));
+    }
+    summary.append(" unresolved=").append(this.getUnresolved())
+        .append(" errors=").append(this.getErrors())
+        .append(", decorate ").append(this.decorate)
+        .append(" (parse ").append(TimeUnit.NANOSECONDS.toMillis(this.parse.getTotalNanos())).append(" ms)")
+        .append(", blame ").append(this.blame)
+        .append(", user finder calls ").append(this.userFinder)
+        .append(", unknown user cache hits=").append(this.getUnknownUserHits())
+        .append(", misses=").append(this.getUnknownUserMisses())
+        .append(", measures peak ").append(this.getPeakEstimatedBytesHeld()).append(" bytes, evictions=")
+        .append(this.getMeasuresEvictions()).append(", restores=").append(this.getMeasuresRestores())
+        .append(", dormant=").append(this.getDormantMeasures()).append(", parsed on use=").append(this.getDormantMeasuresParsed())
+        .append(", blame cache hits=").append(this.getBlameCacheHits())
+        .append(", misses=").append(this.getBlameCacheMisses());
+    return summary.toString();
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.statistics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.CheckProject;
+import org.sonar.api.batch.PostJob;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.issueassign.Assignment;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Once the analysis is over, logs a one line summary of the plugin statistics and writes them in full as a
+ * JSON report into the working directory of the analysis.
+ */
+public class StatisticsReporter implements PostJob, CheckProject {
+
+  public static final String REPORT_FILE = "issue-assign-report.json";
+
+  private static final Logger LOG = LoggerFactory.getLogger(StatisticsReporter.class);
+  private final IssueAssignStatistics statistics;
+  private final Settings settings;
+  private final ModuleFileSystem moduleFileSystem;
+
+  public StatisticsReporter(final IssueAssignStatistics statistics, final Settings settings,
+                            final ModuleFileSystem moduleFileSystem) {
+    this.statistics = statistics;
+    this.settings = settings;
+    this.moduleFileSystem = moduleFileSystem;
+  }
+
+  public boolean shouldExecuteOnProject(final Project project) {
+    return this.settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED);
+  }
+
+  public void executeOn(final Project project, final SensorContext context) {
+    LOG.info("Issue Assign Plugin statistics: " + this.statistics);
+
+    final File report = new File(this.moduleFileSystem.workingDir(), REPORT_FILE);
+    try {
+      this.writeReport(report);
+      LOG.debug("Issue Assign Plugin report written to [" + report + "]");
+    } catch (final IOException e) {
+      LOG.warn("Unable to write the Issue Assign Plugin report to [" + report + "]", e);
+    }
+  }
+
+  private void writeReport(final File report) throws IOException {
+    final File directory = report.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create directory [" + directory + "]");
+    }
+
+    final Writer writer = new OutputStreamWriter(new FileOutputStream(report), "UTF-8");
+    try {
+      writer.write(toJson(this.statistics));
+    } finally {
+      writer.close();
+    }
+  }
+
+  static String toJson(final IssueAssignStatistics statistics) {
+    final StringBuilder json = new StringBuilder();
+    json.append("{\n  \"issuesSeen\": ").append(statistics.getIssuesSeen()).append(",\n");
+    json.append("  \"outcomes\": {");
+    for (final Assignment.Outcome outcome : Assignment.Outcome.values()) {
+      json.append('"').append(outcome.name().toLowerCase(Locale.ENGLISH)).append("\": ")
+          .append(statistics.getAssigned(outcome)).append(", ");
+    }
+    json.append("\"unresolved\": ").append(statistics.getUnresolved())
+        .append(", \"errors\": ").append(statistics.getErrors()).append("},\n");
+
+    json.append("  \"measures\": {\"peakEstimatedBytesHeld\": ").append(statistics.getPeakEstimatedBytesHeld())
+        .append(", \"evictions\": ").append(statistics.getMeasuresEvictions())
+        .append(", \"restores\": ").append(statistics.getMeasuresRestores())
+        .append(", \"dormant\": ").append(statistics.getDormantMeasures())
+        .append(", \"dormantParsed\": ").append(statistics.getDormantMeasuresParsed()).append("},\n");
+    json.append("  \"timers\": {\n");
+    appendTimer(json, "decorate", statistics.getDecorate()).append(",\n");
+    appendTimer(json, "parse", statistics.getParse()).append(",\n");
+    appendTimer(json, "blame", statistics.getBlame()).append(",\n");
+    appendTimer(json, "users", statistics.getUsers()).append(",\n");
+    appendTimer(json, "assign", statistics.getAssign()).append(",\n");
+    appendTimer(json, "userDirectoryWait", statistics.getUserDirectoryWait()).append(",\n");
+    appendTimer(json, "gitBlame", statistics.getGitBlame()).append(",\n");
+    appendTimer(json, "userFinder", statistics.getUserFinder()).append("\n  },\n");
+
+    json.append("  \"caches\": {\n");
+    appendCache(json, "unknownUsers", statistics.getUnknownUserHits(), statistics.getUnknownUserMisses()).append(",\n");
+    appendCache(json, "authorIndex", statistics.getAuthorIndexHits(), statistics.getAuthorIndexMisses()).append(",\n");
+    appendCache(json, "blameCache", statistics.getBlameCacheHits(), statistics.getBlameCacheMisses()).append("\n  }\n");
+    return json.append("}\n").toString();
+  }
+
+  private static StringBuilder appendTimer(final StringBuilder json, final String name, final Timer timer) {
+    return json.append("    \"").append(name).append("\": {\"count\": ").append(timer.getCount())
+        .append(", \"totalNanos\": ").append(timer.getTotalNanos())
+        .append(", \"meanNanos\": ").append(timer.getMeanNanos())
+        .append(", \"p50Nanos\": ").append(timer.getPercentileNanos(50))
+        .append(", \"p99Nanos\": ").append(timer.getPercentileNanos(99))
+        .append(", \"maxNanos\": ").append(timer.getMaxNanos()).append('}');
+  }
+
+  private static StringBuilder appendCache(final StringBuilder json, final String name, final long hits,
+                                           final long misses) {
+    return json.append("    \"").append(name).append("\": {\"hits\": ").append(hits)
+        .append(", \"misses\": ").append(misses)
+        .append(", \"hitRate\": ").append(String.format(Locale.ENGLISH, "%.4f", IssueAssignStatistics.hitRate(hits, misses)))
+        .append('}');
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.statistics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts timed calls and aggregates their duration, without locking.  Durations are also kept in a histogram of
+ * power of two buckets: bucket <code>i</code> counts the durations from <code>2^(i-1)</code> up to
+ * <code>2^i</code> nanoseconds, bucket 0 those of zero.
+ */
+public class Timer {
+
+  public static final int BUCKETS = 64;
+
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+  /**
+   * @return the start time, to be passed to {@link #stop(long)}.
+   */
+  public long start() {
+    return System.nanoTime();
+  }
+
+  public void stop(final long start) {
+    this.record(System.nanoTime() - start);
+  }
+
+  public void record(final long nanos) {
+    this.count.incrementAndGet();
+    this.totalNanos.addAndGet(nanos);
+    this.histogram.incrementAndGet(bucketOf(nanos));
+    long max = this.maxNanos.get();
+    while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+      max = this.maxNanos.get();
+    }
+  }
+
+  public long getCount() {
+    return this.count.get();
+  }
+
+  public long getTotalNanos() {
+    return this.totalNanos.get();
+  }
+
+  public long getMaxNanos() {
+    return this.maxNanos.get();
+  }
+
+  public long getMeanNanos() {
+    final long calls = this.getCount();
+    return calls == 0 ? 0 : this.getTotalNanos() / calls;
+  }
+
+  /**
+   * @return the number of durations in each bucket.
+   */
+  public long[] getHistogram() {
+    final long[] counts = new long[BUCKETS];
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts[bucket] = this.histogram.get(bucket);
+    }
+    return counts;
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the upper bound of the bucket holding the given percentile of the durations, or 0 if there were none.
+   */
+  public long getPercentileNanos(final double percentile) {
+    final long[] counts = this.getHistogram();
+    long calls = 0;
+    for (final long count : counts) {
+      calls += count;
+    }
+    final long rank = (long) Math.ceil(calls * percentile / 100);
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank && seen > 0) {
+        return upperBound(bucket);
+      }
+    }
+    return 0;
+  }
+
+  static int bucketOf(final long nanos) {
+    return nanos <= 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(nanos);
+  }
+
+  static long upperBound(final int bucket) {
+    return bucket == 0 ? 0 : bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+  }
+
+  @Override
+  public String toString() {
+    return this.getCount() + " in " + TimeUnit.NANOSECONDS.toMillis(this.getTotalNanos()) + " ms";
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AliasTableTest {
+
+  @Test
+  public void readsAliases() throws Exception {
+    final AliasTable classUnderTest = read("# old addresses\n"
+        + "john.smith@old-corp.com = jsmith\n"
+        + "\n"
+        + "  JSMITH-P4=jsmith  \n"
+        + "jane = jdoe\n");
+
+    assertThat(classUnderTest.size()).isEqualTo(3);
+    assertThat(classUnderTest.getLogin("john.smith@old-corp.com")).isEqualTo("jsmith");
+    assertThat(classUnderTest.getLogin("jsmith-p4")).isEqualTo("jsmith");
+    assertThat(classUnderTest.getLogin("Jane")).isEqualTo("jdoe");
+    assertThat(classUnderTest.getLogin("jdoe")).isNull();
+    assertThat(classUnderTest.getLogin(null)).isNull();
+  }
+
+  @Test
+  public void skipsMalformedLines() throws Exception {
+    final AliasTable classUnderTest = read("no separator\n= nobody\nnobody =\njane = jdoe\n");
+
+    assertThat(classUnderTest.size()).isEqualTo(1);
+    assertThat(classUnderTest.getLogin("jane")).isEqualTo("jdoe");
+  }
+
+  @Test
+  public void lastDefinitionWins() throws Exception {
+    final AliasTable classUnderTest = read("jane = jdoe\nJANE = jane.doe\n");
+
+    assertThat(classUnderTest.size()).isEqualTo(1);
+    assertThat(classUnderTest.getLogin("jane")).isEqualTo("jane.doe");
+  }
+
+  @Test
+  public void growsToManyAliases() throws Exception {
+    final StringBuilder aliases = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      aliases.append("author").append(i).append(" = login").append(i).append('\n');
+    }
+
+    final AliasTable classUnderTest = read(aliases.toString());
+    assertThat(classUnderTest.size()).isEqualTo(5000);
+    for (int i = 0; i < 5000; i++) {
+      assertThat(classUnderTest.getLogin("author" + i)).isEqualTo("login" + i);
+    }
+    assertThat(classUnderTest.getLogin("author5000")).isNull();
+  }
+
+  @Test
+  public void emptyTable() {
+    assertThat(AliasTable.EMPTY.size()).isEqualTo(0);
+    assertThat(AliasTable.EMPTY.getLogin("jane")).isNull();
+  }
+
+  private static AliasTable read(final String aliases) throws Exception {
+    return AliasTable.read(new StringReader(aliases), "test");
+  }
+}
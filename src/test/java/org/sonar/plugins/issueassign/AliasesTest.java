@@ -0,0 +1,100 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AliasesTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock private Settings settings;
+  @Mock private ModuleFileSystem moduleFileSystem;
+
+  @Before
+  public void before() {
+    when(moduleFileSystem.baseDir()).thenReturn(temporaryFolder.getRoot());
+  }
+
+  @Test
+  public void notConfigured() {
+    final Aliases classUnderTest = new Aliases(settings, moduleFileSystem);
+    classUnderTest.start();
+    assertThat(classUnderTest.getLogin("jane")).isNull();
+  }
+
+  @Test
+  public void relativeToBaseDir() throws Exception {
+    this.writeAliases("aliases.txt", "jane = jdoe\n");
+    when(settings.getString(IssueAssignPlugin.PROPERTY_ALIASES_FILE)).thenReturn("aliases.txt");
+
+    final Aliases classUnderTest = new Aliases(settings, moduleFileSystem);
+    classUnderTest.start();
+    assertThat(classUnderTest.getLogin("jane")).isEqualTo("jdoe");
+  }
+
+  @Test
+  public void absolutePath() throws Exception {
+    final File aliases = this.writeAliases("aliases.txt", "J\u00f6rg = jmueller\n");
+    when(settings.getString(IssueAssignPlugin.PROPERTY_ALIASES_FILE)).thenReturn(aliases.getAbsolutePath());
+    when(moduleFileSystem.baseDir()).thenReturn(new File("elsewhere"));
+
+    final Aliases classUnderTest = new Aliases(settings, moduleFileSystem);
+    classUnderTest.start();
+    assertThat(classUnderTest.getLogin("j\u00f6rg")).isEqualTo("jmueller");
+  }
+
+  @Test
+  public void missingFileLeavesNoAlias() {
+    when(settings.getString(IssueAssignPlugin.PROPERTY_ALIASES_FILE)).thenReturn("missing.txt");
+
+    final Aliases classUnderTest = new Aliases(settings, moduleFileSystem);
+    classUnderTest.start();
+    assertThat(classUnderTest.getLogin("jane")).isNull();
+  }
+
+  private File writeAliases(final String name, final String content) throws Exception {
+    final File file = new File(temporaryFolder.getRoot(), name);
+    final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+}
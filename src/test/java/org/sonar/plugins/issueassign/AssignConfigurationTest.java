@@ -0,0 +1,71 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.api.config.Settings;
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AssignConfigurationTest {
+
+  @Mock private Settings settings;
+  @Mock private UserFinder userFinder;
+  @Mock private User overrideUser;
+  @Mock private User defaultUser;
+
+  private static final String DEFAULT_ASSIGNEE = "defaultAssignee";
+  private static final String OVERRIDE_ASSIGNEE = "overrideAssignee";
+
+  @Test
+  public void testConfiguredAssignees() throws Exception {
+    when(settings.getString(IssueAssignPlugin.PROPERTY_OVERRIDE_ASSIGNEE)).thenReturn(OVERRIDE_ASSIGNEE);
+    when(settings.getString(IssueAssignPlugin.PROPERTY_DEFAULT_ASSIGNEE)).thenReturn(DEFAULT_ASSIGNEE);
+    when(userFinder.findByLogin(OVERRIDE_ASSIGNEE)).thenReturn(overrideUser);
+    when(userFinder.findByLogin(DEFAULT_ASSIGNEE)).thenReturn(defaultUser);
+
+    final AssignConfiguration classUnderTest = new AssignConfiguration(settings, new Users(userFinder));
+    assertThat(classUnderTest.getOverrideAssignee()).isSameAs(overrideUser);
+    assertThat(classUnderTest.getDefaultAssignee()).isSameAs(defaultUser);
+  }
+
+  @Test
+  public void testNothingConfigured() throws Exception {
+    final AssignConfiguration classUnderTest = new AssignConfiguration(settings, new Users(userFinder));
+    assertThat(classUnderTest.getOverrideAssignee()).isNull();
+    assertThat(classUnderTest.getDefaultAssignee()).isNull();
+  }
+
+  @Test
+  public void testConfiguredAssigneeNotFound() throws Exception {
+    when(settings.getString(IssueAssignPlugin.PROPERTY_DEFAULT_ASSIGNEE)).thenReturn(DEFAULT_ASSIGNEE);
+    when(userFinder.findByLogin(DEFAULT_ASSIGNEE)).thenReturn(null);
+
+    final AssignConfiguration classUnderTest = new AssignConfiguration(settings, new Users(userFinder));
+    assertThat(classUnderTest.getDefaultAssignee()).isNull();
+  }
+}
@@ -26,9 +26,11 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.sonar.api.config.Settings;
 import org.sonar.api.user.User;
 import org.sonar.api.user.UserFinder;
-import org.sonar.plugins.issueassign.exception.SettingNotConfiguredException;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -39,38 +41,66 @@ public class AssignTest {
   @Mock private User overrideUser;
   @Mock private User scmAuthorUser;
   @Mock private User defaultUser;
+  @Mock private User aliasedUser;
+  @Mock private Aliases aliases;
 
   private static final String DEFAULT_ASSIGNEE = "defaultAssignee";
   private static final String OVERRIDE_ASSIGNEE = "overrideAssignee";
   private static final String SCM_AUTHOR = "scmAuthor";
+  private static final String ALIASED_LOGIN = "aliasedLogin";
 
   @Test
-  public void testGetAssigneeWithScmAuthorAndOverride() throws Exception {
+  public void testAssignWithScmAuthorAndOverride() throws Exception {
 
     when(mockSettings.getString(IssueAssignPlugin.PROPERTY_OVERRIDE_ASSIGNEE))
         .thenReturn(OVERRIDE_ASSIGNEE);
     when(mockUserFinder.findByLogin(OVERRIDE_ASSIGNEE)).thenReturn(overrideUser);
 
     final Assign classUnderTest = new Assign(mockSettings, mockUserFinder);
-    final User user = classUnderTest.getAssignee(SCM_AUTHOR);
-    assertThat(user).isSameAs(overrideUser);
+    final Assignment assignment = classUnderTest.assign(SCM_AUTHOR);
+    assertThat(assignment.getOutcome()).isEqualTo(Assignment.Outcome.OVERRIDE);
+    assertThat(assignment.getAssignee()).isSameAs(overrideUser);
   }
 
   @Test
-  public void testGetAssigneeWithScmAuthorAndNoOverride() throws Exception {
-    when(mockSettings.getString(IssueAssignPlugin.PROPERTY_OVERRIDE_ASSIGNEE))
-        .thenThrow(SettingNotConfiguredException.class);
+  public void testAssignWithScmAuthorAndNoOverride() throws Exception {
     when(mockUserFinder.findByLogin(SCM_AUTHOR)).thenReturn(scmAuthorUser);
 
     final Assign classUnderTest = new Assign(mockSettings, mockUserFinder);
-    final User user = classUnderTest.getAssignee(SCM_AUTHOR);
-    assertThat(user).isSameAs(scmAuthorUser);
+    final Assignment assignment = classUnderTest.assign(SCM_AUTHOR);
+    assertThat(assignment.getOutcome()).isEqualTo(Assignment.Outcome.SCM_AUTHOR);
+    assertThat(assignment.getAssignee()).isSameAs(scmAuthorUser);
   }
 
   @Test
-  public void testGetAssigneeWithScmAuthorNotFound() throws Exception {
-    when(mockSettings.getString(IssueAssignPlugin.PROPERTY_OVERRIDE_ASSIGNEE))
-        .thenThrow(SettingNotConfiguredException.class);
+  public void testAssignWithAliasedScmAuthor() throws Exception {
+    when(aliases.getLogin(SCM_AUTHOR)).thenReturn(ALIASED_LOGIN);
+    when(mockUserFinder.findByLogin(ALIASED_LOGIN)).thenReturn(aliasedUser);
+    when(mockUserFinder.findByLogin(SCM_AUTHOR)).thenReturn(scmAuthorUser);
+
+    final Assign classUnderTest = new Assign(mockSettings, new Users(mockUserFinder), aliases);
+    for (int i = 0; i < 2; i++) {
+      final Assignment assignment = classUnderTest.assign(SCM_AUTHOR);
+      assertThat(assignment.getOutcome()).isEqualTo(Assignment.Outcome.SCM_AUTHOR);
+      assertThat(assignment.getAssignee()).isSameAs(aliasedUser);
+    }
+    verify(mockUserFinder, times(1)).findByLogin(ALIASED_LOGIN);
+    verify(mockUserFinder, never()).findByLogin(SCM_AUTHOR);
+  }
+
+  @Test
+  public void testAssignWithAliasOfUnknownUser() throws Exception {
+    when(aliases.getLogin(SCM_AUTHOR)).thenReturn(ALIASED_LOGIN);
+    when(mockUserFinder.findByLogin(SCM_AUTHOR)).thenReturn(scmAuthorUser);
+
+    final Assign classUnderTest = new Assign(mockSettings, new Users(mockUserFinder), aliases);
+    final Assignment assignment = classUnderTest.assign(SCM_AUTHOR);
+    assertThat(assignment.getOutcome()).isEqualTo(Assignment.Outcome.SCM_AUTHOR);
+    assertThat(assignment.getAssignee()).isSameAs(scmAuthorUser);
+  }
+
+  @Test
+  public void testAssignWithScmAuthorNotFound() throws Exception {
     when(mockUserFinder.findByLogin(SCM_AUTHOR)).thenReturn(null);
 
     // on to the default assignee
@@ -79,32 +109,58 @@ public class AssignTest {
     when(mockUserFinder.findByLogin(DEFAULT_ASSIGNEE)).thenReturn(defaultUser);
 
     final Assign classUnderTest = new Assign(mockSettings, mockUserFinder);
-    final User user = classUnderTest.getAssignee(SCM_AUTHOR);
-    assertThat(user).isSameAs(defaultUser);
+    final Assignment assignment = classUnderTest.assign(SCM_AUTHOR);
+    assertThat(assignment.getOutcome()).isEqualTo(Assignment.Outcome.DEFAULT);
+    assertThat(assignment.getAssignee()).isSameAs(defaultUser);
   }
 
   @Test
-  public void testGetAssigneeWithoutScmAuthorAuthorAndOverride() throws Exception {
+  public void testAssignWithoutScmAuthorAuthorAndOverride() throws Exception {
 
     when(mockSettings.getString(IssueAssignPlugin.PROPERTY_OVERRIDE_ASSIGNEE))
         .thenReturn(OVERRIDE_ASSIGNEE);
     when(mockUserFinder.findByLogin(OVERRIDE_ASSIGNEE)).thenReturn(overrideUser);
 
     final Assign classUnderTest = new Assign(mockSettings, mockUserFinder);
-    final User user = classUnderTest.getAssignee();
-    assertThat(user).isSameAs(overrideUser);
+    final Assignment assignment = classUnderTest.assign(null);
+    assertThat(assignment.getOutcome()).isEqualTo(Assignment.Outcome.OVERRIDE);
+    assertThat(assignment.getAssignee()).isSameAs(overrideUser);
   }
 
   @Test
-  public void testGetAssigneeWithoutScmAuthorAndNoOverride() throws Exception {
-    when(mockSettings.getString(IssueAssignPlugin.PROPERTY_OVERRIDE_ASSIGNEE))
-        .thenThrow(SettingNotConfiguredException.class);
+  public void testAssignWithoutScmAuthorAndNoOverride() throws Exception {
+    when(mockSettings.getString(IssueAssignPlugin.PROPERTY_DEFAULT_ASSIGNEE))
+        .thenReturn(DEFAULT_ASSIGNEE);
+    when(mockUserFinder.findByLogin(DEFAULT_ASSIGNEE)).thenReturn(defaultUser);
+
+    final Assign classUnderTest = new Assign(mockSettings, mockUserFinder);
+    final Assignment assignment = classUnderTest.assign(null);
+    assertThat(assignment.getOutcome()).isEqualTo(Assignment.Outcome.DEFAULT);
+    assertThat(assignment.getAssignee()).isSameAs(defaultUser);
+  }
+
+  @Test
+  public void testConfiguredAssigneesResolvedOnce() throws Exception {
     when(mockSettings.getString(IssueAssignPlugin.PROPERTY_DEFAULT_ASSIGNEE))
         .thenReturn(DEFAULT_ASSIGNEE);
     when(mockUserFinder.findByLogin(DEFAULT_ASSIGNEE)).thenReturn(defaultUser);
 
     final Assign classUnderTest = new Assign(mockSettings, mockUserFinder);
-    final User user = classUnderTest.getAssignee();
-    assertThat(user).isSameAs(defaultUser);
+    assertThat(classUnderTest.assign(null).getAssignee()).isSameAs(defaultUser);
+    assertThat(classUnderTest.assign(null).getAssignee()).isSameAs(defaultUser);
+    assertThat(classUnderTest.assign(SCM_AUTHOR).getAssignee()).isSameAs(defaultUser);
+
+    verify(mockSettings, times(1)).getString(IssueAssignPlugin.PROPERTY_OVERRIDE_ASSIGNEE);
+    verify(mockSettings, times(1)).getString(IssueAssignPlugin.PROPERTY_DEFAULT_ASSIGNEE);
+    verify(mockUserFinder, times(1)).findByLogin(DEFAULT_ASSIGNEE);
+  }
+
+  @Test
+  public void testAssignWithoutDefaultAssignee() throws Exception {
+    when(mockUserFinder.findByLogin(SCM_AUTHOR)).thenReturn(null);
+
+    final Assign classUnderTest = new Assign(mockSettings, mockUserFinder);
+    assertThat(classUnderTest.assign(null).getOutcome()).isEqualTo(Assignment.Outcome.UNASSIGNED);
+    assertThat(classUnderTest.assign(SCM_AUTHOR).isAssigned()).isFalse();
   }
 }
@@ -0,0 +1,55 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.api.user.User;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AssignmentTest {
+
+  @Mock private User user;
+
+  @Test
+  public void testAssigned() {
+    final Assignment assignment = Assignment.to(Assignment.Outcome.SCM_AUTHOR, user);
+    assertThat(assignment.isAssigned()).isTrue();
+    assertThat(assignment.getOutcome()).isEqualTo(Assignment.Outcome.SCM_AUTHOR);
+    assertThat(assignment.getAssignee()).isSameAs(user);
+  }
+
+  @Test
+  public void testUnassigned() {
+    final Assignment assignment = Assignment.unassigned();
+    assertThat(assignment.isAssigned()).isFalse();
+    assertThat(assignment.getOutcome()).isEqualTo(Assignment.Outcome.UNASSIGNED);
+    assertThat(assignment.getAssignee()).isNull();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAssignedWithoutAssignee() {
+    Assignment.to(Assignment.Outcome.DEFAULT, null);
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AuthorshipTest {
+
+  @Test
+  public void testLastCommitter() {
+    final Authorship authorship = Authorship.lastCommitter("author");
+    assertThat(authorship.isResolved()).isTrue();
+    assertThat(authorship.getOutcome()).isEqualTo(Authorship.Outcome.LAST_COMMITTER);
+    assertThat(authorship.getAuthor()).isEqualTo("author");
+  }
+
+  @Test
+  public void testUnresolved() {
+    assertThat(Authorship.noScmMeasures().isResolved()).isFalse();
+    assertThat(Authorship.noScmMeasures().getAuthor()).isNull();
+    assertThat(Authorship.noUniqueAuthor().isResolved()).isFalse();
+    assertThat(Authorship.noUniqueAuthor().getOutcome()).isEqualTo(Authorship.Outcome.NO_UNIQUE_AUTHOR);
+  }
+}
@@ -19,23 +19,15 @@
  */
 package org.sonar.plugins.issueassign;
 
-import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.sonar.api.issue.Issue;
-import org.sonar.plugins.issueassign.exception.MissingScmMeasureDataException;
-import org.sonar.plugins.issueassign.exception.NoUniqueAuthorForLastCommitException;
 import org.sonar.plugins.issueassign.measures.MeasuresCollector;
 import org.sonar.plugins.issueassign.measures.ScmMeasures;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -45,122 +37,100 @@ public class BlameTest {
 
   @Mock private MeasuresCollector mockMeasuresCollector;
   @Mock private Issue mockIssue;
-  @Mock private ScmMeasures scmMeasures;
-  @Mock private Map resources;
-  @Mock private Map authorMap;
+  @Mock private BlameSource gitBlameSource;
 
-  private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
   private static final String DATE1_STRING = "2013-01-31T12:12:12-0800";
   private static final String DATE2_STRING = "2011-02-01T12:12:12-0800";
   private static final String DATE3_STRING = "2014-01-01T12:12:12-0800";
 
-  private static Date DATE1;
-  private static Date DATE2;
-  private static Date DATE3;
-
   private static final String AUTHOR1 = "author1";
   private static final String AUTHOR2 = "author2";
   private static final String AUTHOR3 = "author3";
 
-  @Before
-  public void beforeTest() throws ParseException {
-    final DateFormat SIMPLE_DATE_FORMAT = new SimpleDateFormat(DATE_FORMAT);
-
-    DATE1 = SIMPLE_DATE_FORMAT.parse(DATE1_STRING);
-    DATE2 = SIMPLE_DATE_FORMAT.parse(DATE2_STRING);
-    DATE3 = SIMPLE_DATE_FORMAT.parse(DATE3_STRING);
-  }
+  private static final String COMPONENT_KEY = "componentKey";
 
   @Test
-  public void testGetAuthorSameAsLastCommitter() throws MissingScmMeasureDataException {
-
-    final Map<Integer, String> authorMap = new HashMap<Integer, String>();
-    authorMap.put(1, AUTHOR1);
-    authorMap.put(2, AUTHOR1);
-    authorMap.put(3, AUTHOR1);
-    authorMap.put(4, AUTHOR1);
-
-    final Map<Integer, Date> lastCommitDateMap = new HashMap<Integer, Date>();
-    lastCommitDateMap.put(1, DATE1);
-    lastCommitDateMap.put(2, DATE2);
-    lastCommitDateMap.put(3, DATE3);
-    lastCommitDateMap.put(4, DATE3);
-
-    final String componentKey = "componentKey";
-
-    when(mockMeasuresCollector.getResources()).thenReturn(resources);
-    when(resources.get(componentKey)).thenReturn(scmMeasures);
-    when(scmMeasures.getAuthorsByLine()).thenReturn(authorMap);
-    when(scmMeasures.getLastCommitsByLine()).thenReturn(lastCommitDateMap);
-
-    when(mockIssue.componentKey()).thenReturn(componentKey);
+  public void testGetAuthorSameAsLastCommitter() {
+    final ScmMeasures scmMeasures = new ScmMeasures(COMPONENT_KEY,
+        "1=" + AUTHOR1 + ";2=" + AUTHOR1 + ";3=" + AUTHOR1 + ";4=" + AUTHOR1,
+        "1=" + DATE1_STRING + ";2=" + DATE2_STRING + ";3=" + DATE3_STRING + ";4=" + DATE3_STRING,
+        "1=r1;2=r2;3=r3;4=r3");
+
+    when(mockMeasuresCollector.getMeasures(COMPONENT_KEY)).thenReturn(scmMeasures);
+    when(mockIssue.componentKey()).thenReturn(COMPONENT_KEY);
     when(mockIssue.line()).thenReturn(1);
 
     final Blame classUnderTest = new Blame(mockMeasuresCollector);
-    final String author = classUnderTest.getScmAuthorForIssue(mockIssue);
-    assertThat(author).isEqualTo(AUTHOR1);
+    final Authorship authorship = classUnderTest.getAuthorshipForIssue(mockIssue);
+    assertThat(authorship.getOutcome()).isEqualTo(Authorship.Outcome.LAST_COMMITTER);
+    assertThat(authorship.getAuthor()).isEqualTo(AUTHOR1);
   }
 
   @Test
-  public void testGetAuthorIsLastCommitter() throws MissingScmMeasureDataException {
-
-    final Map<Integer, String> authorMap = new HashMap<Integer, String>();
-    authorMap.put(1, AUTHOR1);
-    authorMap.put(2, AUTHOR2);
-    authorMap.put(3, AUTHOR3);
-
-    final Map<Integer, Date> lastCommitDateMap = new HashMap<Integer, Date>();
-    lastCommitDateMap.put(1, DATE1);
-    lastCommitDateMap.put(2, DATE2);
-    lastCommitDateMap.put(3, DATE3);
-
-    final String componentKey = "componentKey";
-
-    when(mockMeasuresCollector.getResources()).thenReturn(resources);
-    when(resources.get(componentKey)).thenReturn(scmMeasures);
-    when(scmMeasures.getAuthorsByLine()).thenReturn(authorMap);
-    when(scmMeasures.getLastCommitsByLine()).thenReturn(lastCommitDateMap);
-
-    when(mockIssue.componentKey()).thenReturn(componentKey);
+  public void testGetAuthorIsLastCommitter() {
+    final ScmMeasures scmMeasures = new ScmMeasures(COMPONENT_KEY,
+        "1=" + AUTHOR1 + ";2=" + AUTHOR2 + ";3=" + AUTHOR3,
+        "1=" + DATE1_STRING + ";2=" + DATE2_STRING + ";3=" + DATE3_STRING,
+        "1=r1;2=r2;3=r3");
+
+    when(mockMeasuresCollector.getMeasures(COMPONENT_KEY)).thenReturn(scmMeasures);
+    when(mockIssue.componentKey()).thenReturn(COMPONENT_KEY);
     when(mockIssue.line()).thenReturn(1);
 
     final Blame classUnderTest = new Blame(mockMeasuresCollector);
-    final String author = classUnderTest.getScmAuthorForIssue(mockIssue);
-    assertThat(author).isEqualTo(AUTHOR3);
+    final Authorship authorship = classUnderTest.getAuthorshipForIssue(mockIssue);
+    assertThat(authorship.getOutcome()).isEqualTo(Authorship.Outcome.LAST_COMMITTER);
+    assertThat(authorship.getAuthor()).isEqualTo(AUTHOR3);
   }
 
-  @Test(expected = MissingScmMeasureDataException.class)
-  public void testGetAuthorWithMissingMeasures() throws MissingScmMeasureDataException {
-    when(mockMeasuresCollector.getResources()).thenReturn(resources);
-    when(scmMeasures.getAuthorsByLine()).thenReturn(null);
+  @Test
+  public void testGetAuthorWithMissingMeasures() {
+    when(mockIssue.componentKey()).thenReturn(COMPONENT_KEY);
 
     final Blame classUnderTest = new Blame(mockMeasuresCollector);
-    classUnderTest.getScmAuthorForIssue(mockIssue);
+    final Authorship authorship = classUnderTest.getAuthorshipForIssue(mockIssue);
+    assertThat(authorship.getOutcome()).isEqualTo(Authorship.Outcome.NO_SCM_MEASURES);
+    assertThat(authorship.isResolved()).isFalse();
   }
 
-  @Test(expected = NoUniqueAuthorForLastCommitException.class)
-  public void testGetAuthorNoUniqueAuthorForLastCommit() throws MissingScmMeasureDataException {
-
-    final Map<Integer, String> authorMap = new HashMap<Integer, String>();
-    authorMap.put(1, AUTHOR1);
-    authorMap.put(2, AUTHOR2);
-
-    final Map<Integer, Date> lastCommitDateMap = new HashMap<Integer, Date>();
-    lastCommitDateMap.put(1, DATE1);
-    lastCommitDateMap.put(2, DATE1);
+  @Test
+  public void testGetAuthorNoUniqueAuthorForLastCommit() {
+    // two commits by different authors at the same second
+    final ScmMeasures scmMeasures = new ScmMeasures(COMPONENT_KEY,
+        "1=" + AUTHOR1 + ";2=" + AUTHOR2,
+        "1=" + DATE1_STRING + ";2=" + DATE1_STRING,
+        "1=r1;2=r2");
+
+    when(mockMeasuresCollector.getMeasures(COMPONENT_KEY)).thenReturn(scmMeasures);
+    when(mockIssue.componentKey()).thenReturn(COMPONENT_KEY);
+    when(mockIssue.line()).thenReturn(1);
 
-    final String componentKey = "componentKey";
+    final Blame classUnderTest = new Blame(mockMeasuresCollector);
+    final Authorship authorship = classUnderTest.getAuthorshipForIssue(mockIssue);
+    assertThat(authorship.getOutcome()).isEqualTo(Authorship.Outcome.NO_UNIQUE_AUTHOR);
+    assertThat(authorship.getAuthor()).isNull();
+  }
 
-    when(mockMeasuresCollector.getResources()).thenReturn(resources);
-    when(resources.get(componentKey)).thenReturn(scmMeasures);
-    when(scmMeasures.getAuthorsByLine()).thenReturn(authorMap);
-    when(scmMeasures.getLastCommitsByLine()).thenReturn(lastCommitDateMap);
+  @Test
+  public void testFallsBackToNextSource() {
+    final ScmMeasures gitMeasures = new ScmMeasures(COMPONENT_KEY, "1=" + AUTHOR1 + ";2=" + AUTHOR2,
+        "1=" + DATE1_STRING + ";2=" + DATE3_STRING, "1=r1;2=r2");
+
+    when(mockMeasuresCollector.getMeasures(COMPONENT_KEY)).thenReturn(null);
+    when(gitBlameSource.getMeasures(COMPONENT_KEY)).thenReturn(gitMeasures);
+    when(mockIssue.componentKey()).thenReturn(COMPONENT_KEY);
+
+    final Blame classUnderTest = new Blame(Arrays.asList(new MeasuresBlameSource(mockMeasuresCollector), gitBlameSource));
+    final Authorship authorship = classUnderTest.getAuthorshipForIssue(mockIssue);
+    assertThat(authorship.getOutcome()).isEqualTo(Authorship.Outcome.LAST_COMMITTER);
+    assertThat(authorship.getAuthor()).isEqualTo(AUTHOR2);
+  }
 
-    when(mockIssue.componentKey()).thenReturn(componentKey);
-    when(mockIssue.line()).thenReturn(1);
+  @Test
+  public void testNoSourceHasMeasures() {
+    when(mockIssue.componentKey()).thenReturn(COMPONENT_KEY);
 
-    final Blame classUnderTest = new Blame(mockMeasuresCollector);
-    final String author = classUnderTest.getScmAuthorForIssue(mockIssue);
-    assertThat(author).isEqualTo(AUTHOR3);
+    final Blame classUnderTest = new Blame(Arrays.asList(new MeasuresBlameSource(mockMeasuresCollector), gitBlameSource));
+    assertThat(classUnderTest.getAuthorshipForIssue(mockIssue).getOutcome()).isEqualTo(Authorship.Outcome.NO_SCM_MEASURES);
   }
 }
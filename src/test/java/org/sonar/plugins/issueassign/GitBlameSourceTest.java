@@ -0,0 +1,205 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.issueassign.measures.BlameCache;
+import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.measures.ScmMeasures;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GitBlameSourceTest {
+
+  private static final String ALICE = "alice@domain.com";
+  private static final String BOB = "bob@domain.com";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  @Rule public TemporaryFolder otherFolder = new TemporaryFolder();
+
+  @Mock private Settings settings;
+  @Mock private ModuleFileSystem moduleFileSystem;
+
+  private Git git;
+  private File sourceDir;
+  private IssueAssignStatistics statistics;
+  private MeasuresCollector measuresCollector;
+  private GitBlameSource classUnderTest;
+
+  @Before
+  public void before() throws Exception {
+    this.git = Git.init().setDirectory(temporaryFolder.getRoot()).call();
+    this.sourceDir = temporaryFolder.newFolder("src");
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_GIT_BLAME)).thenReturn(true);
+    when(moduleFileSystem.baseDir()).thenReturn(temporaryFolder.getRoot());
+    when(moduleFileSystem.sourceDirs()).thenReturn(Collections.singletonList(this.sourceDir));
+    when(moduleFileSystem.testDirs()).thenReturn(Collections.<File>emptyList());
+
+    this.commit("src/Foo.java", "a\nb\nc\n", ALICE, 1000);
+    this.commit("src/Foo.java", "a\nB\nc\nd\n", BOB, 2000);
+
+    this.statistics = new IssueAssignStatistics();
+    this.measuresCollector = new MeasuresCollector(settings, this.statistics, null, null, null);
+    this.classUnderTest = new GitBlameSource(settings, moduleFileSystem, this.measuresCollector, this.statistics);
+  }
+
+  @After
+  public void after() {
+    this.classUnderTest.stop();
+    this.git.getRepository().close();
+  }
+
+  @Test
+  public void blamesEachLine() {
+    final ScmMeasures scmMeasures = this.classUnderTest.getMeasures("project:Foo.java");
+
+    assertThat(scmMeasures.getKey()).isEqualTo("project:Foo.java");
+    assertThat(scmMeasures.getAuthor(1)).isEqualTo(ALICE);
+    assertThat(scmMeasures.getAuthor(2)).isEqualTo(BOB);
+    assertThat(scmMeasures.getAuthor(3)).isEqualTo(ALICE);
+    assertThat(scmMeasures.getAuthor(4)).isEqualTo(BOB);
+    assertThat(scmMeasures.getLastCommit(2)).isEqualTo(2000000L);
+    assertThat(scmMeasures.getLastCommit().getAuthor()).isEqualTo(BOB);
+    assertThat(scmMeasures.getLastCommit().getLines()).containsExactly(2, 4);
+    assertThat(this.measuresCollector.getAuthors().size()).isEqualTo(2);
+  }
+
+  @Test
+  public void resolvesJavaClassKeys() {
+    assertThat(this.classUnderTest.getMeasures("project:[default].Foo").getAuthor(1)).isEqualTo(ALICE);
+  }
+
+  @Test
+  public void blamesOnceUntilReleased() throws Exception {
+    final ScmMeasures first = this.classUnderTest.getMeasures("project:Foo.java");
+    this.write("src/Foo.java", "a\nB\nc\nd\ne\n");
+    assertThat(this.classUnderTest.getMeasures("project:Foo.java")).isSameAs(first);
+    assertThat(this.statistics.getGitBlame().getCount()).isEqualTo(1);
+
+    this.measuresCollector.release("project:Foo.java");
+    final ScmMeasures changed = this.classUnderTest.getMeasures("project:Foo.java");
+    assertThat(changed).isNotSameAs(first);
+    assertThat(changed.getAuthor(4)).isEqualTo(BOB);
+    assertThat(changed.getAuthor(5)).isNull();
+    assertThat(this.statistics.getGitBlame().getCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void blameCachedAcrossAnalyses() throws Exception {
+    when(settings.getInt(IssueAssignPlugin.PROPERTY_BLAME_CACHE_MAX_SIZE)).thenReturn(1);
+    when(moduleFileSystem.workingDir()).thenReturn(otherFolder.getRoot());
+    this.write("src/Bar.java", "a\n");
+
+    final BlameCache firstCache = new BlameCache(settings, moduleFileSystem, this.statistics);
+    firstCache.start();
+    final GitBlameSource first = new GitBlameSource(settings, moduleFileSystem, this.measuresCollector, this.statistics, firstCache);
+    first.getMeasures("project:Foo.java");
+    first.getMeasures("project:Bar.java");
+    first.stop();
+    firstCache.stop();
+    // nor is the blame of files not committed
+    assertThat(firstCache.size()).isEqualTo(1);
+
+    final BlameCache secondCache = new BlameCache(settings, moduleFileSystem, this.statistics);
+    secondCache.start();
+    final GitBlameSource second = new GitBlameSource(settings, moduleFileSystem,
+        new MeasuresCollector(settings, this.statistics, null, null, null), this.statistics, secondCache);
+    final ScmMeasures scmMeasures = second.getMeasures("project:Foo.java");
+    second.stop();
+    secondCache.stop();
+
+    assertThat(scmMeasures.getAuthor(1)).isEqualTo(ALICE);
+    assertThat(scmMeasures.getAuthor(2)).isEqualTo(BOB);
+    assertThat(scmMeasures.getLastCommit().getAuthor()).isEqualTo(BOB);
+    assertThat(this.statistics.getBlameCacheHits()).isEqualTo(1);
+    assertThat(this.statistics.getGitBlame().getCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void noBlameForUnknownOrUncommittedFiles() throws Exception {
+    this.write("src/Bar.java", "a\n");
+
+    assertThat(this.classUnderTest.getMeasures("project:Missing.java")).isNull();
+    assertThat(this.classUnderTest.getMeasures("project:Bar.java")).isNull();
+  }
+
+  @Test
+  public void disabled() {
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_GIT_BLAME)).thenReturn(false);
+
+    final GitBlameSource disabled = new GitBlameSource(settings, moduleFileSystem, this.measuresCollector, this.statistics);
+    assertThat(disabled.getMeasures("project:Foo.java")).isNull();
+  }
+
+  @Test
+  public void noRepository() throws Exception {
+    final File elsewhere = otherFolder.getRoot();
+    when(moduleFileSystem.baseDir()).thenReturn(elsewhere);
+    when(moduleFileSystem.sourceDirs()).thenReturn(Collections.singletonList(elsewhere));
+
+    final GitBlameSource noRepository = new GitBlameSource(settings, moduleFileSystem, this.measuresCollector, this.statistics);
+    assertThat(noRepository.getMeasures("project:Foo.java")).isNull();
+  }
+
+  @Test
+  public void relativePath() throws Exception {
+    final File workTree = temporaryFolder.getRoot();
+    assertThat(GitBlameSource.relativePath(workTree, new File(this.sourceDir, "Foo.java"))).isEqualTo("src/Foo.java");
+    assertThat(GitBlameSource.relativePath(this.sourceDir, new File(workTree, "Foo.java"))).isNull();
+  }
+
+  private void commit(final String path, final String content, final String email, final long seconds) throws Exception {
+    this.write(path, content);
+    final PersonIdent author = new PersonIdent(email, email, new Date(seconds * 1000L), TimeZone.getTimeZone("UTC"));
+    this.git.add().addFilepattern(path).call();
+    this.git.commit().setMessage(path).setAuthor(author).setCommitter(author).call();
+  }
+
+  private void write(final String path, final String content) throws Exception {
+    final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(temporaryFolder.getRoot(), path)), "UTF-8");
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+  }
+}
@@ -20,7 +20,12 @@
 package org.sonar.plugins.issueassign;
 
 import org.junit.Test;
+import org.sonar.plugins.issueassign.measures.BlameCache;
 import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.measures.MeasuresReleaser;
+import org.sonar.plugins.issueassign.statistics.IssueAssignMonitor;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+import org.sonar.plugins.issueassign.statistics.StatisticsReporter;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 
@@ -30,7 +35,9 @@ public class IssueAssignPluginTest {
   public void testGetExtensions() throws Exception {
     final IssueAssignPlugin classUnderTest = new IssueAssignPlugin();
     assertThat(classUnderTest.getExtensions())
-        .hasSize(2)
-        .containsExactly(MeasuresCollector.class, IssueAssigner.class);
+        .hasSize(10)
+        .containsExactly(MeasuresCollector.class, IssueAssigner.class, MeasuresReleaser.class,
+            IssueAssignStatistics.class, StatisticsReporter.class, IssueAssignMonitor.class,
+            UserDirectory.class, Aliases.class, GitBlameSource.class, BlameCache.class);
   }
 }
@@ -0,0 +1,156 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.IssueHandler;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
+import org.sonar.api.user.UserQuery;
+import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.measures.MeasuresReleaser;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Decorates files and assigns their issues from several threads at once, through the real collector, assigner
+ * and releaser, and checks that every issue still goes to the last committer of its file.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class IssueAssignerStressTest {
+
+  private static final int FILES = 400;
+  private static final int ISSUES_PER_FILE = 3;
+  private static final int AUTHORS = 25;
+
+  @Mock private Settings settings;
+  @Mock private UserFinder userFinder;
+
+  private final List<User> users = new ArrayList<User>();
+  private final Resource[] resources = new Resource[FILES];
+  private final DecoratorContext[] decoratorContexts = new DecoratorContext[FILES];
+  private final IssueHandler.Context[][] issueContexts = new IssueHandler.Context[FILES][ISSUES_PER_FILE];
+
+  @Before
+  public void before() {
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
+
+    for (int author = 0; author < AUTHORS; author++) {
+      final User user = mock(User.class);
+      when(user.login()).thenReturn("author" + author);
+      when(user.email()).thenReturn("author" + author + "@domain.com");
+      this.users.add(user);
+    }
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(this.users);
+
+    for (int file = 0; file < FILES; file++) {
+      final String key = "project:module:File" + file;
+      final String author = "author" + (file % AUTHORS);
+      this.resources[file] = mock(Resource.class);
+      when(this.resources[file].getScope()).thenReturn(Scopes.FILE);
+      when(this.resources[file].getEffectiveKey()).thenReturn(key);
+
+      this.decoratorContexts[file] = mock(DecoratorContext.class);
+      this.stubMeasure(file, CoreMetrics.SCM_AUTHORS_BY_LINE, "1=" + author + ";2=" + author + ";3=" + author);
+      this.stubMeasure(file, CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE,
+          "1=2013-01-31T12:12:12-0800;2=2013-01-31T12:12:12-0800;3=2013-01-31T12:12:12-0800");
+      this.stubMeasure(file, CoreMetrics.SCM_REVISIONS_BY_LINE, "1=r" + file + ";2=r" + file + ";3=r" + file);
+
+      for (int i = 0; i < ISSUES_PER_FILE; i++) {
+        final Issue issue = mock(Issue.class);
+        when(issue.isNew()).thenReturn(true);
+        when(issue.key()).thenReturn(key + "#" + i);
+        when(issue.componentKey()).thenReturn(key);
+        when(issue.line()).thenReturn(i + 1);
+        this.issueContexts[file][i] = mock(IssueHandler.Context.class);
+        when(this.issueContexts[file][i].issue()).thenReturn(issue);
+      }
+    }
+  }
+
+  @Test
+  public void concurrentDecorationAndAssignment() throws Exception {
+    this.decorateAndAssign(0);
+  }
+
+  @Test
+  public void concurrentDecorationAndAssignmentWithParseThreads() throws Exception {
+    this.decorateAndAssign(4);
+  }
+
+  private void decorateAndAssign(final int parseThreads) throws Exception {
+    when(settings.getInt(IssueAssignPlugin.PROPERTY_PARSE_THREADS)).thenReturn(parseThreads);
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final MeasuresCollector measuresCollector = new MeasuresCollector(settings, statistics, null, null, null);
+    final IssueAssigner issueAssigner = new IssueAssigner(measuresCollector, settings, userFinder, statistics, null, null, null);
+    final MeasuresReleaser measuresReleaser = new MeasuresReleaser(measuresCollector, settings);
+
+    Stress.run(Stress.THREADS, new Stress.Task() {
+      public void run(final int thread) {
+        for (int file = thread; file < FILES; file += Stress.THREADS) {
+          measuresCollector.decorate(resources[file], decoratorContexts[file]);
+          for (int i = 0; i < ISSUES_PER_FILE; i++) {
+            issueAssigner.onIssue(issueContexts[file][i]);
+          }
+          measuresReleaser.decorate(resources[file], decoratorContexts[file]);
+        }
+      }
+    });
+
+    for (int file = 0; file < FILES; file++) {
+      for (int i = 0; i < ISSUES_PER_FILE; i++) {
+        verify(this.issueContexts[file][i]).assign(this.users.get(file % AUTHORS));
+      }
+    }
+    assertThat(statistics.getIssuesSeen()).isEqualTo(FILES * ISSUES_PER_FILE);
+    assertThat(statistics.getAssigned(Assignment.Outcome.SCM_AUTHOR)).isEqualTo(FILES * ISSUES_PER_FILE);
+    assertThat(statistics.getErrors()).isEqualTo(0);
+    assertThat(statistics.getResourcesHeld()).isEqualTo(0);
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(0);
+    assertThat(measuresCollector.getResources()).isEmpty();
+    assertThat(measuresCollector.getAuthors().size()).isEqualTo(AUTHORS);
+    measuresCollector.stop();
+  }
+
+  private void stubMeasure(final int file, final org.sonar.api.measures.Metric metric, final String data) {
+    final Measure measure = mock(Measure.class);
+    when(measure.getData()).thenReturn(data);
+    when(this.decoratorContexts[file].getMeasure(metric)).thenReturn(measure);
+  }
+}
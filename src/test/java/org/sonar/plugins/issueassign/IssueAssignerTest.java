@@ -29,9 +29,13 @@ import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.IssueHandler;
 import org.sonar.api.user.User;
 import org.sonar.api.user.UserFinder;
-import org.sonar.plugins.issueassign.exception.IssueAssignPluginException;
 import org.sonar.plugins.issueassign.measures.MeasuresCollector;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -72,9 +76,10 @@ public class IssueAssignerTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
     when(issue.isNew()).thenReturn(true);
-    when(blame.getScmAuthorForIssue(issue)).thenReturn(SCM_AUTHOR);
+    when(blame.getAuthorshipForIssue(issue)).thenReturn(Authorship.lastCommitter(SCM_AUTHOR));
+    when(measuresCollector.getAuthors()).thenReturn(new ScmDictionary());
     when(issue.key()).thenReturn(ISSUE_KEY);
-    when(assign.getAssignee(SCM_AUTHOR)).thenReturn(assignee);
+    when(assign.assign(SCM_AUTHOR)).thenReturn(Assignment.to(Assignment.Outcome.SCM_AUTHOR, assignee));
 
     context.assign(assignee);
 
@@ -93,9 +98,10 @@ public class IssueAssignerTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
     when(issue.isNew()).thenReturn(true);
-    when(blame.getScmAuthorForIssue(issue)).thenReturn(SCM_AUTHOR);
+    when(blame.getAuthorshipForIssue(issue)).thenReturn(Authorship.lastCommitter(SCM_AUTHOR));
+    when(measuresCollector.getAuthors()).thenReturn(new ScmDictionary());
     when(issue.key()).thenReturn(ISSUE_KEY);
-    when(assign.getAssignee(SCM_AUTHOR)).thenThrow(RuntimeException.class);
+    when(assign.assign(SCM_AUTHOR)).thenThrow(RuntimeException.class);
 
     context.assign(assignee);
 
@@ -108,15 +114,16 @@ public class IssueAssignerTest {
   }
 
   @Test
-  public void testOnIssueWithScmAuthorWithAssignException() throws Exception {
+  public void testOnIssueWithScmAuthorUnassigned() throws Exception {
 
     when(context.issue()).thenReturn(issue);
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
     when(issue.isNew()).thenReturn(true);
-    when(blame.getScmAuthorForIssue(issue)).thenReturn(SCM_AUTHOR);
+    when(blame.getAuthorshipForIssue(issue)).thenReturn(Authorship.lastCommitter(SCM_AUTHOR));
+    when(measuresCollector.getAuthors()).thenReturn(new ScmDictionary());
     when(issue.key()).thenReturn(ISSUE_KEY);
-    when(assign.getAssignee(SCM_AUTHOR)).thenThrow(IssueAssignPluginException.class);
+    when(assign.assign(SCM_AUTHOR)).thenReturn(Assignment.unassigned());
 
     final IssueHandler classUnderTest =
         new org.sonar.plugins.issueassign.IssueAssigner(measuresCollector, settings, userFinder);
@@ -124,6 +131,7 @@ public class IssueAssignerTest {
     Whitebox.setInternalState(classUnderTest, "assign", assign);
 
     classUnderTest.onIssue(context);
+    verify(context, never()).assign(any(User.class));
   }
 
   @Test
@@ -150,9 +158,9 @@ public class IssueAssignerTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
     when(issue.isNew()).thenReturn(true);
-    when(blame.getScmAuthorForIssue(issue)).thenReturn(null);
+    when(blame.getAuthorshipForIssue(issue)).thenReturn(Authorship.lastCommitter(null));
     when(issue.key()).thenReturn(ISSUE_KEY);
-    when(assign.getAssignee()).thenReturn(assignee);
+    when(assign.assign(null)).thenReturn(Assignment.to(Assignment.Outcome.DEFAULT, assignee));
 
     context.assign(assignee);
 
@@ -163,4 +171,24 @@ public class IssueAssignerTest {
 
     classUnderTest.onIssue(context);
   }
+
+  @Test
+  public void testOnIssueWithNoScmMeasures() throws Exception {
+
+    when(context.issue()).thenReturn(issue);
+    when(issue.componentKey()).thenReturn(COMPONENT_KEY);
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
+    when(issue.isNew()).thenReturn(true);
+    when(blame.getAuthorshipForIssue(issue)).thenReturn(Authorship.noScmMeasures());
+    when(issue.key()).thenReturn(ISSUE_KEY);
+
+    final IssueHandler classUnderTest =
+        new org.sonar.plugins.issueassign.IssueAssigner(measuresCollector, settings, userFinder);
+    Whitebox.setInternalState(classUnderTest, "blame", blame);
+    Whitebox.setInternalState(classUnderTest, "assign", assign);
+
+    classUnderTest.onIssue(context);
+    verify(assign, never()).assign(anyString());
+    verify(context, never()).assign(any(User.class));
+  }
 }
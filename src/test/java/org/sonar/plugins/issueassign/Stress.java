@@ -0,0 +1,79 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a task on several threads at once, for stress tests of the components shared by concurrent callers.
+ */
+public final class Stress {
+
+  public static final int THREADS = 8;
+  private static final long TIMEOUT_SECONDS = 60;
+
+  private Stress() {
+  }
+
+  public interface Task {
+    void run(int thread) throws Exception;
+  }
+
+  /**
+   * Starts every thread at the same time, waits for all of them, and fails with the first error thrown by any.
+   */
+  public static void run(final int threads, final Task task) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threads);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final List<Thread> workers = new ArrayList<Thread>(threads);
+    for (int i = 0; i < threads; i++) {
+      final int thread = i;
+      workers.add(new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+            task.run(thread);
+          } catch (final Throwable e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            done.countDown();
+          }
+        }
+      }, "stress-" + i));
+    }
+    for (final Thread worker : workers) {
+      worker.start();
+    }
+    start.countDown();
+    if (!done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      throw new AssertionError("Stress test threads did not finish within " + TIMEOUT_SECONDS + " seconds");
+    }
+    if (failure.get() != null) {
+      final AssertionError error = new AssertionError("Stress test thread failed: " + failure.get());
+      error.initCause(failure.get());
+      throw error;
+    }
+  }
+}
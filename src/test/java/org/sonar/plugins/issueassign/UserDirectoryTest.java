@@ -0,0 +1,234 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
+import org.sonar.api.user.UserQuery;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserDirectoryTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock UserFinder userFinder;
+  @Mock User emailUser;
+  @Mock User nonEmailUser;
+  @Mock Settings settings;
+  @Mock ModuleFileSystem moduleFileSystem;
+
+  private static final String LOGIN = "username";
+  private static final String EMAIL = "username@domain.com";
+  private List<User> sonarUsers;
+
+  @Before
+  public void before() {
+    sonarUsers = new ArrayList<User>();
+    sonarUsers.add(emailUser);
+    sonarUsers.add(nonEmailUser);
+    when(emailUser.login()).thenReturn(LOGIN);
+    when(emailUser.email()).thenReturn(EMAIL);
+    when(nonEmailUser.email()).thenReturn(null);
+    when(settings.getInt(IssueAssignPlugin.PROPERTY_USER_SNAPSHOT_MAX_AGE)).thenReturn(24);
+    when(moduleFileSystem.workingDir()).thenReturn(temporaryFolder.getRoot());
+  }
+
+  @Test
+  public void loadsOnFirstLookupWithoutPrefetch() {
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(sonarUsers);
+
+    final UserDirectory classUnderTest = new UserDirectory(userFinder);
+    assertThat(classUnderTest.isLoaded()).isFalse();
+    assertThat(classUnderTest.find(EMAIL)).isSameAs(emailUser);
+    assertThat(classUnderTest.find("dontmatch@domain.com")).isNull();
+
+    assertThat(classUnderTest.isLoaded()).isTrue();
+    verify(userFinder, times(1)).find(isA(UserQuery.class));
+  }
+
+  @Test
+  public void prefetchLoadsInTheBackground() {
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(sonarUsers);
+
+    final UserDirectory classUnderTest = new UserDirectory(userFinder);
+    classUnderTest.prefetch();
+    classUnderTest.prefetch();
+
+    verify(userFinder, timeout(5000)).find(isA(UserQuery.class));
+    assertThat(classUnderTest.find(EMAIL)).isSameAs(emailUser);
+    verify(userFinder, times(1)).find(isA(UserQuery.class));
+  }
+
+  @Test
+  public void lookupWaitsForPrefetch() throws Exception {
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    when(userFinder.find(isA(UserQuery.class))).thenAnswer(new Answer<List<User>>() {
+      public List<User> answer(final InvocationOnMock invocation) throws Throwable {
+        loading.countDown();
+        release.await();
+        return sonarUsers;
+      }
+    });
+
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final UserDirectory classUnderTest = new UserDirectory(userFinder, statistics);
+    classUnderTest.prefetch();
+    loading.await();
+    assertThat(classUnderTest.isLoaded()).isFalse();
+
+    // let the load finish only once the lookup below is waiting for it
+    final Thread releaser = new Thread(new Runnable() {
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        release.countDown();
+      }
+    });
+    releaser.start();
+    assertThat(classUnderTest.find(EMAIL)).isSameAs(emailUser);
+
+    verify(userFinder, times(1)).find(isA(UserQuery.class));
+    assertThat(statistics.getUserDirectoryWait().getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void failedLoadIsNotRetried() {
+    when(userFinder.find(isA(UserQuery.class))).thenThrow(new IllegalStateException("database unavailable"));
+
+    final UserDirectory classUnderTest = new UserDirectory(userFinder);
+    assertThat(classUnderTest.find(EMAIL)).isNull();
+    assertThat(classUnderTest.find(EMAIL)).isNull();
+
+    verify(userFinder, times(1)).find(isA(UserQuery.class));
+  }
+
+  @Test
+  public void recentSnapshotAnswersBeforeTheLoad() throws Exception {
+    UserSnapshot.of(sonarUsers, System.currentTimeMillis()).write(this.snapshotFile());
+    final CountDownLatch release = new CountDownLatch(1);
+    when(userFinder.find(isA(UserQuery.class))).thenAnswer(new Answer<List<User>>() {
+      public List<User> answer(final InvocationOnMock invocation) throws Throwable {
+        release.await();
+        return sonarUsers;
+      }
+    });
+    when(userFinder.findByLogin(LOGIN)).thenReturn(emailUser);
+
+    final UserDirectory classUnderTest = new UserDirectory(userFinder, new IssueAssignStatistics(), settings, moduleFileSystem);
+    classUnderTest.prefetch();
+    assertThat(classUnderTest.find(EMAIL)).isSameAs(emailUser);
+    assertThat(classUnderTest.find(EMAIL)).isSameAs(emailUser);
+    assertThat(classUnderTest.find(LOGIN)).isSameAs(emailUser);
+    assertThat(classUnderTest.isLoaded()).isFalse();
+    verify(userFinder, times(1)).findByLogin(LOGIN);
+    release.countDown();
+    assertThat(classUnderTest.find("dontmatch@domain.com")).isNull();
+  }
+
+  @Test
+  public void userMissingFromTheSnapshotWaitsForTheLoad() throws Exception {
+    UserSnapshot.of(Collections.singletonList(nonEmailUser), System.currentTimeMillis()).write(this.snapshotFile());
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(sonarUsers);
+
+    final UserDirectory classUnderTest = new UserDirectory(userFinder, new IssueAssignStatistics(), settings, moduleFileSystem);
+    classUnderTest.prefetch();
+    assertThat(classUnderTest.find(EMAIL)).isSameAs(emailUser);
+    assertThat(classUnderTest.isLoaded()).isTrue();
+  }
+
+  @Test
+  public void userChangedSinceTheSnapshotWaitsForTheLoad() throws Exception {
+    UserSnapshot.of(sonarUsers, System.currentTimeMillis()).write(this.snapshotFile());
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(new ArrayList<User>());
+    when(userFinder.findByLogin(LOGIN)).thenReturn(nonEmailUser);
+
+    final UserDirectory classUnderTest = new UserDirectory(userFinder, new IssueAssignStatistics(), settings, moduleFileSystem);
+    assertThat(classUnderTest.find(EMAIL)).isNull();
+    verify(userFinder, times(1)).find(isA(UserQuery.class));
+  }
+
+  @Test
+  public void staleSnapshotIsIgnored() throws Exception {
+    UserSnapshot.of(sonarUsers, System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25)).write(this.snapshotFile());
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(sonarUsers);
+
+    final UserDirectory classUnderTest = new UserDirectory(userFinder, new IssueAssignStatistics(), settings, moduleFileSystem);
+    assertThat(classUnderTest.find(EMAIL)).isSameAs(emailUser);
+    verify(userFinder, never()).findByLogin(anyString());
+  }
+
+  @Test
+  public void loadRefreshesTheSnapshot() throws Exception {
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(sonarUsers);
+
+    final UserDirectory classUnderTest = new UserDirectory(userFinder, new IssueAssignStatistics(), settings, moduleFileSystem);
+    assertThat(classUnderTest.find(EMAIL)).isSameAs(emailUser);
+
+    final UserSnapshot snapshot = UserSnapshot.read(this.snapshotFile());
+    assertThat(snapshot.size()).isEqualTo(1);
+    assertThat(snapshot.getLogin(EMAIL)).isEqualTo(LOGIN);
+  }
+
+  @Test
+  public void snapshotDisabled() throws Exception {
+    when(settings.getInt(IssueAssignPlugin.PROPERTY_USER_SNAPSHOT_MAX_AGE)).thenReturn(0);
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(sonarUsers);
+
+    final UserDirectory classUnderTest = new UserDirectory(userFinder, new IssueAssignStatistics(), settings, moduleFileSystem);
+    assertThat(classUnderTest.find(EMAIL)).isSameAs(emailUser);
+    assertThat(this.snapshotFile().exists()).isFalse();
+  }
+
+  private File snapshotFile() {
+    return new File(temporaryFolder.getRoot(), UserDirectory.SNAPSHOT_FILE);
+  }
+}
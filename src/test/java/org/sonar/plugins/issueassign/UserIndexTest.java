@@ -0,0 +1,120 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class UserIndexTest {
+
+  @Test
+  public void findsByAnyKeyIgnoringCaseAndWhitespace() {
+    final UserIndex classUnderTest = UserIndex.of(new String[]{"jsmith"}, new String[]{"John.Smith@Corp.com"},
+        new String[]{"John  Smith"});
+
+    assertThat(classUnderTest.getLogin("jsmith")).isEqualTo("jsmith");
+    assertThat(classUnderTest.getLogin("JSmith ")).isEqualTo("jsmith");
+    assertThat(classUnderTest.getLogin("john.smith@corp.com")).isEqualTo("jsmith");
+    assertThat(classUnderTest.getLogin("John.Smith")).isEqualTo("jsmith");
+    assertThat(classUnderTest.getLogin("john\tsmith")).isEqualTo("jsmith");
+    assertThat(classUnderTest.getLogin("john.smith@other.com")).isNull();
+    assertThat(classUnderTest.getLogin(null)).isNull();
+  }
+
+  @Test
+  public void skipsMissingKeys() {
+    final UserIndex classUnderTest = UserIndex.of(new String[]{"jsmith", null}, new String[]{null, "ghost@corp.com"},
+        new String[]{"", "Ghost"});
+
+    assertThat(classUnderTest.size()).isEqualTo(1);
+    assertThat(classUnderTest.getLogin("ghost@corp.com")).isNull();
+  }
+
+  @Test
+  public void strongerKindWins() {
+    // the login of one user is the email local part of another, and the name of a third
+    final UserIndex classUnderTest = UserIndex.of(new String[]{"smith", "jsmith", "john"},
+        new String[]{"", "smith@corp.com", ""}, new String[]{"", "", "Smith"});
+
+    assertThat(classUnderTest.getLogin("smith")).isEqualTo("smith");
+  }
+
+  @Test
+  public void strongerKindWinsWhateverTheOrder() {
+    final UserIndex classUnderTest = UserIndex.of(new String[]{"john", "jsmith", "smith"},
+        new String[]{"", "smith@corp.com", ""}, new String[]{"Smith", "", ""});
+
+    assertThat(classUnderTest.getLogin("smith")).isEqualTo("smith");
+  }
+
+  @Test
+  public void ambiguousKeyMatchesNobody() {
+    final UserIndex classUnderTest = UserIndex.of(new String[]{"jsmith", "jsmith2"},
+        new String[]{"john.smith@corp.com", "john.smith@other.com"}, new String[]{"John Smith", "John Smith"});
+
+    assertThat(classUnderTest.getLogin("john smith")).isNull();
+    assertThat(classUnderTest.getLogin("john.smith")).isNull();
+    assertThat(classUnderTest.getLogin("john.smith@other.com")).isEqualTo("jsmith2");
+  }
+
+  @Test
+  public void sameUserUnderSeveralKeysIsNotAmbiguous() {
+    final UserIndex classUnderTest = UserIndex.of(new String[]{"jsmith"}, new String[]{"jsmith@corp.com"},
+        new String[]{"jsmith"});
+
+    assertThat(classUnderTest.getLogin("jsmith")).isEqualTo("jsmith");
+  }
+
+  @Test
+  public void buildsLargeIndexesInParallel() {
+    final int count = UserIndex.PARALLEL_THRESHOLD * 4;
+    final String[] logins = new String[count];
+    final String[] emails = new String[count];
+    final String[] names = new String[count];
+    for (int i = 0; i < count; i++) {
+      logins[i] = "user" + i;
+      emails[i] = "User" + i + "@Corp.com";
+      names[i] = "User Number " + i;
+    }
+
+    final UserIndex classUnderTest = UserIndex.of(logins, emails, names);
+    // the login and email local part of each user are one key
+    assertThat(classUnderTest.size()).isEqualTo(count * 3);
+    for (int i = 0; i < count; i += 997) {
+      assertThat(classUnderTest.getLogin("user" + i + "@corp.com")).isEqualTo("user" + i);
+      assertThat(classUnderTest.getLogin("user number " + i)).isEqualTo("user" + i);
+    }
+  }
+
+  @Test
+  public void matches() {
+    assertThat(UserIndex.matches("John.Smith@Corp.com", "jsmith", "john.smith@corp.com", null)).isTrue();
+    assertThat(UserIndex.matches("john smith", "jsmith", null, "John Smith")).isTrue();
+    assertThat(UserIndex.matches("jane", "jsmith", "john.smith@corp.com", "John Smith")).isFalse();
+  }
+
+  @Test
+  public void normalise() {
+    assertThat(UserIndex.normalise(" John  Smith\t")).isEqualTo("john smith");
+    assertThat(UserIndex.normalise("john smith")).isEqualTo("john smith");
+    assertThat(UserIndex.normalise("John\nSmith")).isEqualTo("john smith");
+  }
+}
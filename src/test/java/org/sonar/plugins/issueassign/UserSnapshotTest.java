@@ -0,0 +1,141 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.api.user.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserSnapshotTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock User emailUser;
+  @Mock User nonEmailUser;
+
+  private static final long TAKEN_AT = 1389000000000L;
+  private List<User> sonarUsers;
+
+  @Before
+  public void before() {
+    sonarUsers = new ArrayList<User>();
+    sonarUsers.add(emailUser);
+    sonarUsers.add(nonEmailUser);
+    when(emailUser.login()).thenReturn("jdoe");
+    when(emailUser.email()).thenReturn("j.doe@domain.com");
+    when(emailUser.name()).thenReturn("J\u00f6rg Doe");
+    when(nonEmailUser.login()).thenReturn("nomail");
+  }
+
+  @Test
+  public void indexesEveryUser() {
+    final UserSnapshot classUnderTest = UserSnapshot.of(sonarUsers, TAKEN_AT);
+    assertThat(classUnderTest.size()).isEqualTo(2);
+    assertThat(classUnderTest.getLogin("J.Doe@Domain.com")).isEqualTo("jdoe");
+    assertThat(classUnderTest.getLogin("j\u00f6rg doe")).isEqualTo("jdoe");
+    assertThat(classUnderTest.getLogin("NoMail")).isEqualTo("nomail");
+    assertThat(classUnderTest.getLogin("other@domain.com")).isNull();
+  }
+
+  @Test
+  public void writeThenRead() throws Exception {
+    final File file = new File(temporaryFolder.getRoot(), "users.snapshot");
+    final UserSnapshot written = UserSnapshot.of(sonarUsers, TAKEN_AT);
+    written.write(file);
+
+    final UserSnapshot read = UserSnapshot.read(file);
+    assertThat(read.getTakenAt()).isEqualTo(TAKEN_AT);
+    assertThat(read.getLogin("j.doe@domain.com")).isEqualTo("jdoe");
+    assertThat(read.hasSameUsers(written)).isTrue();
+    assertThat(temporaryFolder.getRoot().list()).containsOnly("users.snapshot");
+  }
+
+  @Test
+  public void overwritesPreviousSnapshot() throws Exception {
+    final File file = new File(temporaryFolder.getRoot(), "users.snapshot");
+    UserSnapshot.of(new ArrayList<User>(), TAKEN_AT).write(file);
+    UserSnapshot.of(sonarUsers, TAKEN_AT + 1).write(file);
+
+    final UserSnapshot read = UserSnapshot.read(file);
+    assertThat(read.getTakenAt()).isEqualTo(TAKEN_AT + 1);
+    assertThat(read.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void missingFileIsNoSnapshot() throws Exception {
+    assertThat(UserSnapshot.read(new File(temporaryFolder.getRoot(), "missing.snapshot"))).isNull();
+  }
+
+  @Test(expected = IOException.class)
+  public void corruptRecordsAreDetected() throws Exception {
+    final File file = new File(temporaryFolder.getRoot(), "users.snapshot");
+    UserSnapshot.of(sonarUsers, TAKEN_AT).write(file);
+
+    final RandomAccessFile raw = new RandomAccessFile(file, "rw");
+    try {
+      raw.seek(UserSnapshot.HEADER_BYTES + 3);
+      raw.write('X');
+    } finally {
+      raw.close();
+    }
+    UserSnapshot.read(file);
+  }
+
+  @Test(expected = IOException.class)
+  public void truncatedFileIsDetected() throws Exception {
+    final File file = new File(temporaryFolder.getRoot(), "users.snapshot");
+    UserSnapshot.of(sonarUsers, TAKEN_AT).write(file);
+
+    final RandomAccessFile raw = new RandomAccessFile(file, "rw");
+    try {
+      raw.setLength(raw.length() - 1);
+    } finally {
+      raw.close();
+    }
+    UserSnapshot.read(file);
+  }
+
+  @Test(expected = IOException.class)
+  public void otherFileIsDetected() throws Exception {
+    final File file = temporaryFolder.newFile("other.snapshot");
+    final RandomAccessFile raw = new RandomAccessFile(file, "rw");
+    try {
+      raw.writeBytes("not a snapshot at all");
+    } finally {
+      raw.close();
+    }
+    UserSnapshot.read(file);
+  }
+}
@@ -27,13 +27,19 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.sonar.api.user.User;
 import org.sonar.api.user.UserFinder;
 import org.sonar.api.user.UserQuery;
-import org.sonar.plugins.issueassign.exception.SonarUserNotFoundException;
+import org.sonar.plugins.issueassign.measures.ScmDictionary;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -53,6 +59,8 @@ public class UsersTest {
     sonarUsers = new ArrayList<User>();
     sonarUsers.add(emailUser);
     sonarUsers.add(nonEmailUser);
+    when(emailUser.login()).thenReturn("emailuser");
+    when(nonEmailUser.login()).thenReturn(NON_EMAIL_USERNAME);
   }
 
   @Test
@@ -60,54 +68,177 @@ public class UsersTest {
     when(userFinder.findByLogin(NON_EMAIL_USERNAME)).thenReturn(nonEmailUser);
 
     final Users classUnderTest = new Users(userFinder);
-    final User user = classUnderTest.getSonarUser(NON_EMAIL_USERNAME);
+    final User user = classUnderTest.findSonarUser(NON_EMAIL_USERNAME);
     assertThat(user).isSameAs(nonEmailUser);
   }
 
-  @Test(expected = SonarUserNotFoundException.class)
+  @Test
   public void sonarUserNotFoundAnywhere() throws Exception {
     when(userFinder.findByLogin(NON_EMAIL_USERNAME)).thenReturn(null);
 
     final Users classUnderTest = new Users(userFinder);
-    classUnderTest.getSonarUser(NON_EMAIL_USERNAME);
+    assertThat(classUnderTest.findSonarUser(NON_EMAIL_USERNAME)).isNull();
   }
 
   @Test
-  public void findSonarUserAsEmailAddress() throws SonarUserNotFoundException {
+  public void findSonarUserAsEmailAddress() {
     when(userFinder.findByLogin(EMAIL_USERNAME)).thenReturn(null);
     when(userFinder.find(isA(UserQuery.class))).thenReturn(this.sonarUsers);
     when(emailUser.email()).thenReturn(EMAIL_USERNAME);
     when(nonEmailUser.email()).thenReturn(null);
 
     final Users classUnderTest = new Users(userFinder);
-    final User user = classUnderTest.getSonarUser(EMAIL_USERNAME);
+    final User user = classUnderTest.findSonarUser(EMAIL_USERNAME);
 
     assertThat(user).isSameAs(this.emailUser);
   }
 
   @Test
-  public void findSonarUserAsEmailAddressTwiceToTestCache() throws SonarUserNotFoundException {
+  public void findSonarUserAsEmailAddressIgnoringCase() {
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(this.sonarUsers);
+    when(emailUser.email()).thenReturn(EMAIL_USERNAME);
+
+    final Users classUnderTest = new Users(userFinder);
+    assertThat(classUnderTest.findSonarUser(" UserName@Domain.COM")).isSameAs(this.emailUser);
+  }
+
+  @Test
+  public void findSonarUserByNameOrEmailLocalPart() {
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(this.sonarUsers);
+    when(emailUser.email()).thenReturn("john.smith@domain.com");
+    when(nonEmailUser.name()).thenReturn("Jane Doe");
+
+    final Users classUnderTest = new Users(userFinder);
+    assertThat(classUnderTest.findSonarUser("john.smith")).isSameAs(this.emailUser);
+    assertThat(classUnderTest.findSonarUser("jane  doe")).isSameAs(this.nonEmailUser);
+    verify(userFinder, times(1)).find(isA(UserQuery.class));
+  }
+
+  @Test
+  public void findSonarUserAsEmailAddressTwiceToTestCache() {
     when(userFinder.findByLogin(EMAIL_USERNAME)).thenReturn(null);
     when(userFinder.find(isA(UserQuery.class))).thenReturn(this.sonarUsers);
     when(emailUser.email()).thenReturn(EMAIL_USERNAME);
     when(nonEmailUser.email()).thenReturn(null);
 
     final Users classUnderTest = new Users(userFinder);
-    User user = classUnderTest.getSonarUser(EMAIL_USERNAME);
+    User user = classUnderTest.findSonarUser(EMAIL_USERNAME);
     assertThat(user).isSameAs(this.emailUser);
 
-    user = classUnderTest.getSonarUser(EMAIL_USERNAME);
+    user = classUnderTest.findSonarUser(EMAIL_USERNAME);
     assertThat(user).isSameAs(this.emailUser);
   }
 
-  @Test(expected = SonarUserNotFoundException.class)
-  public void findSonarUserAsEmailAddressNotFound() throws SonarUserNotFoundException {
+  @Test
+  public void findSonarUserAsEmailAddressNotFound() {
     when(userFinder.findByLogin(EMAIL_USERNAME)).thenReturn(null);
     when(userFinder.find(isA(UserQuery.class))).thenReturn(this.sonarUsers);
     when(emailUser.email()).thenReturn(NON_MATCHING_EMAIL);
     when(nonEmailUser.email()).thenReturn(null);
 
     final Users classUnderTest = new Users(userFinder);
-    classUnderTest.getSonarUser(EMAIL_USERNAME);
+    assertThat(classUnderTest.findSonarUser(EMAIL_USERNAME)).isNull();
+  }
+
+  @Test
+  public void findSonarUserFromResolvedAuthors() throws Exception {
+    final List<User> resolvedUsers = new ArrayList<User>();
+    resolvedUsers.add(nonEmailUser);
+    when(nonEmailUser.login()).thenReturn(NON_EMAIL_USERNAME);
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(resolvedUsers);
+
+    final ScmDictionary authors = new ScmDictionary();
+    authors.idOf(NON_EMAIL_USERNAME);
+
+    final Users classUnderTest = new Users(userFinder);
+    classUnderTest.resolveAuthors(authors);
+    classUnderTest.resolveAuthors(authors);
+
+    assertThat(classUnderTest.findSonarUser(NON_EMAIL_USERNAME)).isSameAs(nonEmailUser);
+    verify(userFinder, times(1)).find(isA(UserQuery.class));
+    verify(userFinder, never()).findByLogin(anyString());
+  }
+
+  @Test
+  public void resolvedAuthorIsNotLookedUpAgain() throws Exception {
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(new ArrayList<User>());
+
+    final ScmDictionary authors = new ScmDictionary();
+    authors.idOf(NON_EMAIL_USERNAME);
+
+    final Users classUnderTest = new Users(userFinder);
+    classUnderTest.resolveAuthors(authors);
+
+    assertThat(classUnderTest.findSonarUser(NON_EMAIL_USERNAME)).isNull();
+    verify(userFinder, never()).findByLogin(anyString());
+  }
+
+  @Test
+  public void newAuthorsAreResolvedAlongsideEarlierOnes() throws Exception {
+    final List<User> resolvedUsers = new ArrayList<User>();
+    resolvedUsers.add(nonEmailUser);
+    when(nonEmailUser.login()).thenReturn(NON_EMAIL_USERNAME);
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(resolvedUsers, new ArrayList<User>());
+
+    final ScmDictionary authors = new ScmDictionary();
+    authors.idOf(NON_EMAIL_USERNAME);
+    final Users classUnderTest = new Users(userFinder);
+    classUnderTest.resolveAuthors(authors);
+    authors.idOf(EMAIL_USERNAME);
+    classUnderTest.resolveAuthors(authors);
+
+    assertThat(classUnderTest.findSonarUser(NON_EMAIL_USERNAME)).isSameAs(nonEmailUser);
+    assertThat(classUnderTest.findSonarUser(EMAIL_USERNAME)).isNull();
+    verify(userFinder, never()).findByLogin(anyString());
+  }
+
+  @Test
+  public void unknownUserIsCachedForTheAnalysis() throws Exception {
+    when(userFinder.findByLogin(EMAIL_USERNAME)).thenReturn(null);
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(this.sonarUsers);
+    when(emailUser.email()).thenReturn(NON_MATCHING_EMAIL);
+
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final Users classUnderTest = new Users(userFinder, statistics);
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(classUnderTest.findSonarUser(EMAIL_USERNAME)).isNull();
+    }
+
+    verify(userFinder, times(1)).findByLogin(EMAIL_USERNAME);
+    verify(userFinder, times(1)).find(isA(UserQuery.class));
+    assertThat(statistics.getUnknownUserHits()).isEqualTo(2);
+    assertThat(statistics.getUnknownUserMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void concurrentResolveAndLookup() throws Exception {
+    final int authorCount = 64;
+    final List<User> authorUsers = new ArrayList<User>();
+    for (int i = 0; i < authorCount; i++) {
+      final User user = mock(User.class);
+      when(user.login()).thenReturn("author" + i);
+      authorUsers.add(user);
+    }
+    when(userFinder.find(isA(UserQuery.class))).thenReturn(authorUsers);
+
+    final ScmDictionary authors = new ScmDictionary();
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final Users classUnderTest = new Users(userFinder, statistics);
+
+    Stress.run(Stress.THREADS, new Stress.Task() {
+      public void run(final int thread) {
+        for (int i = 0; i < authorCount; i++) {
+          final int author = (i + thread * 8) % authorCount;
+          authors.idOf("author" + author);
+          classUnderTest.resolveAuthors(authors);
+          assertThat(classUnderTest.findSonarUser("author" + author)).isSameAs(authorUsers.get(author));
+          assertThat(classUnderTest.findSonarUser("ghost" + thread)).isNull();
+        }
+      }
+    });
+
+    assertThat(statistics.getUnknownUserMisses()).isEqualTo(Stress.THREADS);
+    assertThat(statistics.getUnknownUserHits()).isEqualTo(Stress.THREADS * (authorCount - 1));
   }
 }
@@ -0,0 +1,252 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.sonar.plugins.issueassign.measures.ScmMeasuresFixture.measures;
+
+public class BlameCacheTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final long MAX_BYTES = 1024L * 1024L;
+  private static final String KEY1 = "project:src/One.java";
+  private static final String KEY2 = "project:src/Two.java";
+  private static final String KEY3 = "project:src/Three.java";
+
+  private File file;
+  private IssueAssignStatistics statistics;
+
+  @Before
+  public void beforeTest() throws Exception {
+    this.file = new File(this.temporaryFolder.getRoot(), BlameCache.CACHE_FILE);
+    this.statistics = new IssueAssignStatistics();
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    final BlameCache first = this.start(MAX_BYTES);
+    first.put(KEY1, first.digest("one"), measures(KEY1, "author1", "author2"));
+    first.stop();
+    assertThat(this.file.isFile()).isTrue();
+
+    final BlameCache second = this.start(MAX_BYTES);
+    assertThat(second.size()).isEqualTo(1);
+    final ScmMeasures cached = second.get(KEY1, second.digest("one"), new ScmDictionary(), new ScmDictionary());
+    second.stop();
+
+    assertThat(cached).isNotNull();
+    assertThat(cached.getKey()).isEqualTo(KEY1);
+    assertThat(cached.getLineCount()).isEqualTo(4);
+    assertThat(cached.getAuthor(1)).isEqualTo("author1");
+    assertThat(cached.getAuthor(2)).isEqualTo("author1");
+    assertThat(cached.getAuthor(3)).isEqualTo("author2");
+    assertThat(cached.getAuthor(4)).isNull();
+    assertThat(cached.getRevision(3)).isEqualTo("r2");
+    assertThat(cached.getLastCommit(3)).isEqualTo(2000L);
+    assertThat(cached.getLastCommit(4)).isEqualTo(ScmMeasures.NO_DATE);
+    assertThat(cached.getLastCommit().getAuthor()).isEqualTo("author2");
+    assertThat(this.statistics.getBlameCacheHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void testChangedDigestMisses() throws Exception {
+    final BlameCache first = this.start(MAX_BYTES);
+    first.put(KEY1, first.digest("one"), measures(KEY1, "author1", "author2"));
+    first.stop();
+
+    final BlameCache second = this.start(MAX_BYTES);
+    assertThat(second.get(KEY1, second.digest("changed"), new ScmDictionary(), new ScmDictionary())).isNull();
+    assertThat(second.get(KEY2, second.digest("one"), new ScmDictionary(), new ScmDictionary())).isNull();
+    second.stop();
+    assertThat(this.statistics.getBlameCacheHits()).isEqualTo(0);
+    assertThat(this.statistics.getBlameCacheMisses()).isEqualTo(2);
+  }
+
+  @Test
+  public void testPartialRecordDropped() throws Exception {
+    final BlameCache first = this.start(MAX_BYTES);
+    first.put(KEY1, first.digest("one"), measures(KEY1, "author1", "author2"));
+    first.stop();
+    final BlameCache second = this.start(MAX_BYTES);
+    second.put(KEY2, second.digest("two"), measures(KEY2, "author2", "author3"));
+    second.stop();
+
+    // an append cut short
+    truncate(this.file, this.file.length() - 3);
+
+    final BlameCache third = this.start(MAX_BYTES);
+    assertThat(third.size()).isEqualTo(1);
+    assertThat(third.get(KEY1, third.digest("one"), new ScmDictionary(), new ScmDictionary())).isNotNull();
+    third.put(KEY3, third.digest("three"), measures(KEY3, "author3", "author1"));
+    third.stop();
+
+    final BlameCache fourth = this.start(MAX_BYTES);
+    assertThat(fourth.size()).isEqualTo(2);
+    assertThat(fourth.get(KEY3, fourth.digest("three"), new ScmDictionary(), new ScmDictionary()).getAuthor(1)).isEqualTo("author3");
+    fourth.stop();
+  }
+
+  @Test
+  public void testCorruptRecordMisses() throws Exception {
+    final BlameCache first = this.start(MAX_BYTES);
+    first.put(KEY1, first.digest("one"), measures(KEY1, "author1", "author2"));
+    first.stop();
+
+    final RandomAccessFile output = new RandomAccessFile(this.file, "rw");
+    try {
+      output.seek(output.length() - 1);
+      final int last = output.read();
+      output.seek(output.length() - 1);
+      output.write(~last);
+    } finally {
+      output.close();
+    }
+
+    final BlameCache second = this.start(MAX_BYTES);
+    assertThat(second.get(KEY1, second.digest("one"), new ScmDictionary(), new ScmDictionary())).isNull();
+    assertThat(this.statistics.getBlameCacheMisses()).isEqualTo(1);
+    second.stop();
+  }
+
+  @Test
+  public void testRewriteKeepsUsedRecordsWithinBound() throws Exception {
+    final BlameCache first = this.start(MAX_BYTES);
+    first.put(KEY1, first.digest("one"), measures(KEY1, "author1", "author2"));
+    first.put(KEY2, first.digest("two"), measures(KEY2, "author2", "author3"));
+    first.stop();
+
+    final ScmMeasures third = measures(KEY3, "author3", "author1");
+    final long maxBytes = BlameCache.HEADER_BYTES
+        + BlameCache.encode(KEY1, first.digest("one"), measures(KEY1, "author1", "author2")).length
+        + BlameCache.encode(KEY3, first.digest("three"), third).length;
+    final BlameCache second = this.start(maxBytes);
+    assertThat(second.get(KEY1, second.digest("one"), new ScmDictionary(), new ScmDictionary())).isNotNull();
+    second.put(KEY3, second.digest("three"), third);
+    second.stop();
+    assertThat(this.file.length()).isEqualTo(maxBytes);
+
+    final BlameCache fourth = this.start(maxBytes);
+    assertThat(fourth.size()).isEqualTo(2);
+    assertThat(fourth.get(KEY1, fourth.digest("one"), new ScmDictionary(), new ScmDictionary())).isNotNull();
+    assertThat(fourth.get(KEY2, fourth.digest("two"), new ScmDictionary(), new ScmDictionary())).isNull();
+    assertThat(fourth.get(KEY3, fourth.digest("three"), new ScmDictionary(), new ScmDictionary())).isNotNull();
+    fourth.stop();
+  }
+
+  @Test
+  public void testRecordsAppendedAsAddedUpToTheBound() throws Exception {
+    final ScmMeasures one = measures(KEY1, "author1", "author2");
+    final long maxBytes = BlameCache.HEADER_BYTES + BlameCache.encode(KEY1, new byte[20], one).length;
+    final BlameCache first = this.start(maxBytes);
+    first.put(KEY1, first.digest("one"), one);
+    assertThat(this.file.length()).isEqualTo(maxBytes);
+    first.put(KEY2, first.digest("two"), measures(KEY2, "author2", "author3"));
+    first.put(KEY1, first.digest("changed"), one);
+    assertThat(first.size()).isEqualTo(1);
+    assertThat(this.file.length()).isEqualTo(maxBytes);
+    first.stop();
+
+    final BlameCache second = this.start(maxBytes);
+    assertThat(second.get(KEY1, second.digest("one"), new ScmDictionary(), new ScmDictionary())).isNotNull();
+    second.stop();
+  }
+
+  @Test
+  public void testDigest() throws Exception {
+    final BlameCache cache = this.start(MAX_BYTES);
+    assertThat(cache.digest("one", "two")).isEqualTo(cache.digest("one", "two"));
+    assertThat(cache.digest("one", "two")).isNotEqualTo(cache.digest("two", "one"));
+    assertThat(cache.digest("one", "two")).isNotEqualTo(cache.digest("onet", "wo"));
+    assertThat(cache.digest("one", null)).isNotEqualTo(cache.digest("one", ""));
+
+    // the SHA-1 of each length and characters, ASCII ones in a byte, however many chunks a value is taken in
+    final StringBuilder value = new StringBuilder();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (int i = 0; i < 3000; i++) {
+      value.append((char) ('a' + i % 26)).append('\u00e9');
+      bytes.write('a' + i % 26);
+      bytes.write(new byte[] {(byte) 0xFF, 0x00, (byte) 0xE9});
+    }
+    final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+    sha1.update(ByteBuffer.allocate(4).putInt(value.length()).array());
+    sha1.update(bytes.toByteArray());
+    assertThat(cache.digest(value.toString())).isEqualTo(sha1.digest());
+    cache.stop();
+  }
+
+  @Test
+  public void testUnreadableFileReplaced() throws Exception {
+    final RandomAccessFile output = new RandomAccessFile(this.file, "rw");
+    try {
+      output.writeInt(0);
+    } finally {
+      output.close();
+    }
+
+    final BlameCache first = this.start(MAX_BYTES);
+    assertThat(first.size()).isEqualTo(0);
+    first.put(KEY1, first.digest("one"), measures(KEY1, "author1", "author2"));
+    first.stop();
+
+    final BlameCache second = this.start(MAX_BYTES);
+    assertThat(second.get(KEY1, second.digest("one"), new ScmDictionary(), new ScmDictionary())).isNotNull();
+    second.stop();
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    final BlameCache cache = this.start(0);
+    assertThat(cache.isEnabled()).isFalse();
+    assertThat(cache.digest("one")).isNull();
+    cache.put(KEY1, new byte[20], measures(KEY1, "author1", "author2"));
+    assertThat(cache.get(KEY1, new byte[20], new ScmDictionary(), new ScmDictionary())).isNull();
+    cache.stop();
+    assertThat(this.file.exists()).isFalse();
+    assertThat(this.statistics.getBlameCacheMisses()).isEqualTo(0);
+  }
+
+  private BlameCache start(final long maxBytes) {
+    final BlameCache cache = new BlameCache(this.file, maxBytes, this.statistics);
+    cache.start();
+    return cache;
+  }
+
+  private static void truncate(final File file, final long length) throws Exception {
+    final RandomAccessFile output = new RandomAccessFile(file, "rw");
+    try {
+      output.setLength(length);
+    } finally {
+      output.close();
+    }
+  }
+}
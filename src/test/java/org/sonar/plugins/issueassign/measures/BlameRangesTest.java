@@ -0,0 +1,82 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class BlameRangesTest {
+
+  private static final int NO_ID = ScmDictionary.NO_ID;
+  private static final long NO_DATE = ScmMeasures.NO_DATE;
+
+  @Test
+  public void testCollapseRuns() throws Exception {
+    final BlameRanges classUnderTest = new BlameRanges(
+        new int[]{NO_ID, 1, 1, 1, 2, 2, 1},
+        new int[]{NO_ID, 10, 10, 10, 20, 20, 10},
+        new long[]{NO_DATE, 100L, 100L, 100L, 200L, 200L, 100L});
+
+    assertThat(classUnderTest.getLineCount()).isEqualTo(6);
+    assertThat(classUnderTest.size()).isEqualTo(3);
+    assertThat(classUnderTest.getStart(1)).isEqualTo(4);
+    assertThat(classUnderTest.getEnd(1)).isEqualTo(5);
+    assertThat(classUnderTest.getEnd(2)).isEqualTo(6);
+  }
+
+  @Test
+  public void testLookupByLine() throws Exception {
+    final BlameRanges classUnderTest = new BlameRanges(
+        new int[]{NO_ID, 1, 1, 2, 2, 3},
+        new int[]{NO_ID, 10, 10, 20, 20, 30},
+        new long[]{NO_DATE, 100L, 100L, 200L, 200L, 300L});
+
+    assertThat(classUnderTest.authorIdAt(1)).isEqualTo(1);
+    assertThat(classUnderTest.authorIdAt(2)).isEqualTo(1);
+    assertThat(classUnderTest.revisionIdAt(4)).isEqualTo(20);
+    assertThat(classUnderTest.timeAt(5)).isEqualTo(300L);
+
+    assertThat(classUnderTest.indexOf(0)).isEqualTo(-1);
+    assertThat(classUnderTest.indexOf(6)).isEqualTo(-1);
+    assertThat(classUnderTest.authorIdAt(6)).isEqualTo(NO_ID);
+    assertThat(classUnderTest.timeAt(0)).isEqualTo(NO_DATE);
+  }
+
+  @Test
+  public void testArraysOfDifferentLengths() throws Exception {
+    final BlameRanges classUnderTest = new BlameRanges(
+        new int[]{NO_ID, 1, 1, 1},
+        new int[]{NO_ID, 10},
+        new long[]{NO_DATE, 100L, 100L});
+
+    assertThat(classUnderTest.getLineCount()).isEqualTo(3);
+    assertThat(classUnderTest.revisionIdAt(3)).isEqualTo(NO_ID);
+    assertThat(classUnderTest.timeAt(3)).isEqualTo(NO_DATE);
+    assertThat(classUnderTest.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    final BlameRanges classUnderTest = new BlameRanges(new int[]{NO_ID}, new int[]{NO_ID}, new long[]{NO_DATE});
+    assertThat(classUnderTest.size()).isEqualTo(0);
+    assertThat(classUnderTest.authorIdAt(1)).isEqualTo(NO_ID);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.sonar.plugins.issueassign.measures.ScmMeasuresFixture.measures;
+
+public class BlameSnapshotTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final String KEY1 = "project:src/One.java";
+  private static final String KEY2 = "project:src/\u00C9t\u00E9.java";
+
+  private File file;
+
+  @Before
+  public void beforeTest() throws Exception {
+    this.file = new File(this.temporaryFolder.getRoot(), "blame.snapshot");
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    final BlameSnapshotWriter writer = new BlameSnapshotWriter(this.temporaryFolder.newFolder());
+    writer.add(measures(KEY1, "user1", "user2"));
+    writer.add(measures(KEY2, "user2", "user3"));
+    // the last ranges of a resource win
+    writer.add(measures(KEY1, "user3", "user1"));
+    writer.write(this.file);
+    writer.close();
+
+    final ScmDictionary authors = new ScmDictionary();
+    final BlameSnapshot snapshot = BlameSnapshot.open(this.file, authors, new ScmDictionary());
+    assertThat(snapshot.size()).isEqualTo(2);
+
+    final ScmMeasures first = snapshot.getMeasures(KEY1);
+    assertThat(first.getKey()).isEqualTo(KEY1);
+    assertThat(first.getLineCount()).isEqualTo(4);
+    assertThat(first.getAuthor(1)).isEqualTo("user3");
+    assertThat(first.getAuthor(2)).isEqualTo("user3");
+    assertThat(first.getAuthor(3)).isEqualTo("user1");
+    assertThat(first.getAuthor(4)).isNull();
+    assertThat(first.getAuthor(5)).isNull();
+    assertThat(first.getRevision(3)).isEqualTo("r2");
+    assertThat(first.getLastCommit(3)).isEqualTo(2000L);
+    assertThat(first.getLastCommit(4)).isEqualTo(ScmMeasures.NO_DATE);
+    assertThat(first.getLastCommit().getAuthor()).isEqualTo("user1");
+    assertThat(first.getLastCommit().getLines()).containsExactly(3);
+
+    final ScmMeasures second = snapshot.getMeasures(KEY2);
+    assertThat(second.getAuthor(1)).isEqualTo("user2");
+    assertThat(second.getAuthors()).isSameAs(authors);
+    assertThat(second.getEstimatedBytes()).isLessThan(measures(KEY2, "user2", "user3").getEstimatedBytes());
+  }
+
+  @Test
+  public void testUnknownResource() throws Exception {
+    final BlameSnapshotWriter writer = new BlameSnapshotWriter(this.temporaryFolder.newFolder());
+    writer.add(measures(KEY1, "user1", "user2"));
+    writer.write(this.file);
+    writer.close();
+
+    final BlameSnapshot snapshot = BlameSnapshot.open(this.file, new ScmDictionary(), new ScmDictionary());
+    assertThat(snapshot.getMeasures("project:src/Other.java")).isNull();
+    assertThat(snapshot.getMeasures("")).isNull();
+  }
+
+  @Test
+  public void testEmptySnapshot() throws Exception {
+    final BlameSnapshotWriter writer = new BlameSnapshotWriter(this.temporaryFolder.newFolder());
+    writer.write(this.file);
+    writer.close();
+
+    final BlameSnapshot snapshot = BlameSnapshot.open(this.file, new ScmDictionary(), new ScmDictionary());
+    assertThat(snapshot.size()).isEqualTo(0);
+    assertThat(snapshot.getMeasures(KEY1)).isNull();
+  }
+
+  @Test
+  public void testSpoolDeletedOnClose() throws Exception {
+    final File directory = this.temporaryFolder.newFolder();
+    final BlameSnapshotWriter writer = new BlameSnapshotWriter(directory);
+    writer.add(measures(KEY1, "user1", "user2"));
+    assertThat(directory.list()).hasSize(1);
+    writer.close();
+    assertThat(directory.list()).isEmpty();
+  }
+
+  @Test(expected = IOException.class)
+  public void testCorruptTables() throws Exception {
+    final BlameSnapshotWriter writer = new BlameSnapshotWriter(this.temporaryFolder.newFolder());
+    writer.add(measures(KEY1, "user1", "user2"));
+    writer.write(this.file);
+    writer.close();
+
+    final RandomAccessFile output = new RandomAccessFile(this.file, "rw");
+    try {
+      output.seek(BlameSnapshot.HEADER_BYTES + 4);
+      final int value = output.read();
+      output.seek(BlameSnapshot.HEADER_BYTES + 4);
+      output.write(~value);
+    } finally {
+      output.close();
+    }
+    BlameSnapshot.open(this.file, new ScmDictionary(), new ScmDictionary());
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncated() throws Exception {
+    final BlameSnapshotWriter writer = new BlameSnapshotWriter(this.temporaryFolder.newFolder());
+    writer.add(measures(KEY1, "user1", "user2"));
+    writer.write(this.file);
+    writer.close();
+
+    final RandomAccessFile output = new RandomAccessFile(this.file, "rw");
+    try {
+      output.setLength(BlameSnapshot.HEADER_BYTES + 2);
+    } finally {
+      output.close();
+    }
+    BlameSnapshot.open(this.file, new ScmDictionary(), new ScmDictionary());
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DeflatedRangesTest {
+
+  private static final int NO_ID = ScmDictionary.NO_ID;
+  private static final long NO_DATE = ScmMeasures.NO_DATE;
+
+  @Test
+  public void testInflateRestoresRanges() throws Exception {
+    final BlameRanges ranges = new BlameRanges(
+        new int[]{NO_ID, 1, 1, NO_ID, 2, 2, 1},
+        new int[]{NO_ID, 10, 10, NO_ID, 20, 20, 10},
+        new long[]{NO_DATE, 100L, 100L, NO_DATE, 200L, 200L, 100L});
+
+    final DeflatedRanges classUnderTest = DeflatedRanges.of(ranges);
+    assertThat(classUnderTest.size()).isEqualTo(4);
+
+    final BlameRanges inflated = classUnderTest.inflate();
+    assertThat(inflated.getLineCount()).isEqualTo(6);
+    assertThat(inflated.size()).isEqualTo(ranges.size());
+    for (int index = 0; index < ranges.size(); index++) {
+      assertThat(inflated.getStart(index)).isEqualTo(ranges.getStart(index));
+      assertThat(inflated.getAuthorId(index)).isEqualTo(ranges.getAuthorId(index));
+      assertThat(inflated.getRevisionId(index)).isEqualTo(ranges.getRevisionId(index));
+      assertThat(inflated.getTime(index)).isEqualTo(ranges.getTime(index));
+    }
+    assertThat(inflated.authorIdAt(3)).isEqualTo(NO_ID);
+    assertThat(inflated.timeAt(5)).isEqualTo(200L);
+  }
+
+  @Test
+  public void testDeflateShrinksManyRanges() throws Exception {
+    final int lines = 1000;
+    final int[] authorIds = new int[lines + 1];
+    final int[] revisionIds = new int[lines + 1];
+    final long[] times = new long[lines + 1];
+    for (int line = 1; line <= lines; line++) {
+      authorIds[line] = line % 5;
+      revisionIds[line] = line % 5;
+      times[line] = 1000L * (line % 5);
+    }
+    final BlameRanges ranges = new BlameRanges(authorIds, revisionIds, times);
+
+    final DeflatedRanges classUnderTest = DeflatedRanges.of(ranges);
+    assertThat(classUnderTest.getEstimatedBytes()).isLessThan(ranges.getEstimatedBytes() / 4);
+    assertThat(classUnderTest.inflate().revisionIdAt(lines)).isEqualTo(0);
+  }
+
+  @Test
+  public void testEmptyRanges() throws Exception {
+    final BlameRanges inflated = DeflatedRanges.of(new BlameRanges(new int[1], new int[1], new long[1])).inflate();
+    assertThat(inflated.size()).isEqualTo(0);
+    assertThat(inflated.getLineCount()).isEqualTo(0);
+  }
+}
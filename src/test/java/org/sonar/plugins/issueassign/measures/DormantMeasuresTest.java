@@ -0,0 +1,76 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.junit.Test;
+
+import java.util.zip.Deflater;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DormantMeasuresTest {
+
+  private static final String AUTHORS = "1=user1;2=Ren\u00E9e;3=user1";
+  private static final String DATES = "1=2013-01-31T12:12:12-0800;2=2012-01-31T12:12:12-0800;3=2013-01-31T12:12:12-0800";
+  private static final String REVISIONS = "1=1;2=2;3=1";
+
+  @Test
+  public void testInflateRestoresMeasures() throws Exception {
+    final DormantMeasures classUnderTest = DormantMeasures.of(Deflater.BEST_SPEED, AUTHORS, DATES, REVISIONS);
+
+    assertThat(classUnderTest.getMeasureData()).containsOnly(AUTHORS, DATES, REVISIONS);
+    assertThat(classUnderTest.getMeasureData()[1]).isEqualTo(DATES);
+    assertThat(classUnderTest.getRawLength()).isEqualTo(AUTHORS.length() + DATES.length() + REVISIONS.length());
+  }
+
+  @Test
+  public void testNullMeasure() throws Exception {
+    final String[] measureData = DormantMeasures.of(Deflater.BEST_SPEED, AUTHORS, null, "").getMeasureData();
+
+    assertThat(measureData).hasSize(3);
+    assertThat(measureData[0]).isEqualTo(AUTHORS);
+    assertThat(measureData[1]).isNull();
+    assertThat(measureData[2]).isEmpty();
+  }
+
+  @Test
+  public void testNoCompressionHoldsMeasures() throws Exception {
+    final DormantMeasures classUnderTest = DormantMeasures.of(Deflater.NO_COMPRESSION, AUTHORS, null, REVISIONS);
+
+    assertThat(classUnderTest.getMeasureData()[0]).isSameAs(AUTHORS);
+    assertThat(classUnderTest.getMeasureData()[1]).isNull();
+    assertThat(classUnderTest.getRawLength()).isEqualTo(AUTHORS.length() + REVISIONS.length());
+    assertThat(classUnderTest.getEstimatedBytes()).isGreaterThan(2L * classUnderTest.getRawLength());
+  }
+
+  @Test
+  public void testDeflateShrinksRepeatedMeasures() throws Exception {
+    final StringBuilder dates = new StringBuilder();
+    for (int line = 1; line <= 1000; line++) {
+      dates.append(line).append("=2013-01-31T12:12:12-0800;");
+    }
+
+    final DormantMeasures classUnderTest = DormantMeasures.of(Deflater.BEST_SPEED, dates.toString());
+    assertThat(classUnderTest.getEstimatedBytes()).isLessThan(classUnderTest.getRawLength() / 4);
+    assertThat(classUnderTest.getEstimatedBytes())
+        .isLessThan(DormantMeasures.of(Deflater.NO_COMPRESSION, dates.toString()).getEstimatedBytes());
+    assertThat(classUnderTest.getMeasureData()[0]).isEqualTo(dates.toString());
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class LastCommitTest {
+
+  private static final long NO_DATE = ScmMeasures.NO_DATE;
+
+  private static final String DATE_STRING1 = "2013-01-31T12:12:12-0800";
+  private static final String DATE_STRING2 = "2014-01-01T12:12:12-0800";
+
+  private static final String AUTHOR1 = "author1";
+  private static final String AUTHOR2 = "author2";
+
+  @Test
+  public void testLastCommitWithUniqueAuthor() throws Exception {
+    final LastCommit classUnderTest = lastCommit(
+        new String[]{null, AUTHOR1, AUTHOR2, AUTHOR2},
+        new long[]{NO_DATE, 1000L, 2000L, 2000L},
+        new String[]{null, "r1", "r2", "r2"});
+
+    assertThat(classUnderTest.getDate()).isEqualTo(new Date(2000L));
+    assertThat(classUnderTest.getLines()).containsOnly(2, 3);
+    assertThat(classUnderTest.hasUniqueAuthor()).isTrue();
+    assertThat(classUnderTest.getAuthor()).isEqualTo(AUTHOR2);
+  }
+
+  @Test
+  public void testLastCommitWithoutUniqueAuthor() throws Exception {
+    // lines of the same revision blamed on different authors
+    final LastCommit classUnderTest = lastCommit(
+        new String[]{null, AUTHOR1, AUTHOR2},
+        new long[]{NO_DATE, 2000L, 2000L},
+        new String[]{null, "r2", "r2"});
+
+    assertThat(classUnderTest.getLines()).hasSize(2);
+    assertThat(classUnderTest.hasUniqueAuthor()).isFalse();
+    assertThat(classUnderTest.getAuthor()).isNull();
+  }
+
+  @Test
+  public void testLastCommitByRevision() throws Exception {
+    // r1 and r2 were committed at the same second, but only r2 touched lines 1 and 2
+    final LastCommit classUnderTest = new ScmMeasures("key",
+        "1=" + AUTHOR2 + ";2=" + AUTHOR2 + ";3=" + AUTHOR2,
+        "1=" + DATE_STRING2 + ";2=" + DATE_STRING2 + ";3=" + DATE_STRING1,
+        "1=r2;2=r2;3=r1").getLastCommit();
+
+    assertThat(classUnderTest.getRevision()).isEqualTo("r2");
+    assertThat(classUnderTest.getLines()).containsOnly(1, 2);
+    assertThat(classUnderTest.hasUniqueAuthor()).isTrue();
+    assertThat(classUnderTest.getAuthor()).isEqualTo(AUTHOR2);
+  }
+
+  @Test
+  public void testLastCommitByRevisionWithSameTimestampDifferentAuthors() throws Exception {
+    final LastCommit classUnderTest = new ScmMeasures("key",
+        "1=" + AUTHOR1 + ";2=" + AUTHOR2 + ";3=" + AUTHOR1,
+        "1=" + DATE_STRING1 + ";2=" + DATE_STRING2 + ";3=" + DATE_STRING2,
+        "1=r1;2=r2;3=r3").getLastCommit();
+
+    assertThat(classUnderTest.hasUniqueAuthor()).isFalse();
+    assertThat(classUnderTest.getAuthor()).isNull();
+  }
+
+  @Test
+  public void testLastCommitAuthorPerResource() throws Exception {
+    // r1 is blamed on another author on one line of the first resource only
+    final ScmDictionary authors = new ScmDictionary();
+    final ScmDictionary revisions = new ScmDictionary();
+    final LastCommit first = ScmMeasures.of("first", new String[]{null, AUTHOR1, AUTHOR2},
+        new long[]{NO_DATE, 2000L, 2000L}, new String[]{null, "r1", "r1"}, authors, revisions).getLastCommit();
+    final LastCommit second = ScmMeasures.of("second", new String[]{null, AUTHOR1, AUTHOR1},
+        new long[]{NO_DATE, 2000L, 2000L}, new String[]{null, "r1", "r1"}, authors, revisions).getLastCommit();
+
+    assertThat(first.hasUniqueAuthor()).isFalse();
+    assertThat(second.getRevision()).isEqualTo("r1");
+    assertThat(second.hasUniqueAuthor()).isTrue();
+    assertThat(second.getAuthor()).isEqualTo(AUTHOR1);
+  }
+
+  @Test
+  public void testLastCommitWithoutLines() throws Exception {
+    final LastCommit classUnderTest = lastCommit(new String[1], new long[]{NO_DATE}, new String[1]);
+    assertThat(classUnderTest.getDate()).isNull();
+    assertThat(classUnderTest.getLines()).isEmpty();
+    assertThat(classUnderTest.getAuthor()).isNull();
+  }
+
+  private static LastCommit lastCommit(final String[] authorsByLine, final long[] lastCommitsByLine,
+                                       final String[] revisionsByLine) {
+    return ScmMeasures.of("key", authorsByLine, lastCommitsByLine, revisionsByLine, new ScmDictionary(),
+        new ScmDictionary()).getLastCommit();
+  }
+}
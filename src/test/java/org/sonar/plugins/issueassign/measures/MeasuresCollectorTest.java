@@ -19,7 +19,9 @@
  */
 package org.sonar.plugins.issueassign.measures;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -29,21 +31,29 @@ import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
+import org.sonar.plugins.issueassign.UserDirectory;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
 
+import java.io.File;
 import java.util.Map;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class MeasuresCollectorTest {
 
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Mock private Settings settings;
   @Mock private Resource resource;
   @Mock private DecoratorContext decoratorContext;
   @Mock private Measure authorByLineMeasure;
   @Mock private Measure commitsByLineMeasure;
   @Mock private Measure revisionsByLineMeasure;
+  @Mock private UserDirectory userDirectory;
 
   private static final String EFFECTIVE_KEY = "effectiveKey";
   private static final String AUTHOR_MEASURE_DATA = "1=user1;2=user2";
@@ -74,6 +84,262 @@ public class MeasuresCollectorTest {
     assertThat(measure.getAuthorsByLine()).containsKey(2).containsValue("user2");
   }
 
+  @Test
+  public void testRelease() throws Exception {
+    when(resource.getScope()).thenReturn(Scopes.FILE);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_AUTHORS_BY_LINE)).thenReturn(authorByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE)).thenReturn(commitsByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_REVISIONS_BY_LINE)).thenReturn(revisionsByLineMeasure);
+
+    when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY);
+    when(authorByLineMeasure.getData()).thenReturn(AUTHOR_MEASURE_DATA);
+    when(commitsByLineMeasure.getData()).thenReturn(COMMITS_MEASURE_DATA);
+    when(revisionsByLineMeasure.getData()).thenReturn(REVISIONS_MEASURE_DATA);
+
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final MeasuresCollector classUnderTest = new MeasuresCollector(settings, statistics, null, null, null);
+    classUnderTest.decorate(resource, decoratorContext);
+    assertThat(classUnderTest.getResources()).hasSize(1);
+    assertThat(statistics.getResourcesHeld()).isEqualTo(1);
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(classUnderTest.getResources().get(EFFECTIVE_KEY).getEstimatedBytes());
+
+    classUnderTest.release(EFFECTIVE_KEY);
+    assertThat(classUnderTest.getResources()).isEmpty();
+    assertThat(statistics.getResourcesHeld()).isEqualTo(0);
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDecorateWithParseThreads() throws Exception {
+    when(settings.getInt(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_PARSE_THREADS)).thenReturn(2);
+    when(resource.getScope()).thenReturn(Scopes.FILE);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_AUTHORS_BY_LINE)).thenReturn(authorByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE)).thenReturn(commitsByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_REVISIONS_BY_LINE)).thenReturn(revisionsByLineMeasure);
+
+    when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY);
+    when(authorByLineMeasure.getData()).thenReturn(AUTHOR_MEASURE_DATA);
+    when(commitsByLineMeasure.getData()).thenReturn(COMMITS_MEASURE_DATA);
+    when(revisionsByLineMeasure.getData()).thenReturn(REVISIONS_MEASURE_DATA);
+
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final MeasuresCollector classUnderTest = new MeasuresCollector(settings, statistics, null, null, null);
+    try {
+      classUnderTest.decorate(resource, decoratorContext);
+
+      final ScmMeasures measure = classUnderTest.getResources().get(EFFECTIVE_KEY);
+      assertThat(measure.getAuthor(1)).isEqualTo("user1");
+      assertThat(measure.getLastCommit().getAuthor()).isEqualTo("user1");
+      assertThat(statistics.getResourcesHeld()).isEqualTo(1);
+      assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(measure.getEstimatedBytes());
+
+      classUnderTest.release(EFFECTIVE_KEY);
+      assertThat(statistics.getResourcesHeld()).isEqualTo(0);
+      assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(0);
+    } finally {
+      classUnderTest.stop();
+    }
+  }
+
+  @Test
+  public void testDecorateWithBlameCache() throws Exception {
+    when(resource.getScope()).thenReturn(Scopes.FILE);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_AUTHORS_BY_LINE)).thenReturn(authorByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE)).thenReturn(commitsByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_REVISIONS_BY_LINE)).thenReturn(revisionsByLineMeasure);
+
+    when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY);
+    when(authorByLineMeasure.getData()).thenReturn(AUTHOR_MEASURE_DATA);
+    when(commitsByLineMeasure.getData()).thenReturn(COMMITS_MEASURE_DATA);
+    when(revisionsByLineMeasure.getData()).thenReturn(REVISIONS_MEASURE_DATA);
+
+    final File file = new File(temporaryFolder.getRoot(), BlameCache.CACHE_FILE);
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final BlameCache firstCache = new BlameCache(file, 1024L * 1024L, statistics);
+    firstCache.start();
+    new MeasuresCollector(settings, statistics, null, firstCache, null).decorate(resource, decoratorContext);
+    firstCache.stop();
+    assertThat(statistics.getParse().getCount()).isEqualTo(1);
+
+    final BlameCache secondCache = new BlameCache(file, 1024L * 1024L, statistics);
+    secondCache.start();
+    final MeasuresCollector classUnderTest = new MeasuresCollector(settings, statistics, null, secondCache, null);
+    classUnderTest.decorate(resource, decoratorContext);
+    secondCache.stop();
+
+    final ScmMeasures measure = classUnderTest.getResources().get(EFFECTIVE_KEY);
+    assertThat(measure.getAuthor(1)).isEqualTo("user1");
+    assertThat(measure.getRevision(2)).isEqualTo("2");
+    assertThat(measure.getLastCommit().getAuthor()).isEqualTo("user1");
+    assertThat(statistics.getParse().getCount()).isEqualTo(1);
+    assertThat(statistics.getBlameCacheHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void testExportAndImportSnapshot() throws Exception {
+    final File snapshot = new File(temporaryFolder.getRoot(), "blame.snapshot");
+    when(settings.getString(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT_EXPORT))
+        .thenReturn(snapshot.getPath());
+    when(resource.getScope()).thenReturn(Scopes.FILE);
+    when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_AUTHORS_BY_LINE)).thenReturn(authorByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE)).thenReturn(commitsByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_REVISIONS_BY_LINE)).thenReturn(revisionsByLineMeasure);
+    when(authorByLineMeasure.getData()).thenReturn(AUTHOR_MEASURE_DATA);
+    when(commitsByLineMeasure.getData()).thenReturn(COMMITS_MEASURE_DATA);
+    when(revisionsByLineMeasure.getData()).thenReturn(REVISIONS_MEASURE_DATA);
+
+    final MeasuresCollector exporter = new MeasuresCollector(settings);
+    exporter.start();
+    exporter.decorate(resource, decoratorContext);
+    exporter.stop();
+    assertThat(snapshot.isFile()).isTrue();
+
+    // a later analysis, without SCM measures
+    when(settings.getString(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT_EXPORT)).thenReturn(null);
+    when(settings.getString(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT))
+        .thenReturn(snapshot.getPath());
+    when(authorByLineMeasure.getData()).thenReturn(null);
+
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final MeasuresCollector classUnderTest = new MeasuresCollector(settings, statistics, null, null, null);
+    classUnderTest.start();
+    classUnderTest.decorate(resource, decoratorContext);
+    classUnderTest.stop();
+
+    final ScmMeasures measure = classUnderTest.getResources().get(EFFECTIVE_KEY);
+    assertThat(measure.getAuthor(1)).isEqualTo("user1");
+    assertThat(measure.getAuthor(2)).isEqualTo("user2");
+    assertThat(measure.getRevision(2)).isEqualTo("2");
+    assertThat(measure.getLastCommit().getAuthor()).isEqualTo("user1");
+    assertThat(classUnderTest.getAuthors().size()).isEqualTo(2);
+    assertThat(statistics.getParse().getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testExportLeavesDormantMeasuresUnparsed() throws Exception {
+    final File snapshot = new File(temporaryFolder.getRoot(), "blame.snapshot");
+    when(settings.getString(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_BLAME_SNAPSHOT_EXPORT))
+        .thenReturn(snapshot.getPath());
+    when(settings.getBoolean(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_PARSE_LAZY)).thenReturn(true);
+    when(resource.getScope()).thenReturn(Scopes.FILE);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_AUTHORS_BY_LINE)).thenReturn(authorByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE)).thenReturn(commitsByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_REVISIONS_BY_LINE)).thenReturn(revisionsByLineMeasure);
+    when(authorByLineMeasure.getData()).thenReturn(AUTHOR_MEASURE_DATA);
+    when(commitsByLineMeasure.getData()).thenReturn(COMMITS_MEASURE_DATA);
+    when(revisionsByLineMeasure.getData()).thenReturn(REVISIONS_MEASURE_DATA);
+
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final MeasuresCollector classUnderTest = new MeasuresCollector(settings, statistics, null, null, null);
+    classUnderTest.start();
+    when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY);
+    classUnderTest.decorate(resource, decoratorContext);
+    when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY + 2);
+    classUnderTest.decorate(resource, decoratorContext);
+    assertThat(classUnderTest.getMeasures(EFFECTIVE_KEY).getAuthor(1)).isEqualTo("user1");
+    classUnderTest.release(EFFECTIVE_KEY);
+    classUnderTest.stop();
+
+    assertThat(classUnderTest.getResources().get(EFFECTIVE_KEY + 2).isDormant()).isTrue();
+    assertThat(statistics.getParse().getCount()).isEqualTo(1);
+    final BlameSnapshot exported = BlameSnapshot.open(snapshot, new ScmDictionary(), new ScmDictionary());
+    assertThat(exported.size()).isEqualTo(1);
+    assertThat(exported.getMeasures(EFFECTIVE_KEY).getAuthor(2)).isEqualTo("user2");
+    assertThat(exported.getMeasures(EFFECTIVE_KEY + 2)).isNull();
+  }
+
+  @Test
+  public void testDecorateWithParseOnUse() throws Exception {
+    when(settings.getBoolean(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_PARSE_LAZY)).thenReturn(true);
+    when(settings.getInt(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_PARSE_LAZY_COMPRESSION)).thenReturn(1);
+    when(resource.getScope()).thenReturn(Scopes.FILE);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_AUTHORS_BY_LINE)).thenReturn(authorByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE)).thenReturn(commitsByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_REVISIONS_BY_LINE)).thenReturn(revisionsByLineMeasure);
+
+    when(authorByLineMeasure.getData()).thenReturn(AUTHOR_MEASURE_DATA);
+    when(commitsByLineMeasure.getData()).thenReturn(COMMITS_MEASURE_DATA);
+    when(revisionsByLineMeasure.getData()).thenReturn(REVISIONS_MEASURE_DATA);
+
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final MeasuresCollector classUnderTest = new MeasuresCollector(settings, statistics, null, null, null);
+    when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY);
+    classUnderTest.decorate(resource, decoratorContext);
+    when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY + 2);
+    classUnderTest.decorate(resource, decoratorContext);
+
+    assertThat(classUnderTest.getResources()).hasSize(2);
+    assertThat(classUnderTest.getResources().get(EFFECTIVE_KEY).isDormant()).isTrue();
+    assertThat(statistics.getDormantMeasures()).isEqualTo(2);
+    assertThat(statistics.getParse().getCount()).isEqualTo(0);
+
+    final ScmMeasures measure = classUnderTest.getMeasures(EFFECTIVE_KEY);
+    assertThat(measure.getAuthor(1)).isEqualTo("user1");
+    assertThat(measure.getLastCommit().getAuthor()).isEqualTo("user1");
+    assertThat(measure.isDormant()).isFalse();
+    assertThat(statistics.getParse().getCount()).isEqualTo(1);
+    assertThat(statistics.getDormantMeasuresParsed()).isEqualTo(1);
+
+    classUnderTest.release(EFFECTIVE_KEY);
+    classUnderTest.release(EFFECTIVE_KEY + 2);
+    assertThat(classUnderTest.getResources().isEmpty()).isTrue();
+    assertThat(statistics.getParse().getCount()).isEqualTo(1);
+    assertThat(statistics.getResourcesHeld()).isEqualTo(0);
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(0);
+  }
+
+  @Test
+  public void testMaxHeapEvictsLeastRecentlyUsed() throws Exception {
+    when(settings.getInt(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_MEASURES_MAX_HEAP)).thenReturn(1);
+    when(resource.getScope()).thenReturn(Scopes.FILE);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_AUTHORS_BY_LINE)).thenReturn(authorByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE)).thenReturn(commitsByLineMeasure);
+    when(decoratorContext.getMeasure(CoreMetrics.SCM_REVISIONS_BY_LINE)).thenReturn(revisionsByLineMeasure);
+
+    // a new author on every line, so that each resource holds about 40 KB of ranges
+    final StringBuilder authorData = new StringBuilder();
+    final StringBuilder commitData = new StringBuilder();
+    final StringBuilder revisionData = new StringBuilder();
+    for (int line = 1; line <= 2000; line++) {
+      authorData.append(line).append("=user").append(line % 7).append(';');
+      commitData.append(line).append("=2013-01-31T12:12:12-0800;");
+      revisionData.append(line).append('=').append(line % 7).append(';');
+    }
+    when(authorByLineMeasure.getData()).thenReturn(authorData.toString());
+    when(commitsByLineMeasure.getData()).thenReturn(commitData.toString());
+    when(revisionsByLineMeasure.getData()).thenReturn(revisionData.toString());
+
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final MeasuresCollector classUnderTest = new MeasuresCollector(settings, statistics, null, null, null);
+    for (int i = 0; i < 40; i++) {
+      when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY + i);
+      classUnderTest.decorate(resource, decoratorContext);
+      // looked up after each hold, and so never the least recently used
+      assertThat(classUnderTest.getMeasures(EFFECTIVE_KEY + 0)).isNotNull();
+    }
+
+    assertThat(classUnderTest.getResources()).hasSize(40);
+    assertThat(statistics.getMeasuresEvictions()).isGreaterThan(0);
+    assertThat(statistics.getEstimatedBytesHeld()).isLessThanOrEqualTo(1024L * 1024L);
+    assertThat(statistics.getPeakEstimatedBytesHeld()).isGreaterThan(1024L * 1024L);
+    assertThat(classUnderTest.getResources().get(EFFECTIVE_KEY + 0).isEvicted()).isFalse();
+    assertThat(classUnderTest.getResources().get(EFFECTIVE_KEY + 1).isEvicted()).isTrue();
+    assertThat(classUnderTest.getResources().get(EFFECTIVE_KEY + 39).isEvicted()).isFalse();
+
+    final ScmMeasures evicted = classUnderTest.getMeasures(EFFECTIVE_KEY + 1);
+    assertThat(evicted.getAuthor(1)).isEqualTo("user1");
+    assertThat(evicted.getAuthor(2000)).isEqualTo("user5");
+    assertThat(evicted.getRevision(6)).isEqualTo("6");
+    assertThat(evicted.isEvicted()).isFalse();
+    assertThat(statistics.getMeasuresRestores()).isEqualTo(1);
+
+    for (int i = 0; i < 40; i++) {
+      classUnderTest.release(EFFECTIVE_KEY + i);
+    }
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(0);
+  }
+
   @Test
   public void testDecorateMeasureWithoutMeasureFound() throws Exception {
     when(resource.getScope()).thenReturn(Scopes.FILE);
@@ -136,6 +402,24 @@ public class MeasuresCollectorTest {
     assertThat(classUnderTest.shouldExecuteOnProject(null)).isEqualTo(false);
   }
 
+  @Test
+  public void testShouldExecuteOnProjectPrefetchesUsers() throws Exception {
+    when(settings.getBoolean(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
+
+    final MeasuresCollector classUnderTest = new MeasuresCollector(settings, new IssueAssignStatistics(), userDirectory, null, null);
+    assertThat(classUnderTest.shouldExecuteOnProject(null)).isEqualTo(true);
+    verify(userDirectory).prefetch();
+  }
+
+  @Test
+  public void testShouldExecuteOnProjectDisabledDoesNotPrefetchUsers() throws Exception {
+    when(settings.getBoolean(org.sonar.plugins.issueassign.IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(false);
+
+    final MeasuresCollector classUnderTest = new MeasuresCollector(settings, new IssueAssignStatistics(), userDirectory, null, null);
+    assertThat(classUnderTest.shouldExecuteOnProject(null)).isEqualTo(false);
+    verify(userDirectory, never()).prefetch();
+  }
+
   @Test
   public void testGetResources() throws Exception {
     final MeasuresCollector classUnderTest = new MeasuresCollector(settings);
@@ -0,0 +1,86 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MeasuresReleaserTest {
+
+  @Mock private Settings settings;
+  @Mock private Resource resource;
+  @Mock private DecoratorContext decoratorContext;
+  @Mock private MeasuresCollector measuresCollector;
+
+  private static final String EFFECTIVE_KEY = "effectiveKey";
+
+  @Test
+  public void testDecorateFile() throws Exception {
+    when(resource.getScope()).thenReturn(Scopes.FILE);
+    when(resource.getEffectiveKey()).thenReturn(EFFECTIVE_KEY);
+
+    final MeasuresReleaser classUnderTest = new MeasuresReleaser(measuresCollector, settings);
+    classUnderTest.decorate(resource, decoratorContext);
+
+    verify(measuresCollector).release(EFFECTIVE_KEY);
+  }
+
+  @Test
+  public void testDecorateNonFile() throws Exception {
+    when(resource.getScope()).thenReturn(Scopes.DIRECTORY);
+
+    final MeasuresReleaser classUnderTest = new MeasuresReleaser(measuresCollector, settings);
+    classUnderTest.decorate(resource, decoratorContext);
+
+    verify(measuresCollector, never()).release(anyString());
+  }
+
+  @Test
+  public void testShouldExecuteOnProjectEnabled() throws Exception {
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_RELEASE_MEASURES)).thenReturn(true);
+
+    final MeasuresReleaser classUnderTest = new MeasuresReleaser(measuresCollector, settings);
+    assertThat(classUnderTest.shouldExecuteOnProject(null)).isTrue();
+  }
+
+  @Test
+  public void testShouldExecuteOnProjectReleaseDisabled() throws Exception {
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_RELEASE_MEASURES)).thenReturn(false);
+
+    final MeasuresReleaser classUnderTest = new MeasuresReleaser(measuresCollector, settings);
+    assertThat(classUnderTest.shouldExecuteOnProject(null)).isFalse();
+  }
+}
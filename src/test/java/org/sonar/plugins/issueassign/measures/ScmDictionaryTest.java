@@ -0,0 +1,88 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.junit.Test;
+import org.sonar.plugins.issueassign.Stress;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ScmDictionaryTest {
+
+  @Test
+  public void testIdOf() throws Exception {
+    final ScmDictionary classUnderTest = new ScmDictionary();
+    final int first = classUnderTest.idOf("author1");
+    final int second = classUnderTest.idOf("author2");
+
+    assertThat(first).isNotEqualTo(second);
+    assertThat(classUnderTest.idOf("author1")).isEqualTo(first);
+    assertThat(classUnderTest.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testValueOf() throws Exception {
+    final ScmDictionary classUnderTest = new ScmDictionary();
+    final int id = classUnderTest.idOf("author1");
+
+    assertThat(classUnderTest.valueOf(id)).isEqualTo("author1");
+    assertThat(classUnderTest.valueOf(ScmDictionary.NO_ID)).isNull();
+  }
+
+  @Test
+  public void testNullValue() throws Exception {
+    final ScmDictionary classUnderTest = new ScmDictionary();
+    assertThat(classUnderTest.idOf(null)).isEqualTo(ScmDictionary.NO_ID);
+    assertThat(classUnderTest.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testConcurrentIdOf() throws Exception {
+    final ScmDictionary classUnderTest = new ScmDictionary();
+    final int distinctValues = 1000;
+    final AtomicIntegerArray ids = new AtomicIntegerArray(distinctValues);
+    for (int i = 0; i < distinctValues; i++) {
+      ids.set(i, ScmDictionary.NO_ID);
+    }
+
+    Stress.run(Stress.THREADS, new Stress.Task() {
+      public void run(final int thread) {
+        // every thread interns every value, each in its own order
+        for (int i = 0; i < distinctValues; i++) {
+          final int value = (i * 7 + thread * 131) % distinctValues;
+          final int id = classUnderTest.idOf("author" + value);
+          if (!ids.compareAndSet(value, ScmDictionary.NO_ID, id) && ids.get(value) != id) {
+            throw new AssertionError("author" + value + " has ids " + ids.get(value) + " and " + id);
+          }
+          if (!("author" + value).equals(classUnderTest.valueOf(id))) {
+            throw new AssertionError("Id " + id + " resolves to " + classUnderTest.valueOf(id));
+          }
+        }
+      }
+    });
+
+    assertThat(classUnderTest.size()).isEqualTo(distinctValues);
+    for (int i = 0; i < distinctValues; i++) {
+      assertThat(classUnderTest.valueOf(ids.get(i))).isEqualTo("author" + i);
+    }
+  }
+}
@@ -17,7 +17,22 @@
  * License along with this program; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
  */
-package org.sonar.plugins.issueassign.exception;
+package org.sonar.plugins.issueassign.measures;
 
-public class SonarUserNotFoundException extends IssueAssignPluginException {
+/**
+ * Blame of a small resource, for the tests of the stores that write blame out and read it back.
+ */
+final class ScmMeasuresFixture {
+
+  private ScmMeasuresFixture() {
+  }
+
+  /**
+   * @return four lines: two by the first author at revision r1, one by the second at r2, and one without blame.
+   */
+  static ScmMeasures measures(final String resourceKey, final String author1, final String author2) {
+    return ScmMeasures.of(resourceKey, new String[]{null, author1, author1, author2, null},
+        new long[]{ScmMeasures.NO_DATE, 1000L, 1000L, 2000L, ScmMeasures.NO_DATE},
+        new String[]{null, "r1", "r1", "r2", null}, new ScmDictionary(), new ScmDictionary());
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.measures;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ScmMeasuresParserTest {
+
+  private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
+  private static final String DATE1 = "2013-01-31T12:12:12-0800";
+  private static final String DATE2 = "2011-02-01T12:12:12+0130";
+
+  @Test
+  public void testParseIds() throws Exception {
+    final ScmDictionary dictionary = new ScmDictionary();
+    final int[] ids = new ScmMeasuresParser().parseIds("1=author1;2=author1;3=author2", dictionary);
+
+    assertThat(ids).hasSize(4);
+    assertThat(ids[0]).isEqualTo(ScmDictionary.NO_ID);
+    assertThat(dictionary.valueOf(ids[1])).isEqualTo("author1");
+    assertThat(dictionary.valueOf(ids[2])).isEqualTo("author1");
+    assertThat(dictionary.valueOf(ids[3])).isEqualTo("author2");
+    assertThat(dictionary.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testParseIdsOutOfOrderWithGaps() throws Exception {
+    final ScmDictionary dictionary = new ScmDictionary();
+    final int[] ids = new ScmMeasuresParser().parseIds("5=author2;1=author1;3=;x=author3;", dictionary);
+
+    assertThat(ids).hasSize(6);
+    assertThat(dictionary.valueOf(ids[1])).isEqualTo("author1");
+    assertThat(ids[3]).isEqualTo(ScmDictionary.NO_ID);
+    assertThat(dictionary.valueOf(ids[5])).isEqualTo("author2");
+    assertThat(dictionary.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testParseIdsEmpty() throws Exception {
+    assertThat(new ScmMeasuresParser().parseIds("", new ScmDictionary())).hasSize(1);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testParseIdsLineOutOfRange() throws Exception {
+    new ScmMeasuresParser().parseIds("1=author1;" + (ScmMeasuresParser.MAX_LINE + 1) + "=author1", new ScmDictionary());
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testParseDateTimesLineOverflow() throws Exception {
+    new ScmMeasuresParser().parseDateTimes("1=" + DATE1 + ";99999999999=" + DATE1);
+  }
+
+  @Test
+  public void testParseDateTimes() throws Exception {
+    final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+    final long[] times = new ScmMeasuresParser().parseDateTimes("1=" + DATE1 + ";2=" + DATE1 + ";3=" + DATE2);
+
+    assertThat(times).hasSize(4);
+    assertThat(times[0]).isEqualTo(ScmMeasures.NO_DATE);
+    assertThat(times[1]).isEqualTo(dateFormat.parse(DATE1).getTime());
+    assertThat(times[2]).isEqualTo(dateFormat.parse(DATE1).getTime());
+    assertThat(times[3]).isEqualTo(dateFormat.parse(DATE2).getTime());
+  }
+
+  @Test
+  public void testParseDateTimeBeforeEpoch() throws Exception {
+    final String date = "1969-12-31T23:59:59+0000";
+    assertThat(ScmMeasuresParser.parseDateTime(date))
+        .isEqualTo(new SimpleDateFormat(DATE_FORMAT).parse(date).getTime());
+  }
+}
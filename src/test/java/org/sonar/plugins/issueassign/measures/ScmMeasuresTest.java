@@ -27,11 +27,13 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
+import org.sonar.plugins.issueassign.statistics.IssueAssignStatistics;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
+import java.util.zip.Deflater;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -145,8 +147,163 @@ public class ScmMeasuresTest {
     assertThat(mapData.get(3)).isEqualTo(REVISION3);
   }
 
+  @Test
+  public void testGetByLine() throws Exception {
+    final Date date3 = new SimpleDateFormat(DATE_FORMAT).parse(DATE3);
+
+    assertThat(this.classUnderTest.getLineCount()).isEqualTo(3);
+    assertThat(this.classUnderTest.getAuthor(1)).isEqualTo(AUTHOR1);
+    assertThat(this.classUnderTest.getRevision(2)).isEqualTo(REVISION2);
+    assertThat(this.classUnderTest.getLastCommit(3)).isEqualTo(date3.getTime());
+
+    assertThat(this.classUnderTest.getAuthor(4)).isNull();
+    assertThat(this.classUnderTest.getRevision(0)).isNull();
+    assertThat(this.classUnderTest.getLastCommit(4)).isEqualTo(ScmMeasures.NO_DATE);
+  }
+
+  @Test
+  public void testSharedDictionaries() throws Exception {
+    final ScmDictionary authors = new ScmDictionary();
+    final ScmDictionary revisions = new ScmDictionary();
+    final ScmMeasures first = new ScmMeasures(RESOURCE_KEY, AUTHOR_DATA, COMMIT_DATA, REVISION_DATA, authors, revisions);
+    final ScmMeasures second = new ScmMeasures(RESOURCE_KEY, "1=" + AUTHOR2, "1=" + DATE1, "1=" + REVISION2, authors, revisions);
+
+    assertThat(authors.size()).isEqualTo(3);
+    assertThat(revisions.size()).isEqualTo(3);
+    assertThat(second.getAuthor(1)).isSameAs(first.getAuthor(2));
+  }
+
   @Test
   public void testGetKey() throws Exception {
     assertThat(this.classUnderTest.getKey()).isEqualTo(RESOURCE_KEY);
   }
+
+  @Test
+  public void testDeferredParseOnFirstUse() throws Exception {
+    final ScmDictionary authors = new ScmDictionary();
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final ScmMeasures deferred = ScmMeasures.deferred(RESOURCE_KEY, AUTHOR_DATA, COMMIT_DATA, REVISION_DATA,
+        authors, new ScmDictionary(), statistics);
+    statistics.measuresHeld(deferred.getEstimatedBytes());
+    assertThat(authors.size()).isEqualTo(0);
+    assertThat(statistics.getParse().getCount()).isEqualTo(0);
+
+    assertThat(deferred.getAuthor(2)).isEqualTo(AUTHOR2);
+    assertThat(deferred.getRevision(3)).isEqualTo(REVISION3);
+    assertThat(deferred.getLastCommit().getAuthor()).isEqualTo(AUTHOR3);
+    assertThat(statistics.getResourcesHeld()).isEqualTo(1);
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(deferred.getEstimatedBytes());
+  }
+
+  @Test
+  public void testDeferredParseRunsOnce() throws Exception {
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final ScmMeasures deferred = ScmMeasures.deferred(RESOURCE_KEY, AUTHOR_DATA, COMMIT_DATA, REVISION_DATA,
+        new ScmDictionary(), new ScmDictionary(), statistics);
+    statistics.measuresHeld(deferred.getEstimatedBytes());
+    deferred.parse();
+    deferred.parse();
+
+    assertThat(deferred.getAuthorsByLine()).isEqualTo(this.classUnderTest.getAuthorsByLine());
+    assertThat(statistics.getResourcesHeld()).isEqualTo(1);
+    assertThat(statistics.getParse().getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDeferredReleasedBeforeParse() throws Exception {
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final ScmMeasures deferred = ScmMeasures.deferred(RESOURCE_KEY, AUTHOR_DATA, COMMIT_DATA, REVISION_DATA,
+        new ScmDictionary(), new ScmDictionary(), statistics);
+    statistics.measuresHeld(deferred.getEstimatedBytes());
+    statistics.measuresReleased(deferred.release());
+    assertThat(statistics.getParse().getCount()).isEqualTo(0);
+
+    deferred.parse();
+    assertThat(statistics.getParse().getCount()).isEqualTo(1);
+    assertThat(statistics.getResourcesHeld()).isEqualTo(0);
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDormantParseOnFirstUse() throws Exception {
+    final ScmDictionary authors = new ScmDictionary();
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final ScmMeasures dormant = ScmMeasures.dormant(RESOURCE_KEY,
+        DormantMeasures.of(Deflater.BEST_SPEED, AUTHOR_DATA, COMMIT_DATA, REVISION_DATA),
+        authors, new ScmDictionary(), statistics);
+    statistics.dormantMeasuresHeld(dormant.getEstimatedBytes());
+    assertThat(dormant.isDormant()).isTrue();
+    assertThat(authors.size()).isEqualTo(0);
+    assertThat(statistics.getParse().getCount()).isEqualTo(0);
+
+    assertThat(dormant.getAuthor(2)).isEqualTo(AUTHOR2);
+    assertThat(dormant.getRevision(3)).isEqualTo(REVISION3);
+    assertThat(dormant.getLastCommitsByLine()).isEqualTo(this.classUnderTest.getLastCommitsByLine());
+    assertThat(dormant.isDormant()).isFalse();
+    assertThat(statistics.getParse().getCount()).isEqualTo(1);
+    assertThat(statistics.getDormantMeasures()).isEqualTo(1);
+    assertThat(statistics.getDormantMeasuresParsed()).isEqualTo(1);
+    assertThat(statistics.getResourcesHeld()).isEqualTo(1);
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(dormant.getEstimatedBytes());
+  }
+
+  @Test
+  public void testEvictAndRestore() throws Exception {
+    final StringBuilder authorData = new StringBuilder();
+    final StringBuilder commitData = new StringBuilder();
+    final StringBuilder revisionData = new StringBuilder();
+    for (int line = 1; line <= 300; line++) {
+      authorData.append(line).append('=').append(line % 2 == 0 ? AUTHOR1 : AUTHOR2).append(';');
+      commitData.append(line).append('=').append(line % 2 == 0 ? DATE1 : DATE2).append(';');
+      revisionData.append(line).append('=').append(line % 2 == 0 ? REVISION1 : REVISION2).append(';');
+    }
+    final ScmMeasures measures = new ScmMeasures(RESOURCE_KEY, authorData.toString(), commitData.toString(),
+        revisionData.toString());
+    final LastCommit lastCommit = measures.getLastCommit();
+    final Map<Integer, Date> lastCommitsByLine = measures.getLastCommitsByLine();
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    statistics.measuresHeld(measures.getEstimatedBytes());
+    final long heldBytes = measures.getEstimatedBytes();
+
+    final long freedBytes = measures.evict(statistics);
+    assertThat(freedBytes).isGreaterThan(0);
+    assertThat(measures.isEvicted()).isTrue();
+    assertThat(measures.getEstimatedBytes()).isEqualTo(heldBytes - freedBytes);
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(heldBytes - freedBytes);
+    assertThat(measures.evict(statistics)).isEqualTo(0);
+    assertThat(measures.getLastCommit()).isSameAs(lastCommit);
+    assertThat(measures.isEmpty()).isFalse();
+    assertThat(measures.peekRanges().getLineCount()).isEqualTo(300);
+    assertThat(measures.isEvicted()).isTrue();
+
+    assertThat(measures.getAuthor(2)).isEqualTo(AUTHOR1);
+    assertThat(measures.isEvicted()).isFalse();
+    assertThat(measures.getLastCommitsByLine()).isEqualTo(lastCommitsByLine);
+    assertThat(measures.getRevision(299)).isEqualTo(REVISION2);
+    assertThat(measures.getLineCount()).isEqualTo(300);
+    assertThat(statistics.getEstimatedBytesHeld()).isEqualTo(heldBytes);
+    assertThat(statistics.getMeasuresEvictions()).isEqualTo(1);
+    assertThat(statistics.getMeasuresRestores()).isEqualTo(1);
+  }
+
+  @Test
+  public void testEvictLeavesPendingParse() throws Exception {
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    final ScmMeasures deferred = ScmMeasures.deferred(RESOURCE_KEY, AUTHOR_DATA, COMMIT_DATA, REVISION_DATA,
+        new ScmDictionary(), new ScmDictionary(), statistics);
+    assertThat(deferred.evict(statistics)).isEqualTo(0);
+    assertThat(deferred.isEvicted()).isFalse();
+    assertThat(deferred.getAuthor(1)).isEqualTo(AUTHOR1);
+  }
+
+  @Test
+  public void testDeferredParseFailureLeavesMeasuresEmpty() throws Exception {
+    final ScmMeasures deferred = ScmMeasures.deferred(RESOURCE_KEY, AUTHOR_DATA, "1=yesterday", REVISION_DATA,
+        new ScmDictionary(), new ScmDictionary(), new IssueAssignStatistics());
+    deferred.parse();
+
+    assertThat(deferred.isEmpty()).isTrue();
+    assertThat(deferred.getAuthor(1)).isNull();
+    assertThat(this.classUnderTest.isEmpty()).isFalse();
+  }
 }
@@ -0,0 +1,75 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.statistics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.issueassign.Assignment;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IssueAssignMonitorTest {
+
+  @Mock private Settings settings;
+
+  @Test
+  public void testRegisteredForTheAnalysis() throws Exception {
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    statistics.issueSeen();
+    statistics.assigned(Assignment.Outcome.DEFAULT);
+    statistics.measuresHeld(1000);
+
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final ObjectName name = new ObjectName(IssueAssignMonitor.OBJECT_NAME);
+    final IssueAssignMonitor classUnderTest = new IssueAssignMonitor(statistics, settings);
+
+    classUnderTest.start();
+    try {
+      assertThat(server.getAttribute(name, "IssuesSeen")).isEqualTo(1L);
+      assertThat(server.getAttribute(name, "IssuesAssignedToDefault")).isEqualTo(1L);
+      assertThat(server.getAttribute(name, "ResourcesHeld")).isEqualTo(1L);
+      assertThat(server.getAttribute(name, "EstimatedBytesHeld")).isEqualTo(1000L);
+      assertThat(server.getAttribute(name, "PeakEstimatedBytesHeld")).isEqualTo(1000L);
+    } finally {
+      classUnderTest.stop();
+    }
+    assertThat(server.isRegistered(name)).isFalse();
+  }
+
+  @Test
+  public void testNotRegisteredWhenDisabled() throws Exception {
+    final IssueAssignMonitor classUnderTest = new IssueAssignMonitor(new IssueAssignStatistics(), settings);
+    classUnderTest.start();
+    assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(IssueAssignMonitor.OBJECT_NAME)))
+        .isFalse();
+    classUnderTest.stop();
+  }
+}
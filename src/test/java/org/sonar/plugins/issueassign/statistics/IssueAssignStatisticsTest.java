@@ -0,0 +1,82 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.statistics;
+
+import org.junit.Test;
+import org.sonar.plugins.issueassign.Assignment;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class IssueAssignStatisticsTest {
+
+  @Test
+  public void testOutcomes() {
+    final IssueAssignStatistics classUnderTest = new IssueAssignStatistics();
+    classUnderTest.assigned(Assignment.Outcome.DEFAULT);
+    classUnderTest.assigned(Assignment.Outcome.DEFAULT);
+    classUnderTest.assigned(Assignment.Outcome.SCM_AUTHOR);
+    classUnderTest.unresolved();
+    classUnderTest.error();
+
+    assertThat(classUnderTest.getAssigned(Assignment.Outcome.DEFAULT)).isEqualTo(2);
+    assertThat(classUnderTest.getAssigned(Assignment.Outcome.SCM_AUTHOR)).isEqualTo(1);
+    assertThat(classUnderTest.getAssigned(Assignment.Outcome.OVERRIDE)).isEqualTo(0);
+    assertThat(classUnderTest.getUnresolved()).isEqualTo(1);
+    assertThat(classUnderTest.getErrors()).isEqualTo(1);
+    assertThat(classUnderTest.toString()).contains("default=2");
+  }
+
+  @Test
+  public void testMeasuresHeldPeakAndEvictions() {
+    final IssueAssignStatistics classUnderTest = new IssueAssignStatistics();
+    classUnderTest.measuresHeld(100);
+    classUnderTest.measuresHeld(50);
+    classUnderTest.measuresEvicted(80);
+    classUnderTest.measuresRestored(30);
+    classUnderTest.measuresReleased(100);
+
+    assertThat(classUnderTest.getResourcesHeld()).isEqualTo(1);
+    assertThat(classUnderTest.getEstimatedBytesHeld()).isEqualTo(0);
+    assertThat(classUnderTest.getPeakEstimatedBytesHeld()).isEqualTo(150);
+    assertThat(classUnderTest.getMeasuresEvictions()).isEqualTo(1);
+    assertThat(classUnderTest.getMeasuresRestores()).isEqualTo(1);
+    assertThat(classUnderTest.toString()).contains("evictions=1");
+  }
+
+  @Test
+  public void testDormantMeasures() {
+    final IssueAssignStatistics classUnderTest = new IssueAssignStatistics();
+    classUnderTest.dormantMeasuresHeld(100);
+    classUnderTest.dormantMeasuresHeld(100);
+    classUnderTest.dormantMeasuresParsed(-60);
+
+    assertThat(classUnderTest.getResourcesHeld()).isEqualTo(2);
+    assertThat(classUnderTest.getEstimatedBytesHeld()).isEqualTo(140);
+    assertThat(classUnderTest.getPeakEstimatedBytesHeld()).isEqualTo(200);
+    assertThat(classUnderTest.getDormantMeasures()).isEqualTo(2);
+    assertThat(classUnderTest.getDormantMeasuresParsed()).isEqualTo(1);
+  }
+
+  @Test
+  public void testHitRate() {
+    assertThat(IssueAssignStatistics.hitRate(3, 1)).isEqualTo(0.75);
+    assertThat(IssueAssignStatistics.hitRate(0, 0)).isEqualTo(0.0);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.statistics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.issueassign.Assignment;
+import org.sonar.plugins.issueassign.IssueAssignPlugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StatisticsReporterTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock private Settings settings;
+  @Mock private ModuleFileSystem moduleFileSystem;
+  @Mock private Project project;
+  @Mock private SensorContext sensorContext;
+
+  @Test
+  public void testShouldExecuteOnProject() {
+    when(settings.getBoolean(IssueAssignPlugin.PROPERTY_ENABLED)).thenReturn(true);
+    final StatisticsReporter classUnderTest =
+        new StatisticsReporter(new IssueAssignStatistics(), settings, moduleFileSystem);
+    assertThat(classUnderTest.shouldExecuteOnProject(project)).isTrue();
+  }
+
+  @Test
+  public void testReportWrittenToWorkingDir() throws Exception {
+    final File workingDir = new File(temporaryFolder.getRoot(), "work");
+    when(moduleFileSystem.workingDir()).thenReturn(workingDir);
+
+    final IssueAssignStatistics statistics = new IssueAssignStatistics();
+    statistics.assigned(Assignment.Outcome.OVERRIDE);
+    statistics.getBlame().record(1500);
+    statistics.unknownUserHit();
+    statistics.measuresHeld(2000);
+    statistics.measuresEvicted(1500);
+
+    new StatisticsReporter(statistics, settings, moduleFileSystem).executeOn(project, sensorContext);
+
+    final String report = read(new File(workingDir, StatisticsReporter.REPORT_FILE));
+    assertThat(report).contains("\"override\": 1");
+    assertThat(report).contains("\"blame\": {\"count\": 1, \"totalNanos\": 1500");
+    assertThat(report).contains("\"unknownUsers\": {\"hits\": 1, \"misses\": 0, \"hitRate\": 1.0000}");
+    assertThat(report).contains("\"measures\": {\"peakEstimatedBytesHeld\": 2000, \"evictions\": 1, \"restores\": 0, \"dormant\": 0, \"dormantParsed\": 0}");
+  }
+
+  private static String read(final File file) throws Exception {
+    final StringBuilder content = new StringBuilder();
+    final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+    try {
+      final char[] buffer = new char[4096];
+      for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+        content.append(buffer, 0, read);
+      }
+    } finally {
+      reader.close();
+    }
+    return content.toString();
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarQube Issue Assign Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.issueassign.statistics;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TimerTest {
+
+  @Test
+  public void testRecord() {
+    final Timer classUnderTest = new Timer();
+    classUnderTest.record(100);
+    classUnderTest.record(300);
+    classUnderTest.record(200);
+
+    assertThat(classUnderTest.getCount()).isEqualTo(3);
+    assertThat(classUnderTest.getTotalNanos()).isEqualTo(600);
+    assertThat(classUnderTest.getMeanNanos()).isEqualTo(200);
+    assertThat(classUnderTest.getMaxNanos()).isEqualTo(300);
+  }
+
+  @Test
+  public void testStartStop() {
+    final Timer classUnderTest = new Timer();
+    classUnderTest.stop(classUnderTest.start());
+
+    assertThat(classUnderTest.getCount()).isEqualTo(1);
+    assertThat(classUnderTest.getTotalNanos()).isEqualTo(classUnderTest.getMaxNanos());
+  }
+
+  @Test
+  public void testEmpty() {
+    assertThat(new Timer().getMeanNanos()).isEqualTo(0);
+  }
+
+  @Test
+  public void testHistogram() {
+    final Timer classUnderTest = new Timer();
+    classUnderTest.record(0);
+    classUnderTest.record(1);
+    classUnderTest.record(1000);
+    classUnderTest.record(1023);
+    classUnderTest.record(1024);
+
+    final long[] histogram = classUnderTest.getHistogram();
+    assertThat(histogram.length).isEqualTo(Timer.BUCKETS);
+    assertThat(histogram[0]).isEqualTo(1);
+    assertThat(histogram[1]).isEqualTo(1);
+    assertThat(histogram[10]).isEqualTo(2);
+    assertThat(histogram[11]).isEqualTo(1);
+  }
+
+  @Test
+  public void testPercentile() {
+    final Timer classUnderTest = new Timer();
+    for (int i = 0; i < 99; i++) {
+      classUnderTest.record(100);
+    }
+    classUnderTest.record(5000);
+
+    assertThat(classUnderTest.getPercentileNanos(50)).isEqualTo(128);
+    assertThat(classUnderTest.getPercentileNanos(99)).isEqualTo(128);
+    assertThat(classUnderTest.getPercentileNanos(100)).isEqualTo(8192);
+    assertThat(new Timer().getPercentileNanos(99)).isEqualTo(0);
+  }
+}